@@ -26,7 +26,9 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import org.apache.commons.cli.CommandLine;
@@ -138,19 +140,49 @@ public class Arguments {
                 return null;
             return converter.apply(value);
         } catch (RuntimeException ex) {
-            StringBuilder sb = new StringBuilder("Invalid value for ");
-            Option option = options.getOption(arg);
-            if (option.getOpt() != null) {
-                sb.append("-").append(option.getOpt());
-                if (option.getLongOpt() != null)
-                    sb.append(",--").append(option.getLongOpt());
-            } else {
-                sb.append("--").append(option.getLongOpt());
+            throw invalidValue(arg, ex);
+        }
+    }
+
+    /**
+     * Take all the values of a repeatable argument from the parsed command
+     * line
+     *
+     * @param <T>       type of argument
+     * @param arg       name of command line argument
+     * @param converter function to convert to wanted type (for string use: s
+     *                  -&gt; s)
+     * @return converted values in command line order (empty if unset)
+     * @throws ParseException If a conversion fails
+     */
+    public <T> List<T> takeAll(String arg, Function<String, T> converter) throws ParseException {
+        List<T> list = new ArrayList<>();
+        String[] values = commandLine.getOptionValues(arg);
+        if (values == null)
+            return list;
+        try {
+            for (String value : values) {
+                list.add(converter.apply(value));
             }
-            if (ex.getMessage() != null)
-                sb.append(" - ").append(ex.getMessage());
-            throw new ParseException(sb.toString());
+            return list;
+        } catch (RuntimeException ex) {
+            throw invalidValue(arg, ex);
+        }
+    }
+
+    private ParseException invalidValue(String arg, RuntimeException ex) {
+        StringBuilder sb = new StringBuilder("Invalid value for ");
+        Option option = options.getOption(arg);
+        if (option.getOpt() != null) {
+            sb.append("-").append(option.getOpt());
+            if (option.getLongOpt() != null)
+                sb.append(",--").append(option.getLongOpt());
+        } else {
+            sb.append("--").append(option.getLongOpt());
         }
+        if (ex.getMessage() != null)
+            sb.append(" - ").append(ex.getMessage());
+        return new ParseException(sb.toString());
     }
 
     /**
@@ -156,7 +156,14 @@ public class OutputWriter implements AutoCloseable, Consumer<LogLine> {
             log.warn("Buffered output is out of order, increase buffer size? (outputted={}, next={})", lastEntryTimeOffset, entryTimeOffset);
         } else {
             lastEntryTimeOffset = entryTimeOffset;
-            entry.outputTo(os, timeFirstDelta);
+            try {
+                entry.outputTo(os, timeFirstDelta);
+            } catch (IOException ex) {
+                // The reader (ie. the replayer at the end of a pipe) is gone
+                log.info("Output closed: {}", ex.getMessage());
+                completed = true;
+                throw new CompletedException();
+            }
             if (++count >= limit) {
                 this.completed = true;
                 throw new CompletedException();
@@ -213,18 +220,14 @@ public class OutputWriter implements AutoCloseable, Consumer<LogLine> {
                    Objects.equals(this.logLine, other.logLine);
         }
 
-        private void outputTo(OutputStream os, long delta) {
+        private void outputTo(OutputStream os, long delta) throws IOException {
             String line = new StringBuilder()
                     .append(timeOffset - delta)
                     .append(" ")
                     .append(logLine.getQuery())
                     .append("\n")
                     .toString();
-            try {
-                os.write(line.getBytes(StandardCharsets.UTF_8));
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
-            }
+            os.write(line.getBytes(StandardCharsets.UTF_8));
         }
     }
 }
@@ -97,7 +97,8 @@ public class Recorder {
             os = new FileOutputStream(filename, config.isAppend());
         } else {
             log.debug("Outputting to stdout");
-            os = System.out;
+            // Not System.out, it hides the error when the reader of a pipe is gone
+            os = new FileOutputStream(FileDescriptor.out);
         }
 
         return new OutputWriter(os,
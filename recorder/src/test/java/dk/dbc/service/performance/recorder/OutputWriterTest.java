@@ -22,6 +22,7 @@ import dk.dbc.jslib.Environment;
 import dk.dbc.service.performance.LineSource;
 import dk.dbc.service.performance.LinesInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
@@ -151,6 +152,43 @@ public class OutputWriterTest {
         assertThat(content, startsWith("0 ")); // Ensure timing is right
     }
 
+    @Test(timeout = 2_000L)
+    public void testClosedOutput() throws Exception {
+        System.out.println("testClosedOutput");
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        OutputStream pipe = new OutputStream() {
+            private int lines = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++lines > 5)
+                    throw new IOException("Broken pipe");
+                bos.write(b, off, len);
+            }
+        };
+        boolean completed = false;
+        try (OutputWriter outputWriter = new OutputWriter(pipe, 10, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, OutputWriterTest::firstLine);
+             InputStream is = getClass().getClassLoader().getResourceAsStream("log.data");
+             LineSource lineSource = new LinesInputStream(is, UTF_8)) {
+
+            lineSource.stream()
+                    .map(s -> LogLine.mappingScript(s, MOCK_ENVIRONMENT))
+                    .filter(LogLine::isValid)
+                    .forEach(outputWriter);
+        } catch (CompletedException ex) {
+            completed = true;
+        }
+        String content = new String(bos.toByteArray(), UTF_8);
+        assertThat(completed, is(true));
+        assertThat(content.split("\n").length, is(5));
+    }
+
     private static void firstLine(OutputStream os, LogLine logLine) {
         System.out.println("logLine = " + logLine);
     }
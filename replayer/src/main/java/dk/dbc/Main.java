@@ -18,11 +18,18 @@
  */
 package dk.dbc;
 
+import dk.dbc.service.performance.replayer.CompareConfig;
 import dk.dbc.service.performance.replayer.Config;
+import dk.dbc.service.performance.replayer.Coordinator;
+import dk.dbc.service.performance.replayer.PreStart;
 import dk.dbc.service.performance.replayer.Replayer;
+import dk.dbc.service.performance.replayer.ResultComparison;
+import dk.dbc.service.performance.replayer.Worker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * Master entry point
  *
@@ -34,9 +41,18 @@ public class Main {
 
     public static void main(String[] args) {
         try {
+            if (args.length > 0 && "compare".equals(args[0]))
+                System.exit(new ResultComparison(CompareConfig.of(Arrays.copyOfRange(args, 1, args.length))).run());
             Config config = Config.of(args);
+            PreStart.configureConnectionCache(config);
             log.info("start");
-            int exitcode = new Replayer(config).run();
+            int exitcode;
+            if (config.isWorker())
+                exitcode = new Worker(config).run();
+            else if (config.isCoordinator())
+                exitcode = new Coordinator(config).run();
+            else
+                exitcode = new Replayer(config).run();
             log.info("end");
 
             System.exit(exitcode);
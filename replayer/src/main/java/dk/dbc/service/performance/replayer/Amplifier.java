@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Sends each line of the recordings a number of times
+ * <p>
+ * The copies of a line are spread over a window centered on the recorded
+ * time, evenly or (with a seed) at random, so the load is multiplied without
+ * compressing the time between the lines. The copies are made one at a time,
+ * in time order: a line is read when its window opens, and only the lines with
+ * copies left to send are kept (with the position of their next copy). Random
+ * positions are drawn in ascending order, as the order statistics of uniform
+ * values, so no positions are stored.
+ * <p>
+ * Copies (not the original) can have a salt parameter added to the query, with
+ * a value that is unique in the replay, so a cache in the service cannot
+ * answer them.
+ */
+public class Amplifier {
+
+    private final RecordingReader reader;
+    private final int factor;
+    private final long window;
+    private final Random random;
+    private final String salt;
+    private final PriorityQueue<Pending> heap;
+    private boolean started;
+    private LogLine upcoming;
+    private long sequence;
+    private long salted;
+
+    /**
+     * @param reader source of the lines
+     * @param factor number of times each line is sent
+     * @param window ms around the recorded time the copies are spread over
+     * @param seed   seed of the random positions (null for evenly spread)
+     * @param salt   name of the query parameter added to the copies (null
+     *               for none)
+     */
+    public Amplifier(RecordingReader reader, int factor, long window, Long seed, String salt) {
+        this.reader = reader;
+        this.factor = factor;
+        this.window = window;
+        this.random = seed == null ? null : new Random(seed);
+        this.salt = salt;
+        this.heap = new PriorityQueue<>(Comparator.comparingLong((Pending p) -> p.time)
+                .thenComparingLong(p -> p.sequence));
+        this.started = false;
+        this.upcoming = null;
+        this.sequence = 0;
+        this.salted = 0;
+    }
+
+    /**
+     * The next call to send
+     *
+     * @return line (with the time and number of the copy), or null when the
+     *         recordings are read
+     * @throws IOException if a recording cannot be read
+     */
+    public LogLine next() throws IOException {
+        if (factor == 1)
+            return reader.next();
+        if (!started) {
+            started = true;
+            upcoming = reader.next();
+        }
+        while (upcoming != null && ( heap.isEmpty() || opens(upcoming) <= heap.peek().time )) {
+            heap.add(new Pending(upcoming));
+            upcoming = reader.next();
+        }
+        Pending pending = heap.poll();
+        if (pending == null)
+            return null;
+        int copy = pending.copy;
+        long time = pending.time;
+        if (pending.advance())
+            heap.add(pending);
+        String query = pending.line.getQuery();
+        if (salt != null && copy > 0)
+            query = query + ( query.isEmpty() ? "" : "&" ) + salt + "=" + ( ++salted );
+        return pending.line.copied(time, query, copy);
+    }
+
+    /**
+     * When the first copy of a line can be sent
+     */
+    private long opens(LogLine line) {
+        return Math.max(0, line.getTimeDelta() - window / 2);
+    }
+
+    /**
+     * A line and its next copy
+     */
+    private class Pending {
+
+        private final LogLine line;
+        private final long sequence;
+        private int copy;
+        private double position;
+        private long time;
+
+        private Pending(LogLine line) {
+            this.line = line;
+            this.sequence = Amplifier.this.sequence++;
+            this.copy = -1;
+            this.position = 0.0;
+            advance();
+        }
+
+        /**
+         * Move to the next copy
+         *
+         * @return false if all copies are sent
+         */
+        private boolean advance() {
+            copy++;
+            if (copy >= factor)
+                return false;
+            if (random == null) {
+                position = ( 2.0 * copy + 1.0 ) / ( 2.0 * factor );
+            } else {
+                // Smallest of the (factor - copy) uniform values left above position
+                double u = 1.0 - Math.pow(random.nextDouble(), 1.0 / ( factor - copy ));
+                position += ( 1.0 - position ) * u;
+            }
+            time = Math.max(0, line.getTimeDelta() - window / 2 + Math.round(position * window));
+            return true;
+        }
+    }
+}
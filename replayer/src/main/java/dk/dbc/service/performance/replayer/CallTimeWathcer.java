@@ -20,10 +20,17 @@ package dk.dbc.service.performance.replayer;
  * File created: 26/03/2019
  */
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * Logs the calltime for the latest x calls to the service
  * and throws an exception if more than y calls exceed
  * the given limit
+ * <p>
+ * Calls can be added concurrently without locking, and each call costs the
+ * same regardless of the number of calls watched
  */
 public class CallTimeWathcer {
     private CallStack callTimes;
@@ -37,14 +44,13 @@ public class CallTimeWathcer {
      * @param cutoffLimit Max call time allowed
      */
     public CallTimeWathcer(int callBufferSize, int maxCalls, long cutoffLimit) {
-        this.callTimes = new CallStack(callBufferSize);
+        this.callTimes = new CallStack(callBufferSize, cutoffLimit);
         this.maxCalls = maxCalls;
         this.cutoffLimit = cutoffLimit;
     }
 
-    public synchronized void addCallTime(long callTime) {
-        callTimes.push(callTime);
-        if( callTimes.numElementsAbove(cutoffLimit) > this.maxCalls) {
+    public void addCallTime(long callTime) {
+        if( callTimes.push(callTime) > this.maxCalls) {
             throw new CallTimeExceededException();
         }
     }
@@ -60,16 +66,62 @@ public class CallTimeWathcer {
         return callTimes.numElementsAbove(cutoffLimit);
     }
 
-    static class CallStack extends FixedSizeStack<Long> {
+    /**
+     * Ring buffer of the latest call times, that keeps count of how many of
+     * them are at or above a cutoff limit
+     * <p>
+     * When a slot is overwritten the count is adjusted by the difference
+     * between the old and the new value, so the count always matches the
+     * content of the buffer
+     */
+    static class CallStack {
+
+        private static final long EMPTY = -1L;
+
+        private final AtomicLongArray callTimes;
+        private final AtomicLong next;
+        private final AtomicInteger above;
+        private final long cutoffLimit;
 
         public CallStack(int size) {
-            super(size);
+            this(size, Long.MAX_VALUE);
+        }
+
+        public CallStack(int size, long cutoffLimit) {
+            this.callTimes = new AtomicLongArray(size);
+            for (int i = 0 ; i < size ; i++) {
+                callTimes.set(i, EMPTY);
+            }
+            this.next = new AtomicLong();
+            this.above = new AtomicInteger();
+            this.cutoffLimit = cutoffLimit;
+        }
+
+        /**
+         * Add a call time, overwriting the oldest
+         *
+         * @param callTime the call time
+         * @return number of call times at or above the cutoff limit
+         */
+        public int push(long callTime) {
+            int slot = (int) ( next.getAndIncrement() % callTimes.length() );
+            long old = callTimes.getAndSet(slot, callTime);
+            int delta = ( callTime >= cutoffLimit ? 1 : 0 ) - ( old >= cutoffLimit ? 1 : 0 );
+            if (delta != 0)
+                return above.addAndGet(delta);
+            return above.get();
         }
 
         public long numElementsAbove(long cutoffLimit) {
-            return stack.stream()
-                    .filter( e-> {if(e >= cutoffLimit) return true; else return false;})
-                    .count();
+            if (cutoffLimit == this.cutoffLimit)
+                return above.get();
+            long count = 0;
+            for (int i = 0 ; i < callTimes.length() ; i++) {
+                long callTime = callTimes.get(i);
+                if (callTime != EMPTY && callTime >= cutoffLimit)
+                    count++;
+            }
+            return count;
         }
     }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the highest replay speed the service can sustain
+ * <p>
+ * The replay speed is raised in steps (by the step percentage) until a step
+ * fails, then the speed is bisected between the last passing and the first
+ * failing speed. Each step runs for the window; the first quarter lets the
+ * service settle, and the rest is measured. A step fails if any of the
+ * service level rules (regardless of action), the call time constraint or
+ * the minimum completion rate is broken over the measured part.
+ * <p>
+ * The curve of all steps, and the knee (the highest passing speed) are added
+ * to the log collector.
+ */
+public class CapacitySearch implements ReplaySpeed, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CapacitySearch.class);
+
+    static final double MIN_RATE = 95.0;
+    static final double MAX_SPEED = 100_000.0;
+
+    private final Config config;
+    private final LogCollector logCollector;
+    private final SloWatchdog watchdog;
+    private final Runnable done;
+    private final double startSpeed;
+    private final List<Map<String, Object>> steps;
+    private final CountDownLatch closed;
+    private Thread thread;
+    private long started;
+    private double speed;
+    private long anchorWall;
+    private double anchorRecorded;
+    private double passing;
+    private double failing;
+    private int refined;
+    private boolean reported;
+
+    /**
+     * @param config       window, step, refinements, start speed (-r) and
+     *                     constraints
+     * @param logCollector where to read call times from and add the result to
+     * @param watchdog     where to read the service level statistics from
+     *                     (should keep at least the window)
+     * @param done         called when the search has found the knee
+     */
+    public CapacitySearch(Config config, LogCollector logCollector, SloWatchdog watchdog, Runnable done) {
+        this.config = config;
+        this.logCollector = logCollector;
+        this.watchdog = watchdog;
+        this.done = done;
+        this.startSpeed = config.getTimeScale() > 0 ? 100.0 / config.getTimeScale() : 100.0;
+        this.steps = new ArrayList<>();
+        this.closed = new CountDownLatch(1);
+        this.speed = startSpeed;
+    }
+
+    /**
+     * Start searching
+     *
+     * @param timeStarted when the replay started in epoch milliseconds
+     */
+    public void start(long timeStarted) {
+        started = timeStarted;
+        thread = new Thread(this::search, "capacity-search");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized long wallTimeOf(long recordingOffset) {
+        if (recordingOffset <= anchorRecorded)
+            return anchorWall;
+        return anchorWall + Math.round(( recordingOffset - anchorRecorded ) * 100.0 / speed);
+    }
+
+    @Override
+    public synchronized double speedAt(long wallTime) {
+        return speed;
+    }
+
+    /**
+     * Change the speed from now on
+     *
+     * @param newSpeed percent of the original speed
+     * @param wallTime ms since the replay started
+     */
+    synchronized void setSpeed(double newSpeed, long wallTime) {
+        anchorRecorded += ( wallTime - anchorWall ) * speed / 100.0;
+        anchorWall = wallTime;
+        speed = newSpeed;
+    }
+
+    /**
+     * Decide the speed of the next step
+     *
+     * @param passed if the current step passed
+     * @return speed of the next step, or 0 if the search is done
+     */
+    synchronized double next(boolean passed) {
+        if (passed)
+            passing = Math.max(passing, speed);
+        else
+            failing = failing == 0 ? speed : Math.min(failing, speed);
+        if (failing == 0) {
+            double higher = speed * ( 1 + config.getCapacityStep() / 100.0 );
+            return higher > MAX_SPEED ? 0 : higher;
+        }
+        if (refined >= config.getCapacityRefine())
+            return 0;
+        refined++;
+        return ( passing + failing ) / 2;
+    }
+
+    /**
+     * The highest passing speed
+     *
+     * @return percent of the original speed, 0 if no step passed
+     */
+    synchronized double getKnee() {
+        return passing;
+    }
+
+    private void search() {
+        long window = config.getCapacityWindow();
+        long settle = window / 4;
+        try {
+            double stepSpeed = startSpeed;
+            while (stepSpeed > 0) {
+                long stepStart = System.currentTimeMillis();
+                setSpeed(stepSpeed, stepStart - started);
+                log.info(String.format(Locale.ROOT, "Capacity search: trying %.1f%%", stepSpeed));
+                if (closed.await(settle, TimeUnit.MILLISECONDS))
+                    return;
+                long measureStart = System.currentTimeMillis();
+                LogLinearHistogram before = logCollector.getCallTimeHistogram();
+                long errorsBefore = logCollector.getErrorCount();
+                if (closed.await(stepStart + window - measureStart, TimeUnit.MILLISECONDS))
+                    return;
+                boolean passed = judge(stepSpeed, stepStart, measureStart, before, errorsBefore);
+                stepSpeed = next(passed);
+            }
+            report(true);
+            done.run();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("Capacity search failed: {}", ex.getMessage());
+            log.debug("Capacity search failed: ", ex);
+        }
+    }
+
+    private boolean judge(double stepSpeed, long stepStart, long measureStart, LogLinearHistogram before, long errorsBefore) {
+        long now = System.currentTimeMillis();
+        long measured = Math.max(1, now - measureStart);
+        LogLinearHistogram callTimes = logCollector.getCallTimeHistogram().since(before);
+        List<String> reasons = new ArrayList<>();
+
+        for (SloRule rule : config.getSloRules()) {
+            Double value = rule.valueOf(watchdog.over(Math.min(rule.getWindow(), measured)));
+            if (value != null && rule.isBreachedBy(value))
+                reasons.add("Rule " + rule + " broken (" + String.format(Locale.ROOT, "%.2f", value) + ")");
+        }
+        TimeWindow.Snapshot snapshot = watchdog.over(measured);
+        Double rate = snapshot.getIntended() == 0 ? null : snapshot.getCompleted() * 100.0 / snapshot.getIntended();
+        if (rate != null && rate < MIN_RATE)
+            reasons.add("Completed " + String.format(Locale.ROOT, "%.2f", rate) + "% of the scheduled calls");
+        String slow = callTimeBroken(callTimes);
+        if (slow != null)
+            reasons.add(slow);
+
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("speed", stepSpeed);
+        step.put("elapsed", stepStart - started);
+        step.put("duration", measured);
+        step.put("completed", callTimes.getCount());
+        step.put("throughput", callTimes.getCount() * 1000.0 / measured);
+        step.put("errors", logCollector.getErrorCount() - errorsBefore);
+        step.put("rate", rate);
+        step.put("p50", callTimes.getValueAtPercentile(50) / 1000.0);
+        step.put("p95", callTimes.getValueAtPercentile(95) / 1000.0);
+        step.put("p99", callTimes.getValueAtPercentile(99) / 1000.0);
+        step.put("max", callTimes.getMax() / 1000.0);
+        step.put("passed", reasons.isEmpty());
+        if (!reasons.isEmpty())
+            step.put("reasons", reasons);
+        synchronized (this) {
+            steps.add(step);
+        }
+        log.info(String.format(Locale.ROOT, "Capacity search: %.1f%% %s - throughput %.1f/s p99 %.1fms %s",
+                               stepSpeed, reasons.isEmpty() ? "passed" : "failed",
+                               step.get("throughput"), step.get("p99"), reasons));
+        return reasons.isEmpty();
+    }
+
+    /**
+     * If the calls of a step break the call time constraint
+     * <p>
+     * Only the calls of the step count, so slow calls of a failing step do
+     * not fail the next. The constraint allows the same share of slow calls
+     * as the call time watcher (max delayed of the buffer size), but at least
+     * max delayed calls.
+     *
+     * @param callTimes the call times (micros) of the measured part of the
+     *                  step
+     * @return reason, or null if the constraint is kept
+     */
+    String callTimeBroken(LogLinearHistogram callTimes) {
+        long constraint = config.getCallTimeConstraint();
+        long slow = callTimes.getCountAtOrAbove(TimeUnit.MILLISECONDS.toMicros(constraint));
+        double allowed = config.getMaxDelayedCalls() * Math.max(1.0, (double) callTimes.getCount() / config.getCallBufferSize());
+        if (slow <= allowed)
+            return null;
+        return slow + " of the " + callTimes.getCount() + " calls took longer than " + constraint + "ms";
+    }
+
+    /**
+     * Add the curve and knee to the log collector (once)
+     *
+     * @param complete if the search got to the end
+     */
+    synchronized void report(boolean complete) {
+        if (reported)
+            return;
+        reported = true;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("complete", complete);
+        result.put("knee", passing == 0 ? null : passing);
+        Object throughput = null;
+        for (Map<String, Object> step : steps) {
+            if (step.get("speed").equals(passing))
+                throughput = step.get("throughput");
+        }
+        result.put("throughput", throughput);
+        result.put("steps", new ArrayList<>(steps));
+        logCollector.setCapacity(result);
+        if (passing == 0)
+            log.warn("Capacity search: no speed passed{}", complete ? "" : " (incomplete)");
+        else
+            log.info(String.format(Locale.ROOT, "Capacity search: knee at %.1f%% (%s/s)%s",
+                                   passing, throughput, complete ? "" : " (incomplete)"));
+    }
+
+    /**
+     * Stop searching, and report the steps so far
+     */
+    @Override
+    public void close() {
+        closed.countDown();
+        if (thread != null) {
+            try {
+                thread.join(1000L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        report(false);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import dk.dbc.Arguments;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Parameters of the compare command, as supplied on the command line after
+ * "compare"
+ */
+public final class CompareConfig {
+
+    private final List<String> files;
+    private final List<RegressionGate> gates;
+    private final double confidence;
+    private final int bootstrap;
+    private final String output;
+
+    private static Options options() {
+        Options options = new Options();
+
+        options.addOption(Option.builder("g")
+                .longOpt("gate")
+                .hasArg()
+                .argName("GATE")
+                .desc("Fail (exit code " + Replayer.Status.Code.REGRESSION.getValue() + ") if a result is worse than the baseline by more than allowed ie. p99>10% (percent of the baseline), p99>20ms, mean>5% or errors>0.5% (percentage points). With :ci ie. p99>10%:ci the low end of the confidence interval is used, so noise does not fail. Can be repeated")
+                .build());
+
+        options.addOption(Option.builder("c")
+                .longOpt("confidence")
+                .hasArg()
+                .argName("PERCENT")
+                .desc("Confidence level of the intervals (default: 95)")
+                .build());
+
+        options.addOption(Option.builder("b")
+                .longOpt("bootstrap")
+                .hasArg()
+                .argName("NUM")
+                .desc("Number of bootstrap resamples for the confidence intervals, 0 means none (default: 1000)")
+                .build());
+
+        options.addOption(Option.builder("o")
+                .longOpt("output")
+                .hasArg()
+                .argName("FILE")
+                .desc("File to write the comparison to (default: stdout)")
+                .build());
+
+        return options;
+    }
+
+    private static final String FOOTER =
+            String.join("\n",
+                        "compare BASELINE RESULT [RESULT...]",
+                        "",
+                        "Compares the call times and statuses of replayer results (-o) with the",
+                        "first (the baseline).",
+                        "",
+                        "Copyright (C) 2019 DBC A/S (http://dbc.dk/)");
+
+    /**
+     * Construct a configuration from the arguments after "compare"
+     *
+     * @param args argument list
+     * @return configuration
+     */
+    public static CompareConfig of(String... args) {
+        return Arguments.parse(options(), FOOTER, CompareConfig::new, args);
+    }
+
+    private CompareConfig(Arguments args, Iterator<String> positionalArguments) throws ParseException {
+        List<String> list = new ArrayList<>();
+        positionalArguments.forEachRemaining(list::add);
+        if (list.size() < 2)
+            throw new ParseException("A baseline and at least one result are needed");
+        this.files = Collections.unmodifiableList(list);
+        this.gates = Collections.unmodifiableList(args.takeAll("g", RegressionGate::of));
+        this.confidence = args.take("c", "95", t -> {
+                                        double value = Double.parseDouble(t);
+                                        if (value <= 0 || value >= 100)
+                                            throw new RuntimeException("Confidence needs to be above 0 and below 100");
+                                        return value;
+                                    });
+        this.bootstrap = args.take("b", "1000", t -> {
+                                       int value = Integer.parseInt(t);
+                                       if (value < 0)
+                                           throw new RuntimeException("Number of resamples cannot be negative");
+                                       return value;
+                                   });
+        this.output = args.take("o", null, t -> t);
+        if (bootstrap == 0 && gates.stream().anyMatch(RegressionGate::isConfident))
+            throw new ParseException("A gate with :ci needs bootstrap resamples");
+    }
+
+    /**
+     * The result files
+     *
+     * @return the baseline first
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public List<RegressionGate> getGates() {
+        return gates;
+    }
+
+    /**
+     * @return confidence level in percent
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return number of bootstrap resamples
+     */
+    public int getBootstrap() {
+        return bootstrap;
+    }
+
+    /**
+     * @return file to write to, null for stdout
+     */
+    public String getOutput() {
+        return output;
+    }
+}
@@ -25,8 +25,13 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Parameters as supplied on the command line
@@ -37,18 +42,56 @@ public final class Config {
 
     private static final Logger log = LoggerFactory.getLogger(Config.class);
 
+    static final int DEFAULT_PRECISION = 3;
+    static final int DEFAULT_SLOWEST = 10;
+    static final int DEFAULT_TAIL_SAMPLE = 100;
+
     private final long durationConstraint;
     private final long replayTime;
+    private final long startAt;
+    private final boolean loop;
+    private final long requests;
+    private final int amplification;
+    private final long amplifyWindow;
+    private final Long amplifySeed;
+    private final String salt;
+    private final boolean planned;
+    private final int readAhead;
+    private final long liveDelay;
+    private final long warmupRequests;
+    private final long warmupTime;
+    private final Recording warmupRecording;
+    private final int prestart;
     private final long callTimeConstraint;
     private final long limit;
     private final String service;
-    private final String input;
+    private final String compareService;
+    private final List<Recording> recordings;
     private final String output;
     private final double timeScale;
+    private final LoadProfile loadProfile;
     private final boolean fullThrottle;
     private final int callBufferSize;
     private final int maxDelayedCalls;
     private final boolean dryRun;
+    private final List<SloRule> sloRules;
+    private final List<QueryClass> queryClasses;
+    private final int precision;
+    private final int slowest;
+    private final long tailThreshold;
+    private final int tailSample;
+    private final long reportInterval;
+    private final List<Integer> users;
+    private final long levelTime;
+    private final long thinkTime;
+    private final long capacityWindow;
+    private final int capacityStep;
+    private final int capacityRefine;
+    private final List<String> workers;
+    private final int workerPort;
+    private final boolean hashSplit;
+    private final long splitSlice;
+    private final List<String> workerArguments;
 
     private final Map<String, String> map;
 
@@ -73,7 +116,14 @@ public final class Config {
                 .longOpt("replay-time")
                 .hasArg()
                 .argName("DURATION")
-                .desc("Replay this much of the original recording ie. 15s or 3h")
+                .desc("Replay this much of the original recording ie. 15s or 3h (with -R of the looped recording)")
+                .build());
+
+        options.addOption(Option.builder("a")
+                .longOpt("start-at")
+                .hasArg()
+                .argName("DURATION")
+                .desc("Start this far into the recording(s) ie. 40m, found by a time index cached next to the recording as FILE.idx. The times are counted from there (as -t)")
                 .build());
 
         options.addOption(Option.builder("l")
@@ -87,14 +137,14 @@ public final class Config {
                 .longOpt("service")
                 .hasArg()
                 .argName("URL")
-                .desc("Connect url (host[:port])")
+                .desc("Connect url (host[:port]). Given twice, each call is sent to both services at its scheduled time (A/B comparison), and the call times are compared pairwise")
                 .build());
 
         options.addOption(Option.builder("i")
                 .longOpt("input")
                 .hasArg()
-                .argName("FILE")
-                .desc("File to read log lines from")
+                .argName("[TAG=]FILE[:SPEED[:WEIGHT]]")
+                .desc("File to read log lines from, - for stdin (default: stdin). Can be repeated to replay a mix of recordings in time order, each with its own SPEED (percent as -r, on top of -r/-P) and WEIGHT (percent of its lines replayed), ie. search=search.data:200:50. Statistics are broken down by TAG (default: the file name)")
                 .build());
 
         options.addOption(Option.builder("o")
@@ -111,6 +161,170 @@ public final class Config {
                 .desc("Replayspeed (ex. 110 is 10% faster than original speed, 0 means no delay between calls")
                 .build());
 
+        options.addOption(Option.builder("P")
+                .longOpt("profile")
+                .hasArg()
+                .argName("PROFILE")
+                .desc("Vary the replay speed over the run, instead of -r. Comma separated SPEED[-SPEED]:DURATION segments, where SPEED is as -r, and two speeds is a linear ramp ie. 100:5m,100-400:10m,400:10m. @FILE reads the segments (one per line) from a file. The last speed is kept after the profile")
+                .build());
+
+        options.addOption(Option.builder("S")
+                .longOpt("slo")
+                .hasArg()
+                .argName("RULE")
+                .desc("Service level rule checked every second over a sliding window, ie. p99>800ms/30s, errors>2%/10s:warn or rate<90%/30s (completed in percent of scheduled calls). Breaking an abort rule (default) stops the replay, a warn rule is only reported. Can be repeated")
+                .build());
+
+        options.addOption(Option.builder("k")
+                .longOpt("class")
+                .hasArg()
+                .argName("RULE")
+                .desc("Summarize the calls by class of query, ie. path (the path, path:2 the first 2 segments), param:facet=true (if the query has the parameter) or match:export=rows=\\d{4,} (a label if the query matches the regular expression). The class is the labels of the rules, the first matching match: rule only. Each class takes about " + Math.round(LogCollector.classMemory() / 1024.0) + "KB (a call time histogram with " + LogCollector.BREAKDOWN_PRECISION + " significant digits), at most " + LogCollector.MAX_CLASSES + " classes or " + ( LogCollector.MAX_CLASS_MEMORY >> 20 ) + "MB, the rest are counted as " + QueryClass.OTHER + ". Can be repeated")
+                .build());
+
+        options.addOption(Option.builder("K")
+                .longOpt("slowest")
+                .hasArg()
+                .argName("NUM")
+                .desc("Number of the slowest calls to list in the summary (default: " + DEFAULT_SLOWEST + ")")
+                .build());
+
+        options.addOption(Option.builder("G")
+                .longOpt("tail-sample")
+                .hasArg()
+                .argName("DURATION[/NUM]")
+                .desc("List a random sample of NUM (default: " + DEFAULT_TAIL_SAMPLE + ") of the calls slower than DURATION in the summary ie. 500ms/50")
+                .build());
+
+        options.addOption(Option.builder("p")
+                .longOpt("precision")
+                .hasArg()
+                .argName("DIGITS")
+                .desc("Significant digits of the call time histogram 1-4 (default: " + DEFAULT_PRECISION + "). Each digit multiplies the memory of the call time and size histograms by about 10, ~0.5MB at 3 and ~6MB at 4. The breakdowns (per recording, service or class) are kept with at most " + LogCollector.BREAKDOWN_PRECISION)
+                .build());
+
+        options.addOption(Option.builder("I")
+                .longOpt("interval")
+                .hasArg()
+                .argName("DURATION")
+                .desc("Report throughput and call times every DURATION ie. 10s, 0 means no reports (default: 10s)")
+                .build());
+
+        options.addOption(Option.builder("u")
+                .longOpt("users")
+                .hasArg()
+                .argName("NUM[,NUM...]")
+                .desc("Closed loop: NUM virtual users each send the next call as soon as the previous has completed (the recorded timing and -r are ignored). Several concurrency levels can be given, they are run one after the other for the level time")
+                .build());
+
+        options.addOption(Option.builder("L")
+                .longOpt("level-time")
+                .hasArg()
+                .argName("DURATION")
+                .desc("How long each concurrency level of -u runs ie. 5m (default: the duration constraint)")
+                .build());
+
+        options.addOption(Option.builder("T")
+                .longOpt("think-time")
+                .hasArg()
+                .argName("DURATION")
+                .desc("Pause of a virtual user between calls ie. 100ms (default: 0)")
+                .build());
+
+        options.addOption(Option.builder("C")
+                .longOpt("capacity")
+                .hasArg()
+                .argName("WINDOW[/STEP[/REFINE]]")
+                .desc("Search for the highest replay speed the service can sustain. Starting at -r, the speed is raised by STEP percent (default: 50) every WINDOW ie. 1m, until a step breaks a service level rule (-S), the calltime constraint (-c) or completes less than " + (int) CapacitySearch.MIN_RATE + "% of the scheduled calls, then the speed is bisected REFINE times (default: 3). The first quarter of each step is not measured")
+                .build());
+
+        options.addOption(Option.builder("w")
+                .longOpt("workers")
+                .hasArg()
+                .argName("HOST:PORT[,HOST:PORT...]")
+                .desc("Coordinate a distributed replay: the recording is split across the workers (started with -W), that replay their part from a common start instant. The result is merged into the output, the loglines stay with the workers")
+                .build());
+
+        options.addOption(Option.builder("W")
+                .longOpt("worker")
+                .hasArg()
+                .argName("PORT")
+                .desc("Run as a worker of a distributed replay, listening for a coordinator on PORT. Only -o is used, for the loglines of the worker")
+                .build());
+
+        options.addOption(Option.builder("X")
+                .longOpt("split")
+                .hasArg()
+                .argName("time[:SLICE]|hash")
+                .desc("How the recording is split across the workers: round-robin slices of the recorded time ie. time:5s, or by the hash of the query (default: time:1s)")
+                .build());
+
+        options.addOption(Option.builder("R")
+                .longOpt("loop")
+                .desc("Loop the recording(s), continuing the recorded time after the end, until the duration (-d), the replay time (-t) or the number of requests (-N) is reached")
+                .build());
+
+        options.addOption(Option.builder("N")
+                .longOpt("requests")
+                .hasArg()
+                .argName("NUM")
+                .desc("Stop (as complete) after NUM requests")
+                .build());
+
+        options.addOption(Option.builder("A")
+                .longOpt("amplify")
+                .hasArg()
+                .argName("K[/WINDOW[/SEED]]")
+                .desc("Send each recorded request K times, spread evenly over WINDOW (default: 10ms) around the recorded time, or at random positions when a SEED is given. The time between the recorded requests is kept")
+                .build());
+
+        options.addOption(Option.builder("Q")
+                .longOpt("salt")
+                .hasArg()
+                .argName("PARAM")
+                .desc("Add the query parameter PARAM with a unique value to the copies made by -A, so a cache cannot answer them")
+                .build());
+
+        options.addOption(Option.builder("M")
+                .longOpt("plan")
+                .desc("Read the whole recording into memory before the start, so the calls are dispatched without reading or parsing (for high replay speeds and -r 0)")
+                .build());
+
+        options.addOption(Option.builder("B")
+                .longOpt("read-ahead")
+                .hasArg()
+                .argName("NUM")
+                .desc("Read and parse up to NUM requests ahead of the dispatcher on a separate thread, 0 means reading on the dispatcher (default: 4096)")
+                .build());
+
+        options.addOption(Option.builder("U")
+                .longOpt("warmup")
+                .hasArg()
+                .argName("DURATION|NUM")
+                .desc("Warm-up: the calls of the first DURATION ie. 2m, or the first NUM requests are sent, but reported apart (in the summary only) and not watched by -c or -S. The time counts in -d")
+                .build());
+
+        options.addOption(Option.builder("J")
+                .longOpt("warmup-input")
+                .hasArg()
+                .argName("FILE")
+                .desc("Warm-up with a recording of its own, that is replayed before the replay starts (up to -U if given)")
+                .build());
+
+        options.addOption(Option.builder("E")
+                .longOpt("prestart")
+                .hasArg()
+                .argName("NUM")
+                .desc("Before the replay starts: warm up the client by calls to a local sink until the JIT compiler has settled, and open NUM connections to the service (a HEAD of the service url), so the first calls are not slowed by the client. Fails if no connection can be opened")
+                .build());
+
+        options.addOption(Option.builder("Y")
+                .longOpt("live")
+                .hasArg()
+                .argName("DELAY")
+                .desc("Shadow live traffic: read a recording while it is written (ie. a FIFO the recorder writes to from Kafka), and send each call DELAY ie. 2s after it was recorded, counted from the start time in the header of the recording. DELAY is the buffer for lines that arrive late, they are sent at once (and reported as lag). Only for one recording at the recorded speed")
+                .build());
+
         options.addOption(Option.builder("n")
                 .longOpt("dry-run")
                 .desc("Dryrun don't perform actual calls")
@@ -130,15 +344,23 @@ public final class Config {
      * @return configuration
      */
     public static Config of(String... args) {
-        return Arguments.parse(options(), FOOTER, Config::new, args);
+        return Arguments.parse(options(), FOOTER, (a, p) -> new Config(a, p, args), args);
     }
 
-    private Config(Arguments args, Iterator<String> positionalArguments) throws ParseException {
+    private Config(Arguments args, Iterator<String> positionalArguments, String[] commandLine) throws ParseException {
         if (positionalArguments.hasNext())
             throw new ParseException("Unexpected positional argument(s) at: " + positionalArguments.next());
 
         this.durationConstraint = args.take("d", "1h", Config::parseTimeSpec);
-        this.replayTime = args.take("t", "1h", Config::parseTimeSpec);
+        this.replayTime = args.take("t", String.valueOf(Long.MAX_VALUE) + "ms", Config::parseTimeSpec);
+        this.startAt = args.take("a", "0", t -> t.equals("0") ? 0L : parseTimeSpec(t));
+        this.loop = args.isSet("R");
+        this.requests = args.take("N", String.valueOf(Long.MAX_VALUE), t -> {
+                              long value = Long.parseLong(t);
+                              if (value < 1)
+                                  throw new RuntimeException("Number of requests needs to be at least 1");
+                              return value;
+                          });
 
         String callTimeOption = args.take("c", "5s/10/100", t -> t);
         String[] parts = callTimeOption.split("(/)", 3);
@@ -153,12 +375,27 @@ public final class Config {
             throw new ParseException("Calltime constraint not valid");
         }
 
-        this.service = args.take("s", null, t -> t);
-        this.input = args.take("i", null, t -> t);
+        List<String> services = args.takeAll("s", t -> t);
+        if (services.size() > 2)
+            throw new ParseException("At most two services can be compared");
+        this.service = services.isEmpty() ? null : services.get(0);
+        this.compareService = services.size() > 1 ? services.get(1) : null;
+        List<Recording> inputs = args.takeAll("i", Recording::of);
         this.output = args.take("o", null, t -> t);
 
-        if (this.service == null)
+        Integer port = args.take("W", null, t -> {
+                                 int value = Integer.parseInt(t);
+                                 if (value < 1 || value > 65535)
+                                     throw new RuntimeException("Port needs to be 1-65535");
+                                 return value;
+                             });
+        this.workerPort = port == null ? 0 : port;
+
+        if (this.service == null && workerPort == 0)
             throw new ParseException("Service-URL is mandatory");
+        if (inputs.isEmpty() && workerPort == 0)
+            inputs.add(Recording.of(Recording.STDIN));
+        this.recordings = Collections.unmodifiableList(inputs);
 
         this.limit = args.take("l", String.valueOf(Long.MAX_VALUE), t -> {
                            long value = Long.parseLong(t);
@@ -181,20 +418,171 @@ public final class Config {
                                return scaler;
                            });
 
-        this.fullThrottle = args.take("r", "100", t -> Integer.parseInt(t) == 0);
+        this.fullThrottle = !args.isSet("P") && !args.isSet("C") && args.take("r", "100", t -> Integer.parseInt(t) == 0);
+        this.loadProfile = args.take("P", null, Config::parseProfile);
         this.dryRun = args.isSet("n");
+        this.sloRules = Collections.unmodifiableList(args.takeAll("S", SloRule::of));
+        this.queryClasses = Collections.unmodifiableList(args.takeAll("k", QueryClass::of));
+        this.precision = args.take("p", String.valueOf(DEFAULT_PRECISION), t -> {
+                               int value = Integer.parseInt(t);
+                               if (value < 1 || value > 4)
+                                   throw new RuntimeException("Precision needs to be 1-4 digits");
+                               return value;
+                           });
+        this.slowest = args.take("K", String.valueOf(DEFAULT_SLOWEST), t -> {
+                             int value = Integer.parseInt(t);
+                             if (value < 0)
+                                 throw new RuntimeException("Number of slowest calls cannot be negative");
+                             return value;
+                         });
+        Long threshold = args.take("G", null, t -> parseTimeSpec(t.split("/", 2)[0]));
+        this.tailThreshold = threshold == null ? -1L : threshold;
+        this.tailSample = args.take("G", "", t -> {
+                                        String[] tail = t.split("/", 2);
+                                        int value = tail.length < 2 ? DEFAULT_TAIL_SAMPLE : Integer.parseInt(tail[1]);
+                                        if (value < 1)
+                                            throw new RuntimeException("Tail sample needs to be at least 1 call");
+                                        return value;
+                                    });
+        this.reportInterval = args.take("I", "10s", t -> t.equals("0") ? 0L : parseTimeSpec(t));
+        this.users = Collections.unmodifiableList(args.take("u", "", Config::parseUsers));
+
+        String amplifyOption = args.take("A", "1", t -> t);
+        String[] amplifyParts = amplifyOption.split("/", 3);
+        try {
+            this.amplification = Integer.parseInt(amplifyParts[0]);
+            this.amplifyWindow = amplifyParts.length > 1 ? ( amplifyParts[1].equals("0") ? 0L : parseTimeSpec(amplifyParts[1]) ) : 10L;
+            this.amplifySeed = amplifyParts.length > 2 ? Long.valueOf(amplifyParts[2]) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Amplification not valid: " + e.getMessage());
+        }
+        if (amplification < 1)
+            throw new ParseException("Amplification needs to be at least 1");
+        this.salt = args.take("Q", null, t -> {
+                              if (!t.matches("[A-Za-z0-9_.-]+"))
+                                  throw new RuntimeException("Salt needs to be a plain parameter name");
+                              return t;
+                          });
+        this.levelTime = args.take("L", String.valueOf(durationConstraint) + "ms", Config::parseTimeSpec);
+        this.thinkTime = args.take("T", "0", t -> t.equals("0") ? 0L : parseTimeSpec(t));
+
+        String capacityOption = args.take("C", "0", t -> t);
+        String[] capacityParts = capacityOption.split("/", 3);
+        try {
+            this.capacityWindow = capacityParts[0].equals("0") ? 0L : parseTimeSpec(capacityParts[0]);
+            this.capacityStep = capacityParts.length > 1 ? Integer.parseInt(capacityParts[1]) : 50;
+            this.capacityRefine = capacityParts.length > 2 ? Integer.parseInt(capacityParts[2]) : 3;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Capacity search not valid: " + e.getMessage());
+        }
+        if (capacityWindow != 0 && capacityWindow < 4000)
+            throw new ParseException("Capacity search window needs to be at least 4s");
+        if (capacityStep < 1 || capacityRefine < 0)
+            throw new ParseException("Capacity search step needs to be at least 1% and refinements not negative");
+        if (capacityWindow != 0 && ( loadProfile != null || !users.isEmpty() ))
+            throw new ParseException("Capacity search cannot be combined with a load profile or virtual users");
+
+        this.workers = Collections.unmodifiableList(args.take("w", "", Config::parseWorkers));
+        String split = args.take("X", "time:1s", t -> t.toLowerCase(Locale.ROOT));
+        this.hashSplit = split.equals("hash");
+        if (!hashSplit && !split.matches("time(:.*)?"))
+            throw new ParseException("Split needs to be time[:SLICE] or hash");
+        try {
+            this.splitSlice = hashSplit ? 0L : parseTimeSpec(split.equals("time") ? "1s" : split.substring(5));
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Split not valid: " + e.getMessage());
+        }
+        this.planned = args.isSet("M");
+        this.readAhead = args.take("B", "4096", t -> {
+                                 int value = Integer.parseInt(t);
+                                 if (value < 0 || value > 1 << 24)
+                                     throw new RuntimeException("Read-ahead needs to be 0-" + ( 1 << 24 ));
+                                 return value;
+                             });
+        Long live = args.take("Y", null, t -> t.equals("0") ? 0L : parseTimeSpec(t));
+        this.liveDelay = live == null ? -1L : live;
+        if (liveDelay >= 0 && ( recordings.size() > 1 || loop || startAt != 0 || planned || args.isSet("r") ||
+                                loadProfile != null || capacityWindow != 0 || !users.isEmpty() || !workers.isEmpty() ))
+            throw new ParseException("A live replay needs one recording, and cannot be combined with -R, -a, -M, -r, -P, -C, -u or -w");
+        this.warmupRequests = args.take("U", "0", t -> t.matches("\\d+") ? Long.parseLong(t) : 0L);
+        this.warmupTime = args.take("U", "0", t -> t.matches("\\d+") ? 0L : parseTimeSpec(t));
+        this.warmupRecording = args.take("J", null, Recording::of);
+        this.prestart = args.take("E", "0", t -> {
+                                      int value = Integer.parseInt(t);
+                                      if (value < 0 || value > 1000)
+                                          throw new RuntimeException("Number of connections needs to be 0-1000");
+                                      return value;
+                                  });
+        if (( warmupRequests > 0 || warmupTime > 0 ) && capacityWindow != 0)
+            throw new ParseException("A warm-up cannot be combined with a capacity search");
+        if (warmupRecording != null && ( liveDelay >= 0 || !workers.isEmpty() || warmupRecording.isStdin() ))
+            throw new ParseException("A warm-up recording cannot be stdin, and cannot be combined with -Y or -w");
+        if (compareService != null && ( planned || !users.isEmpty() || capacityWindow != 0 || !workers.isEmpty() ))
+            throw new ParseException("A comparison cannot be combined with -M, -u, -C or -w");
+        long stdin = recordings.stream().filter(Recording::isStdin).count();
+        if (stdin > 1 || stdin > 0 && loop)
+            throw new ParseException("Stdin can only be read once, and cannot be looped");
+        if (planned && !users.isEmpty())
+            throw new ParseException("A plan cannot be used with virtual users");
+        if (planned && loop && replayTime == Long.MAX_VALUE && requests == Long.MAX_VALUE && limit == Long.MAX_VALUE)
+            throw new ParseException("A planned loop needs a replay time (-t), a number of requests (-N) or lines (-l)");
+        if (!workers.isEmpty() && ( capacityWindow != 0 || !users.isEmpty() ))
+            throw new ParseException("A distributed replay cannot be combined with a capacity search or virtual users");
+        if (!workers.isEmpty() && loop && replayTime == Long.MAX_VALUE && requests == Long.MAX_VALUE && limit == Long.MAX_VALUE)
+            throw new ParseException("A distributed loop needs a replay time (-t) or a number of requests (-N)");
+        this.workerArguments = Collections.unmodifiableList(coordinatorOnly(commandLine));
 
         this.map = Collections.unmodifiableMap(new HashMap<String, String>() {
             {
                 put("durationConstraint", String.valueOf(durationConstraint));
                 put("replayTime", String.valueOf(replayTime));
+                put("startAt", String.valueOf(startAt));
+                put("loop", String.valueOf(loop));
+                put("requests", String.valueOf(requests));
                 put("callConstraint", String.valueOf(callTimeConstraint) + "/" + maxDelayedCalls + "/" + callBufferSize);
                 put("limit", String.valueOf(limit));
                 put("service", service);
-                put("input", input);
+                if (compareService != null)
+                    put("compare", compareService);
+                put("input", recordings.stream().map(Recording::toString).collect(Collectors.joining(" ")));
                 put("output", output);
                 put("replay", args.take("r", "100", t -> t));
+                if (loadProfile != null)
+                    put("profile", loadProfile.toString());
                 put("dryRun", String.valueOf(dryRun));
+                put("precision", String.valueOf(precision));
+                put("slowest", String.valueOf(slowest));
+                if (tailThreshold >= 0)
+                    put("tailSample", tailThreshold + "ms/" + tailSample);
+                put("interval", String.valueOf(reportInterval));
+                if (!users.isEmpty()) {
+                    put("users", users.stream().map(String::valueOf).collect(Collectors.joining(",")));
+                    put("levelTime", String.valueOf(levelTime));
+                    put("thinkTime", String.valueOf(thinkTime));
+                }
+                if (capacityWindow != 0)
+                    put("capacity", capacityWindow + "/" + capacityStep + "/" + capacityRefine);
+                if (!workers.isEmpty()) {
+                    put("workers", String.join(",", workers));
+                    put("split", hashSplit ? "hash" : "time:" + splitSlice + "ms");
+                }
+                if (amplification > 1)
+                    put("amplify", amplification + "/" + amplifyWindow + "ms" + ( amplifySeed == null ? "" : "/" + amplifySeed ));
+                if (salt != null)
+                    put("salt", salt);
+                put("plan", String.valueOf(planned));
+                put("readAhead", String.valueOf(readAhead));
+                if (liveDelay >= 0)
+                    put("live", String.valueOf(liveDelay));
+                if (warmupRequests > 0 || warmupTime > 0)
+                    put("warmup", warmupRequests > 0 ? String.valueOf(warmupRequests) : warmupTime + "ms");
+                if (warmupRecording != null)
+                    put("warmupInput", warmupRecording.getFile());
+                if (prestart > 0)
+                    put("prestart", String.valueOf(prestart));
+                put("slo", sloRules.stream().map(SloRule::toString).collect(Collectors.joining(" ")));
+                if (!queryClasses.isEmpty())
+                    put("classes", queryClasses.stream().map(QueryClass::toString).collect(Collectors.joining(" ")));
             }
         });
         log.debug(this.toString());
@@ -202,17 +590,20 @@ public final class Config {
 
     /**
      * @param t Timespec. Can be any positive number followed by either
-     *          s, m, h or d for resp. Seconds, Minutes, Hours or days
-     * @return
+     *          ms, s, m, h or d for resp. Milliseconds, Seconds, Minutes, Hours
+     *          or days
+     * @return milliseconds
      */
-    private static long parseTimeSpec(String t) throws RuntimeException {
+    static long parseTimeSpec(String t) throws RuntimeException {
         String[] parts = t.split("(?=[^0-9])", 2);
         if (parts.length != 2)
-            throw new IllegalArgumentException("Duration is not in valid format [number]d/h/m/s");
+            throw new IllegalArgumentException("Duration is not in valid format [number]d/h/m/s/ms");
         long number = Long.parseUnsignedLong(parts[0]);
         if (number < 1)
             throw new IllegalArgumentException("Duration is negative");
         switch (parts[1].toLowerCase(Locale.ROOT)) {
+            case "ms":
+                return number;
             case "s":
                 return Duration.ofSeconds(number).toMillis();
             case "m":
@@ -222,8 +613,85 @@ public final class Config {
             case "d":
                 return Duration.ofDays(number).toMillis();
             default:
-                throw new IllegalArgumentException("Duration is not in valid format [number]d/h/m/s");
+                throw new IllegalArgumentException("Duration is not in valid format [number]d/h/m/s/ms");
+        }
+    }
+
+    /**
+     * @param t profile or @file
+     * @return load profile
+     */
+    static LoadProfile parseProfile(String t) {
+        if (!t.startsWith("@"))
+            return LoadProfile.of(t);
+        try {
+            return LoadProfile.of(new String(Files.readAllBytes(Paths.get(t.substring(1))), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Cannot read profile: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param t comma separated list of positive numbers
+     * @return list of numbers
+     */
+    static List<Integer> parseUsers(String t) {
+        List<Integer> levels = new ArrayList<>();
+        if (t.isEmpty())
+            return levels;
+        for (String level : t.split(",")) {
+            int value = Integer.parseInt(level.trim());
+            if (value < 1)
+                throw new IllegalArgumentException("Number of users needs to be at least 1");
+            levels.add(value);
+        }
+        return levels;
+    }
+
+    /**
+     * @param t comma separated list of host:port
+     * @return list of addresses
+     */
+    static List<String> parseWorkers(String t) {
+        List<String> addresses = new ArrayList<>();
+        if (t.isEmpty())
+            return addresses;
+        for (String address : t.split(",")) {
+            String worker = address.trim();
+            if (!worker.matches(".+:\\d+"))
+                throw new IllegalArgumentException("Worker needs to be host:port (" + worker + ")");
+            addresses.add(worker);
+        }
+        return addresses;
+    }
+
+    /**
+     * The command line without the options, that only concern the
+     * coordinator (workers, split, input, output, limit, loop, requests and
+     * start time)
+     *
+     * @param commandLine arguments as supplied from main
+     * @return arguments for the workers
+     */
+    private static List<String> coordinatorOnly(String[] commandLine) {
+        Options options = options();
+        Set<String> excluded = new HashSet<>(Arrays.asList("w", "W", "X", "i", "o", "l", "R", "N", "a"));
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0 ; i < commandLine.length ; i++) {
+            String argument = commandLine[i];
+            String name = argument.replaceFirst("^--?", "").replaceFirst("=.*", "");
+            Option option = null;
+            if (argument.startsWith("-") && !name.isEmpty()) {
+                option = options.getOption(name);
+                if (option == null && !argument.startsWith("--"))
+                    option = options.getOption(name.substring(0, 1)); // ie. -ofile
+            }
+            if (option == null || !excluded.contains(option.getOpt()))
+                arguments.add(argument);
+            else if (option.hasArg() && ( argument.equals("-" + option.getOpt()) || argument.equals("--" + option.getLongOpt()) ))
+                i++; // The value is the next argument
         }
+        return arguments;
     }
 
     @Override
@@ -231,7 +699,7 @@ public final class Config {
         return "Config: " + asMap().toString();
     }
 
-    public Map asMap() {
+    public Map<String, String> asMap() {
         return map;
     }
 
@@ -243,6 +711,33 @@ public final class Config {
         return replayTime;
     }
 
+    /**
+     * Recorded time to start the recordings at
+     *
+     * @return ms (0 for the start)
+     */
+    public long getStartAt() {
+        return startAt;
+    }
+
+    /**
+     * If the recordings are replayed again, when they end
+     *
+     * @return if -R is given
+     */
+    public boolean isLoop() {
+        return loop;
+    }
+
+    /**
+     * Number of requests to stop after
+     *
+     * @return number (Long.MAX_VALUE if unlimited)
+     */
+    public long getRequests() {
+        return requests;
+    }
+
     public long getCallTimeConstraint() {
         return callTimeConstraint;
     }
@@ -259,8 +754,40 @@ public final class Config {
         return service;
     }
 
+    /**
+     * The second service of an A/B comparison
+     *
+     * @return url or null if not comparing
+     */
+    public String getCompareService() {
+        return compareService;
+    }
+
+    /**
+     * If each call is sent to two services
+     *
+     * @return if -s is given twice
+     */
+    public boolean isComparison() {
+        return compareService != null;
+    }
+
+    /**
+     * The file of the (first) recording
+     *
+     * @return file name or null if none is given
+     */
     public String getInput() {
-        return input;
+        return recordings.isEmpty() ? null : recordings.get(0).getFile();
+    }
+
+    /**
+     * The recordings to mix
+     *
+     * @return recordings in command line order
+     */
+    public List<Recording> getRecordings() {
+        return recordings;
     }
 
     public String getOutput() {
@@ -282,4 +809,269 @@ public final class Config {
     public boolean isFullThrottle() {
         return fullThrottle;
     }
+
+    /**
+     * The replay speed over time
+     *
+     * @return the profile given by -P, or a constant profile of -r (null
+     *         for full throttle)
+     */
+    public LoadProfile getLoadProfile() {
+        if (loadProfile != null)
+            return loadProfile;
+        return fullThrottle ? null : LoadProfile.constant(100.0 / timeScale);
+    }
+
+    public List<SloRule> getSloRules() {
+        return sloRules;
+    }
+
+    /**
+     * The rules to classify queries by
+     *
+     * @return rules, empty if the calls are not summarized by class
+     */
+    public List<QueryClass> getQueryClasses() {
+        return queryClasses;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return number of the slowest calls to keep
+     */
+    public int getSlowest() {
+        return slowest;
+    }
+
+    /**
+     * Call time a call needs to exceed to be in the tail sample
+     *
+     * @return ms, negative for no tail sample
+     */
+    public long getTailThreshold() {
+        return tailThreshold;
+    }
+
+    /**
+     * @return number of calls in the tail sample
+     */
+    public int getTailSample() {
+        return tailSample;
+    }
+
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    /**
+     * If calls are sent by virtual users, instead of at the recorded times
+     *
+     * @return if any concurrency levels are given
+     */
+    public boolean isClosedLoop() {
+        return !users.isEmpty();
+    }
+
+    public List<Integer> getUsers() {
+        return users;
+    }
+
+    public long getLevelTime() {
+        return levelTime;
+    }
+
+    public long getThinkTime() {
+        return thinkTime;
+    }
+
+    /**
+     * Number of times each recorded request is sent
+     *
+     * @return K of -A (1 if not amplified)
+     */
+    public int getAmplification() {
+        return amplification;
+    }
+
+    /**
+     * Time around the recorded time, that the copies are spread over
+     *
+     * @return ms
+     */
+    public long getAmplifyWindow() {
+        return amplifyWindow;
+    }
+
+    /**
+     * Seed of the random positions of the copies
+     *
+     * @return seed or null if the copies are spread evenly
+     */
+    public Long getAmplifySeed() {
+        return amplifySeed;
+    }
+
+    /**
+     * If the requests are read into memory before the start
+     *
+     * @return if -M is given
+     */
+    public boolean isPlanned() {
+        return planned;
+    }
+
+    /**
+     * If the recording is read while it is written, and replayed relative
+     * to the wall clock
+     *
+     * @return if -Y is given
+     */
+    public boolean isLive() {
+        return liveDelay >= 0;
+    }
+
+    /**
+     * How long after the recorded time a call is sent in a live replay
+     *
+     * @return ms
+     */
+    public long getLiveDelay() {
+        return liveDelay;
+    }
+
+    /**
+     * If calls are sent to warm up, before the measured calls
+     *
+     * @return if a warm-up (-U or -J) is given
+     */
+    public boolean hasWarmup() {
+        return warmupRequests > 0 || warmupTime > 0 || warmupRecording != null;
+    }
+
+    /**
+     * @return number of requests of the warm-up, 0 if not limited by number
+     */
+    public long getWarmupRequests() {
+        return warmupRequests;
+    }
+
+    /**
+     * @return ms of the warm-up, 0 if not limited by time
+     */
+    public long getWarmupTime() {
+        return warmupTime;
+    }
+
+    /**
+     * A recording replayed to warm up, before the replay
+     *
+     * @return recording, null for a warm-up at the start of the replay
+     */
+    public Recording getWarmupRecording() {
+        return warmupRecording;
+    }
+
+    /**
+     * Number of connections to open before the replay starts
+     *
+     * @return connections, 0 for no pre-start
+     */
+    public int getPrestart() {
+        return prestart;
+    }
+
+    /**
+     * Number of requests read ahead of the dispatcher
+     *
+     * @return number (0 for no read-ahead thread)
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Query parameter added to the copies
+     *
+     * @return name or null for none
+     */
+    public String getSalt() {
+        return salt;
+    }
+
+    /**
+     * If this coordinates a distributed replay
+     *
+     * @return if any workers are given
+     */
+    public boolean isCoordinator() {
+        return !workers.isEmpty();
+    }
+
+    public List<String> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * If this is a worker of a distributed replay
+     *
+     * @return if a port to listen on is given
+     */
+    public boolean isWorker() {
+        return workerPort != 0;
+    }
+
+    public int getWorkerPort() {
+        return workerPort;
+    }
+
+    /**
+     * If the recording is split across the workers by the hash of the query
+     *
+     * @return false if split by time slices
+     */
+    public boolean isHashSplit() {
+        return hashSplit;
+    }
+
+    /**
+     * Length of the time slices, the recording is split in
+     *
+     * @return ms
+     */
+    public long getSplitSlice() {
+        return splitSlice;
+    }
+
+    /**
+     * The command line to pass on to the workers
+     *
+     * @return arguments, without those that only concern the coordinator
+     */
+    public List<String> getWorkerArguments() {
+        return workerArguments;
+    }
+
+    /**
+     * If the replay speed is searched for the capacity of the service
+     *
+     * @return if a capacity search window is given
+     */
+    public boolean isCapacitySearch() {
+        return capacityWindow != 0;
+    }
+
+    public long getCapacityWindow() {
+        return capacityWindow;
+    }
+
+    public int getCapacityStep() {
+        return capacityStep;
+    }
+
+    public int getCapacityRefine() {
+        return capacityRefine;
+    }
 }
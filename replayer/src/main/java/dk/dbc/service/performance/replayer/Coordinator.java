@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Coordinator of a distributed replay
+ * <p>
+ * The recording is split across the workers (see {@link Worker}), either in
+ * round-robin slices of the recorded time, or by the hash of the query. The
+ * lines keep their recorded time, so together the workers replay the
+ * recording as a single replayer would. When all workers have received their
+ * part, they are given a common start instant, and when they are done, their
+ * statistics are merged into the log collector, so the summary has the same
+ * shape as that of a single replayer.
+ * <p>
+ * The protocol is newline delimited over a plain socket: a json job (the
+ * command line and part), the lines of the part, and an empty line. The worker
+ * answers with a json ready, the coordinator sends a json start instant, and
+ * the worker answers with its exported statistics.
+ */
+public class Coordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(Coordinator.class);
+
+    static final long START_DELAY = 2000L;
+    private static final int CONNECT_TIMEOUT = 10_000;
+
+    private final Config config;
+    private final ObjectMapper mapper;
+
+    public Coordinator(Config config) {
+        this.config = config;
+        this.mapper = new ObjectMapper();
+    }
+
+    /**
+     * Run the replay on the workers, and record the merged result
+     *
+     * @return 0 for complete run, the first status of a worker, that was not
+     *         complete, or 1 if the workers could not be reached
+     */
+    public int run() {
+        LogCollector logCollector = new LogCollector(config);
+        logCollector.addConfig(config.asMap());
+        try {
+            logCollector.open(config.getOutput() == null ? null : new FileOutputStream(config.getOutput()));
+        } catch (IOException ex) {
+            log.error("Cannot write to output: {}", ex.getMessage());
+            return Replayer.Status.Code.IOERROR.getValue();
+        }
+
+        int code = Replayer.Status.Code.OK.getValue();
+        String message = "";
+        List<Connection> connections = new ArrayList<>();
+        try {
+            if (config.getRecordings().isEmpty())
+                throw new IOException("No recording given");
+            for (Recording recording : config.getRecordings()) {
+                if (!recording.exists())
+                    throw new IOException("File " + recording.getFile() + " does not exist or is not a file");
+            }
+            for (String address : config.getWorkers()) {
+                connections.add(new Connection(address));
+            }
+            distribute(connections);
+            for (Connection connection : connections) {
+                connection.receive();
+            }
+            long start = System.currentTimeMillis() + START_DELAY;
+            Map<String, Object> startAt = new LinkedHashMap<>();
+            startAt.put("start", start);
+            for (Connection connection : connections) {
+                connection.send(startAt);
+            }
+            log.info("Replay starts at {} on {} workers", Instant.ofEpochMilli(start), connections.size());
+
+            StringJoiner messages = new StringJoiner("; ");
+            for (Connection connection : connections) {
+                JsonNode result = connection.receive();
+                logCollector.merge(result);
+                int status = result.path("status").path("code").asInt();
+                String text = result.path("status").path("message").asText("");
+                if (status != Replayer.Status.Code.OK.getValue() && code == Replayer.Status.Code.OK.getValue())
+                    code = status;
+                if (!text.isEmpty())
+                    messages.add(connection.address + ": " + text);
+                log.info("Worker {} completed {} calls (status {})", connection.address, result.path("callStat").path("count").asLong(), status);
+            }
+            message = messages.toString();
+        } catch (IOException | RuntimeException ex) {
+            code = Replayer.Status.Code.IOERROR.getValue();
+            message = "Distributed replay failed: " + ex.getMessage();
+            log.error(message);
+            log.debug("Distributed replay failed: ", ex);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+
+        logCollector.addRunStatus(code, message);
+        logCollector.close();
+        return code;
+    }
+
+    /**
+     * Send each worker the job and its part of the recording
+     * <p>
+     * A mix of recordings is sent with the times of the mix (the tags are not
+     * passed on)
+     */
+    private void distribute(List<Connection> connections) throws IOException {
+        for (int i = 0 ; i < connections.size() ; i++) {
+            Map<String, Object> job = new LinkedHashMap<>();
+            job.put("arguments", config.getWorkerArguments());
+            job.put("part", i);
+            job.put("parts", connections.size());
+            connections.get(i).send(job);
+        }
+        long[] lines = new long[connections.size()];
+        long numLines = 0;
+        long maxLines = Math.min(config.getLimit(), config.getRequests() == Long.MAX_VALUE ?
+                                                    Long.MAX_VALUE :
+                                                    ( config.getRequests() + config.getAmplification() - 1 ) / config.getAmplification());
+        try (RecordingReader recordings = RecordingReader.of(config)) {
+            for (LogLine logLine = recordings.next() ; logLine != null && numLines < maxLines ; logLine = recordings.next()) {
+                numLines++;
+                int part = partOf(logLine, connections.size());
+                connections.get(part).writer.write(logLine.getTimeDelta() + " " + logLine.getQuery());
+                connections.get(part).writer.newLine();
+                lines[part]++;
+            }
+        }
+        for (int i = 0 ; i < connections.size() ; i++) {
+            connections.get(i).writer.newLine();
+            connections.get(i).writer.flush();
+            log.info("Worker {} got {} lines", connections.get(i).address, lines[i]);
+        }
+    }
+
+    /**
+     * Which worker a line goes to
+     *
+     * @param logLine line of the recording
+     * @param parts   number of workers
+     * @return index of the worker
+     */
+    int partOf(LogLine logLine, int parts) {
+        if (config.isHashSplit())
+            return ( logLine.getQuery().hashCode() & Integer.MAX_VALUE ) % parts;
+        return (int) ( logLine.getTimeDelta() / config.getSplitSlice() % parts );
+    }
+
+    /**
+     * A socket to a worker
+     */
+    private class Connection implements AutoCloseable {
+
+        private final String address;
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final BufferedWriter writer;
+
+        private Connection(String address) throws IOException {
+            this.address = address;
+            int colon = address.lastIndexOf(':');
+            this.socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))), CONNECT_TIMEOUT);
+            } catch (IOException ex) {
+                throw new IOException("Cannot connect to worker " + address + ": " + ex.getMessage(), ex);
+            }
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private void send(Object message) throws IOException {
+            writer.write(mapper.writeValueAsString(message));
+            writer.newLine();
+            writer.flush();
+        }
+
+        private JsonNode receive() throws IOException {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IOException("Worker " + address + " closed the connection");
+            JsonNode message = mapper.readTree(line);
+            if (message.has("error"))
+                throw new IOException("Worker " + address + ": " + message.get("error").asText());
+            return message;
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                log.debug("Error closing connection to {}: {}", address, ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+/**
+ * Histogram of signed values, ie. the difference between two call times
+ * <p>
+ * The negative values are counted by their size in one
+ * {@link LogLinearHistogram}, and zero and the positive values in another, so
+ * the precision is the same on both sides of zero. Percentiles are of the
+ * signed values.
+ * <p>
+ * Values can be recorded from any thread without locking.
+ */
+public class DifferenceHistogram {
+
+    private final LogLinearHistogram below;
+    private final LogLinearHistogram above;
+
+    /**
+     * @param layout histogram to copy the layout from (the highest trackable
+     *               value is the highest size of a difference)
+     */
+    public DifferenceHistogram(LogLinearHistogram layout) {
+        this.below = new LogLinearHistogram(layout);
+        this.above = new LogLinearHistogram(layout);
+    }
+
+    private DifferenceHistogram(LogLinearHistogram below, LogLinearHistogram above) {
+        this.below = below;
+        this.above = above;
+    }
+
+    /**
+     * Count a value
+     *
+     * @param value signed value
+     */
+    public void recordValue(long value) {
+        if (value < 0)
+            below.recordValue(-value);
+        else
+            above.recordValue(value);
+    }
+
+    /**
+     * A copy, for a stable result while values are being recorded
+     *
+     * @return new histogram
+     */
+    public DifferenceHistogram copy() {
+        return new DifferenceHistogram(below.copy(), above.copy());
+    }
+
+    public long getCount() {
+        return below.getCount() + above.getCount();
+    }
+
+    /**
+     * Number of negative values
+     *
+     * @return count
+     */
+    public long getNegativeCount() {
+        return below.getCount();
+    }
+
+    /**
+     * Number of positive values
+     *
+     * @return count
+     */
+    public long getPositiveCount() {
+        return above.getCount() - above.countAt(0);
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) ( above.getSum() - below.getSum() ) / count;
+    }
+
+    public long getMin() {
+        return below.getCount() > 0 ? -below.getMax() : above.getMin();
+    }
+
+    public long getMax() {
+        return above.getCount() > 0 ? above.getMax() : -below.getMin();
+    }
+
+    /**
+     * Value at a given percentile of the signed values
+     *
+     * @param percentile 0-100
+     * @return the value (at the precision of the histograms), or 0 if there
+     *         are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        long negative = below.getCount();
+        long total = negative + above.getCount();
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        if (rank <= negative)
+            return -below.getValueAtPercentile(100.0 * ( negative - rank + 1 ) / negative);
+        return above.getValueAtPercentile(100.0 * ( rank - negative ) / ( total - negative ));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Jackson serialization of the full {@link LogLinearHistogram}
+ * <p>
+ * The non empty buckets are written as [highest value, count] pairs, which can
+ * be read back by {@link LogLinearHistogram#of(com.fasterxml.jackson.databind.JsonNode)}
+ */
+public class HistogramSerializer extends StdSerializer<LogLinearHistogram> {
+
+    public HistogramSerializer() {
+        super(LogLinearHistogram.class);
+    }
+
+    @Override
+    public void serialize(LogLinearHistogram h, JsonGenerator jsonGen, SerializerProvider provider) throws IOException {
+        jsonGen.writeStartObject();
+        jsonGen.writeNumberField("highestTrackableValue", h.getHighestTrackableValue());
+        jsonGen.writeNumberField("significantDigits", h.getSignificantDigits());
+        jsonGen.writeNumberField("count", h.getCount());
+        jsonGen.writeNumberField("sum", h.getSum());
+        jsonGen.writeNumberField("min", h.getMin());
+        jsonGen.writeNumberField("max", h.getMax());
+        jsonGen.writeArrayFieldStart("buckets");
+        for (int i = 0 ; i < h.bucketCount() ; i++) {
+            long count = h.countAt(i);
+            if (count != 0) {
+                jsonGen.writeStartArray();
+                jsonGen.writeNumber(h.highestValueOf(i));
+                jsonGen.writeNumber(count);
+                jsonGen.writeEndArray();
+            }
+        }
+        jsonGen.writeEndArray();
+        jsonGen.writeEndObject();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports throughput and call times every interval on its own thread
+ * <p>
+ * The interval values are the difference between the (lock-free) cumulative
+ * call time histogram and counters of the log collector, and copies of them
+ * from the previous report. Each report is logged, and added to the time
+ * series in the output.
+ */
+public class IntervalReporter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IntervalReporter.class);
+
+    private final long interval;
+    private final LogCollector logCollector;
+    private final ReplaySpeed profile;
+    private final LongAdder sent;
+    private final AtomicLong maxLag;
+    private ScheduledExecutorService scheduler;
+    private long started;
+    private long previousTime;
+    private long previousSent;
+    private long previousErrors;
+    private LogLinearHistogram previousCallTimes;
+    private Map<String, Long> previousStatus;
+
+    /**
+     * @param interval     ms between reports (0 for no reports)
+     * @param logCollector where to read call times from and add the time
+     *                     series to
+     * @param profile      replay speed to report (null for none)
+     */
+    public IntervalReporter(long interval, LogCollector logCollector, ReplaySpeed profile) {
+        this.interval = interval;
+        this.logCollector = logCollector;
+        this.profile = profile;
+        this.sent = new LongAdder();
+        this.maxLag = new AtomicLong();
+    }
+
+    /**
+     * Start reporting
+     */
+    public void start() {
+        if (interval <= 0)
+            return;
+        started = System.currentTimeMillis();
+        previousTime = started;
+        previousCallTimes = logCollector.getCallTimeHistogram();
+        previousStatus = logCollector.getStatusCounts();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "interval-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register that a call has been sent
+     *
+     * @param lag how late (ms) the call was sent, compared to the schedule
+     */
+    public void sent(long lag) {
+        sent.increment();
+        maxLag.accumulateAndGet(lag, Math::max);
+    }
+
+    synchronized void report() {
+        try {
+            long now = System.currentTimeMillis();
+            long elapsed = Math.max(1, now - previousTime);
+            LogLinearHistogram callTimes = logCollector.getCallTimeHistogram();
+            Map<String, Long> status = logCollector.getStatusCounts();
+            long totalSent = sent.sum();
+            long totalErrors = logCollector.getErrorCount();
+
+            LogLinearHistogram current = callTimes.since(previousCallTimes);
+            long sentInInterval = totalSent - previousSent;
+            long completedInInterval = current.getCount();
+            Map<String, Long> counter = new LinkedHashMap<>();
+            status.forEach((code, count) -> {
+                long c = count - previousStatus.getOrDefault(code, 0L);
+                if (c != 0)
+                    counter.put(code, c);
+            });
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("timestamp", now);
+            report.put("elapsed", now - started);
+            report.put("interval", elapsed);
+            if (profile != null)
+                report.put("speed", profile.speedAt(now - started));
+            report.put("sent", sentInInterval);
+            report.put("completed", completedInInterval);
+            report.put("sentPerSecond", sentInInterval * 1000.0 / elapsed);
+            report.put("completedPerSecond", completedInInterval * 1000.0 / elapsed);
+            report.put("inFlight", totalSent - callTimes.getCount());
+            report.put("maxLag", maxLag.getAndSet(0));
+            report.put("p50", current.getValueAtPercentile(50) / 1000.0);
+            report.put("p95", current.getValueAtPercentile(95) / 1000.0);
+            report.put("p99", current.getValueAtPercentile(99) / 1000.0);
+            report.put("max", current.getMax() / 1000.0);
+            report.put("errors", totalErrors - previousErrors);
+            report.put("counter", counter);
+            logCollector.addInterval(report);
+
+            log.info(String.format(Locale.ROOT, "%6ds: sent %.1f/s completed %.1f/s in-flight %d lag %dms p50 %.1fms p95 %.1fms p99 %.1fms max %.1fms errors %d %s",
+                                   ( now - started ) / 1000,
+                                   report.get("sentPerSecond"), report.get("completedPerSecond"),
+                                   report.get("inFlight"), report.get("maxLag"),
+                                   report.get("p50"), report.get("p95"), report.get("p99"), report.get("max"),
+                                   report.get("errors"), counter));
+
+            previousTime = now;
+            previousSent = totalSent;
+            previousErrors = totalErrors;
+            previousCallTimes = callTimes;
+            previousStatus = status;
+        } catch (RuntimeException ex) {
+            log.error("Error reporting interval: {}", ex.getMessage());
+            log.debug("Error reporting interval: ", ex);
+        }
+    }
+
+    /**
+     * Stop reporting, and report the last (partial) interval
+     */
+    @Override
+    public void close() {
+        if (scheduler == null)
+            return;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        scheduler = null;
+    }
+}
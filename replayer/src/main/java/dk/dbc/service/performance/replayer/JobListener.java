@@ -22,4 +22,11 @@ package dk.dbc.service.performance.replayer;
 
 public interface JobListener {
     void callTimeExceeded();
+
+    /**
+     * A service level rule with the abort action has been broken
+     *
+     * @param message description of the breach
+     */
+    void sloBreached(String message);
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replay speed as a function of the time since the replay started
+ * <p>
+ * Format: comma (or newline) separated segments SPEED[-SPEED]:DURATION, where
+ * SPEED is in percent of the original speed (as -r). A segment with two
+ * speeds ramps linearly from the first to the second. ie.
+ * "100:5m,100-400:10m,400:10m" runs at the original speed for 5 minutes, ramps
+ * up to 4 times the speed over 10 minutes, and holds that for 10 minutes.
+ * After the last segment, the last speed is kept.
+ * <p>
+ * The position in the recording is the integral of the speed over the time
+ * of the replay, and a call is scheduled when that reaches its recorded
+ * offset.
+ */
+public final class LoadProfile implements ReplaySpeed {
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)%?(?:-(\\d+(?:\\.\\d+)?)%?)?:(\\d+[a-z]+)");
+
+    private final String text;
+    private final long[] start;
+    private final long[] length;
+    private final double[] from;
+    private final double[] to;
+    private final double[] recorded;
+
+    /**
+     * Convert a profile text into an object
+     *
+     * @param text profile
+     * @return profile
+     * @throws IllegalArgumentException if the text is not a valid profile
+     */
+    public static LoadProfile of(String text) {
+        List<double[]> segments = new ArrayList<>();
+        StringJoiner normalized = new StringJoiner(",");
+        for (String part : text.split("[,\\n]")) {
+            String segment = part.replaceAll("#.*", "").replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+            if (segment.isEmpty())
+                continue;
+            Matcher m = SEGMENT_PATTERN.matcher(segment);
+            if (!m.matches())
+                throw new IllegalArgumentException("Profile segment is not in valid format SPEED[-SPEED]:DURATION (" + part.trim() + ")");
+            double from = Double.parseDouble(m.group(1)) / 100.0;
+            double to = m.group(2) == null ? from : Double.parseDouble(m.group(2)) / 100.0;
+            segments.add(new double[] {from, to, Config.parseTimeSpec(m.group(3))});
+            normalized.add(segment);
+        }
+        if (segments.isEmpty())
+            throw new IllegalArgumentException("Profile has no segments");
+        return new LoadProfile(normalized.toString(), segments);
+    }
+
+    /**
+     * A profile with the same speed all the time
+     *
+     * @param speed percent of the original speed
+     * @return profile
+     */
+    public static LoadProfile constant(double speed) {
+        List<double[]> segments = new ArrayList<>();
+        segments.add(new double[] {speed / 100.0, speed / 100.0, 1000});
+        return new LoadProfile(String.valueOf(speed), segments);
+    }
+
+    private LoadProfile(String text, List<double[]> segments) {
+        int n = segments.size();
+        this.text = text;
+        this.start = new long[n];
+        this.length = new long[n];
+        this.from = new double[n];
+        this.to = new double[n];
+        this.recorded = new double[n + 1];
+        long time = 0;
+        for (int i = 0 ; i < n ; i++) {
+            double[] segment = segments.get(i);
+            start[i] = time;
+            from[i] = segment[0];
+            to[i] = segment[1];
+            length[i] = (long) segment[2];
+            recorded[i + 1] = recorded[i] + ( from[i] + to[i] ) / 2.0 * length[i];
+            time += length[i];
+        }
+    }
+
+    @Override
+    public double speedAt(long wallTime) {
+        for (int i = 0 ; i < start.length ; i++) {
+            if (wallTime < start[i] + length[i]) {
+                double x = Math.max(0, wallTime - start[i]);
+                return 100.0 * ( from[i] + ( to[i] - from[i] ) * x / length[i] );
+            }
+        }
+        return 100.0 * to[to.length - 1];
+    }
+
+    @Override
+    public long wallTimeOf(long recordingOffset) {
+        int n = start.length;
+        for (int i = 0 ; i < n ; i++) {
+            if (recordingOffset <= recorded[i + 1] && recorded[i + 1] > recorded[i]) {
+                double rate = ( to[i] - from[i] ) / length[i];
+                return start[i] + offsetInSegment(recordingOffset - recorded[i], from[i], rate);
+            }
+        }
+        double last = to[n - 1];
+        if (last <= 0)
+            return Long.MAX_VALUE;
+        return start[n - 1] + length[n - 1] + Math.round(( recordingOffset - recorded[n] ) / last);
+    }
+
+    /**
+     * Solve distance = speed * x + rate * x^2 / 2 for x
+     * <p>
+     * In the form that is stable when rate is (near) 0
+     */
+    private static long offsetInSegment(double distance, double speed, double rate) {
+        if (distance <= 0)
+            return 0;
+        double root = Math.sqrt(Math.max(0, speed * speed + 2 * rate * distance));
+        return Math.round(2 * distance / ( speed + root ));
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
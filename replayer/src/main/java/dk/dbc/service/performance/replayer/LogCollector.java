@@ -20,9 +20,13 @@
  */
 package dk.dbc.service.performance.replayer;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -32,35 +36,128 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Collector of status for program progression
+ * <p>
+ * Log entries are summarized as they are added, and (if opened) streamed to
+ * the output by a {@link ResultWriter}, so they are not kept in memory.
+ * <p>
+ * Each thread that adds entries has its own statistics and
+ * {@link ResultColumns} chunk, so adding does not contend with other threads.
+ * A chunk is handed to the writer when it is full, or by a sweep every second
+ * when it is a second old, and the remaining ones when the collector is
+ * closed. The statistics of threads that have ended are folded into a common
+ * total (by the sweep, or when a new thread adds its first entry), and those
+ * of the running threads are merged with it when they are calculated.
+ * <p>
+ * The statistics can be exported, and merged into another collector, ie. from
+ * the workers of a distributed replay.
  *
  * @author Mike Andersen (mran@dbc.dk)
  */
 public class LogCollector {
 
-    private final List<LogEntry> log;
-    private Map conf;
+    private static final Logger log = LoggerFactory.getLogger(LogCollector.class);
+
+    static final long HIGHEST_CALL_TIME = TimeUnit.HOURS.toMicros(1);
+    private static final long HIGHEST_SIZE = 1L << 40;
+    private static final double[] PERCENTILES = {50, 60, 70, 75, 80, 90, 95, 99, 99.9, 99.99};
+    private static final int CHUNK_SIZE = 1024;
+    private static final long CHUNK_MAX_AGE = 1000L;
+    static final int MAX_CLASSES = 100;
+    static final long MAX_CLASS_MEMORY = 4L << 20;
+    // The histograms of the breakdowns (per recording, service or class) are
+    // kept with fewer digits, as there can be many of them
+    static final int BREAKDOWN_PRECISION = 2;
+
+    private final ObjectMapper mapper;
+    private Map<String, String> conf;
     private final ConcurrentMap<String, AtomicLong> counterMap;
+    private final LongAdder errors;
+    private final List<Map<String, Object>> breaches;
+    private final List<Map<String, Object>> levels;
+    private final ConcurrentMap<String, SourceStats> sources;
+    private final ConcurrentMap<String, SourceStats> targets;
+    private final List<QueryClass> classRules;
+    private final ConcurrentMap<String, SourceStats> classes;
+    private final int maxClasses;
+    private final SlowCalls slowCalls;
+    private final DifferenceHistogram differences;
+    private final LongAdder pairs;
+    private final LongAdder statusMismatches;
+    private volatile Map<String, Object> capacity;
+    private volatile Map<String, Object> readAhead;
+    private volatile Map<String, Object> live;
+    private volatile Map<String, Object> warmup;
+    private volatile Map<String, Object> preStart;
     private int statusCode;
     private String statusMessage;
+    private volatile ResultWriter writer;
+
+    private final List<Recorder> recorders;
+    private final Recorder retired;
+    private final ThreadLocal<Recorder> recorder;
+    private ScheduledExecutorService flusher;
+    private final LogLinearHistogram callTimes;
+    private final LogLinearHistogram sizes;
+    private final LogLinearHistogram copyTimes;
+    private final LogLinearHistogram breakdown;
 
     private final boolean fullThrottle;
 
     LogCollector() {
-        log = new ArrayList<>(100);
-        conf = new HashMap();
-        counterMap = new ConcurrentHashMap<>();
-        fullThrottle = false;
+        this(Collections.emptyList());
+    }
+
+    LogCollector(List<QueryClass> classRules) {
+        this(false, Config.DEFAULT_PRECISION, classRules, new SlowCalls(Config.DEFAULT_SLOWEST, -1L, 0));
     }
 
     public LogCollector(Config config) {
-        log = new ArrayList<>(100);
-        conf = new HashMap();
+        this(config.isFullThrottle(), config.getPrecision(), config.getQueryClasses(),
+             new SlowCalls(config.getSlowest(), config.getTailThreshold(), config.getTailSample()));
+    }
+
+    private LogCollector(boolean fullThrottle, int precision, List<QueryClass> classRules, SlowCalls slowCalls) {
+        mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(LogLinearHistogram.class, new HistogramSerializer());
+        mapper.registerModule(module);
+        conf = new HashMap<>();
         counterMap = new ConcurrentHashMap<>();
-        this.fullThrottle = config.isFullThrottle();
+        errors = new LongAdder();
+        breaches = Collections.synchronizedList(new ArrayList<>());
+        levels = Collections.synchronizedList(new ArrayList<>());
+        sources = new ConcurrentHashMap<>();
+        targets = new ConcurrentHashMap<>();
+        this.classRules = classRules;
+        classes = new ConcurrentHashMap<>();
+        this.slowCalls = slowCalls;
+        pairs = new LongAdder();
+        statusMismatches = new LongAdder();
+        recorders = Collections.synchronizedList(new ArrayList<>());
+        retired = new Recorder(null);
+        recorder = ThreadLocal.withInitial(() -> {
+            Recorder r = new Recorder(Thread.currentThread());
+            synchronized (recorders) {
+                retire();
+                recorders.add(r);
+            }
+            return r;
+        });
+        callTimes = new LogLinearHistogram(HIGHEST_CALL_TIME, precision);
+        sizes = new LogLinearHistogram(HIGHEST_SIZE, precision);
+        copyTimes = new LogLinearHistogram(callTimes);
+        breakdown = new LogLinearHistogram(HIGHEST_CALL_TIME, Math.min(precision, BREAKDOWN_PRECISION));
+        differences = new DifferenceHistogram(breakdown);
+        maxClasses = (int) Math.max(1, Math.min(MAX_CLASSES, MAX_CLASS_MEMORY / classMemory(breakdown)));
+        this.fullThrottle = fullThrottle;
     }
 
     /**
@@ -68,10 +165,103 @@ public class LogCollector {
      *
      * @param conf Map of configurations
      */
-    public void addConfig(Map conf) {
+    public void addConfig(Map<String, String> conf) {
         this.conf = conf;
     }
 
+    /**
+     * Start streaming the log to an output
+     * <p>
+     * The configuration (as added by {@link #addConfig(java.util.Map)}) is
+     * written right away, log entries as they are added, and the summary when
+     * the collector is closed
+     *
+     * @param os Stream to output to (null for no output)
+     * @throws IOException if the output cannot be written to
+     */
+    public synchronized void open(OutputStream os) throws IOException {
+        if (os == null)
+            return;
+        writer = new ResultWriter(os, mapper, conf);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "result-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::sweep, CHUNK_MAX_AGE, CHUNK_MAX_AGE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the remaining entries and the summary, and close the output
+     * <p>
+     * Entries added after this are only summarized
+     */
+    public void close() {
+        ResultWriter w = writer;
+        if (w == null)
+            return;
+        stopFlusher();
+        synchronized (recorders) {
+            recorders.forEach(Recorder::flush);
+        }
+        w.finish(summary());
+    }
+
+    private synchronized void stopFlusher() {
+        if (flusher == null)
+            return;
+        flusher.shutdownNow();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+    }
+
+    /**
+     * Hand the chunks, that are a second old, to the writer, so the entries
+     * of idle threads are not held back, and retire the recorders of threads
+     * that have ended
+     */
+    void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            synchronized (recorders) {
+                recorders.forEach(r -> r.flushIfOlder(now - CHUNK_MAX_AGE));
+                retire();
+            }
+        } catch (RuntimeException ex) {
+            log.error("Error flushing result: {}", ex.getMessage());
+            log.debug("Error flushing result: ", ex);
+        }
+    }
+
+    /**
+     * Fold the recorders of threads that have ended into the common total
+     * <p>
+     * Must be called with the lock of the recorders
+     */
+    private void retire() {
+        for (Iterator<Recorder> i = recorders.iterator() ; i.hasNext() ;) {
+            Recorder r = i.next();
+            if (!r.owner.isAlive()) {
+                r.flush();
+                retired.combine(r);
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Number of threads with statistics of their own
+     *
+     * @return number of registered recorders
+     */
+    int getRecorderCount() {
+        return recorders.size();
+    }
+
     /**
      * Add one status note to the log
      *
@@ -79,8 +269,13 @@ public class LogCollector {
      */
     public void addStatusEntry(String status) {
         LogEntry e = new LogEntry();
-        e.setStatus(status);
-        this.log.add(e);
+        e.setMessage(status);
+        ResultWriter w = writer;
+        if (w != null) {
+            ResultColumns columns = new ResultColumns(1);
+            columns.add(e);
+            w.write(columns);
+        }
     }
 
     /**
@@ -95,12 +290,278 @@ public class LogCollector {
     }
 
     /**
-     * Add a log entry to the log
+     * Add a breach of a service level rule
+     *
+     * @param breach description of the breach (rule, action, value and
+     *               timestamp)
+     */
+    public void addBreach(Map<String, Object> breach) {
+        breaches.add(breach);
+    }
+
+    /**
+     * Add a completed log entry to the log
+     * <p>
+     * The values of the entry are copied, so it can be reused afterwards
      *
      * @param entry Logentry to be stored
      */
     public void addEntry(LogEntry entry) {
-        log.add(entry);
+        if (entry.isError())
+            errors.increment();
+        callTimes.recordValue(entry.getCallDurationMicros());
+        sizes.recordValue(entry.getResponseSize());
+        if (entry.getCopy() > 0)
+            copyTimes.recordValue(entry.getCallDurationMicros());
+        recorder.get().add(entry);
+        if (entry.getSource() != null)
+            sources.computeIfAbsent(entry.getSource(), s -> new SourceStats()).add(entry);
+        if (entry.getTarget() != null)
+            targets.computeIfAbsent(entry.getTarget(), s -> new SourceStats()).add(entry);
+        if (!classRules.isEmpty())
+            classStats(QueryClass.classOf(classRules, entry.getQuery())).add(entry);
+        slowCalls.add(entry);
+    }
+
+    /**
+     * The statistics of a class of queries
+     * <p>
+     * The number of classes is limited (by {@link #MAX_CLASSES} and by
+     * {@link #MAX_CLASS_MEMORY} for their histograms), so a rule that gives
+     * (almost) every query its own class does not exhaust the memory.
+     * Queries of classes beyond the limit are counted as
+     * {@link QueryClass#OTHER}
+     *
+     * @param name class
+     * @return statistics
+     */
+    private SourceStats classStats(String name) {
+        SourceStats stats = classes.get(name);
+        if (stats != null)
+            return stats;
+        if (classes.size() >= maxClasses) {
+            if (!classes.containsKey(QueryClass.OTHER))
+                log.warn("More than {} classes of queries, the rest are counted as {}", maxClasses, QueryClass.OTHER);
+            name = QueryClass.OTHER;
+        }
+        return classes.computeIfAbsent(name, s -> new SourceStats());
+    }
+
+    /**
+     * Memory of the statistics of a class of queries, with the breakdown
+     * precision
+     *
+     * @return bytes (approximately)
+     */
+    static long classMemory() {
+        return classMemory(new LogLinearHistogram(HIGHEST_CALL_TIME, BREAKDOWN_PRECISION));
+    }
+
+    /**
+     * Memory of the statistics of a class of queries
+     *
+     * @param layout layout of the call time histogram of the class
+     * @return bytes (approximately)
+     */
+    static long classMemory(LogLinearHistogram layout) {
+        return layout.bucketCount() * (long) Long.BYTES;
+    }
+
+    /**
+     * Add the two completed calls of a request in an A/B comparison
+     * <p>
+     * The difference of the call times (b - a) is counted when both calls
+     * succeeded with the same status, otherwise the pair is counted as a
+     * status mismatch
+     *
+     * @param a entry of the call to the first service
+     * @param b entry of the call to the second service
+     */
+    public void addPair(LogEntry a, LogEntry b) {
+        pairs.increment();
+        if (a.isError() || b.isError() || a.getStatusCode() != b.getStatusCode())
+            statusMismatches.increment();
+        else
+            differences.recordValue(b.getCallDurationMicros() - a.getCallDurationMicros());
+    }
+
+    /**
+     * Add the result of a concurrency level (closed loop)
+     *
+     * @param level users, throughput and call times of the level
+     */
+    public void addLevel(Map<String, Object> level) {
+        levels.add(level);
+    }
+
+    /**
+     * The statistics of this collector, for {@link #merge(JsonNode)}
+     * <p>
+     * Histograms are included regardless of the throttle
+     *
+     * @return json representation
+     */
+    public ObjectNode export() {
+        Recorder stats = merged();
+        Map<String, Object> export = new LinkedHashMap<>();
+        export.put("callTimes", getCallTimeHistogram());
+        export.put("sizes", sizes.copy());
+        export.put("copyTimes", copyTimes.copy());
+        export.put("callStat", stats.callStat);
+        export.put("sizeStat", stats.sizeStat);
+        export.put("downloadStat", stats.downloadStat);
+        export.put("sumDurationSq", stats.sumDurationSq);
+        export.put("sumSizeSq", stats.sumSizeSq);
+        export.put("sumProduct", stats.sumProduct);
+        export.put("errors", getErrorCount());
+        export.put("counter", getStatusCounts());
+        export.put("breaches", new ArrayList<>(breaches));
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("code", statusCode);
+        status.put("message", statusMessage);
+        export.put("status", status);
+        return mapper.valueToTree(export);
+    }
+
+    /**
+     * Add the statistics of another collector to this
+     *
+     * @param export as made by {@link #export()}
+     * @throws IllegalArgumentException if the statistics cannot be read, or
+     *                                  the histograms are of another layout
+     */
+    public void merge(JsonNode export) {
+        LogLinearHistogram otherCallTimes = LogLinearHistogram.of(export.path("callTimes"));
+        LogLinearHistogram otherSizes = LogLinearHistogram.of(export.path("sizes"));
+        Recorder imported = new Recorder(null);
+        imported.callStat.combine(summaryOf(export.path("callStat")));
+        imported.sizeStat.combine(summaryOf(export.path("sizeStat")));
+        imported.downloadStat.combine(summaryOf(export.path("downloadStat")));
+        imported.sumDurationSq = export.path("sumDurationSq").asDouble();
+        imported.sumSizeSq = export.path("sumSizeSq").asDouble();
+        imported.sumProduct = export.path("sumProduct").asDouble();
+
+        callTimes.add(otherCallTimes);
+        sizes.add(otherSizes);
+        if (export.has("copyTimes"))
+            copyTimes.add(LogLinearHistogram.of(export.get("copyTimes")));
+        synchronized (recorders) {
+            retired.combine(imported);
+        }
+        errors.add(export.path("errors").asLong());
+        export.path("counter").fields().forEachRemaining(e -> {
+            counterMap.computeIfAbsent(e.getKey(), p -> new AtomicLong()).addAndGet(e.getValue().asLong());
+        });
+        for (JsonNode breach : export.path("breaches")) {
+            breaches.add(mapper.convertValue(breach, new TypeReference<Map<String, Object>>() {}));
+        }
+    }
+
+    private static LongSummaryStatistics summaryOf(JsonNode node) {
+        return summaryOf(node.path("count").asLong(), node.path("sum").asLong(),
+                         node.path("min").asLong(), node.path("max").asLong());
+    }
+
+    /**
+     * Make statistics with the given values
+     * <p>
+     * LongSummaryStatistics cannot be constructed from its values (in java 8),
+     * so it is made of min, max and values evenly spread between them, that
+     * add up to the sum. The copies are made by doubling, so it takes log(count)
+     * steps
+     *
+     * @param count number of values
+     * @param sum   sum of values
+     * @param min   smallest value
+     * @param max   largest value
+     * @return statistics
+     */
+    static LongSummaryStatistics summaryOf(long count, long sum, long min, long max) {
+        LongSummaryStatistics stat = new LongSummaryStatistics();
+        if (count <= 0)
+            return stat;
+        stat.accept(min);
+        if (count == 1)
+            return stat;
+        stat.accept(max);
+        long rest = count - 2;
+        if (rest > 0) {
+            long total = sum - min - max;
+            long value = Math.floorDiv(total, rest);
+            long above = total - value * rest;
+            stat.combine(copies(value + 1, above));
+            stat.combine(copies(value, rest - above));
+        }
+        return stat;
+    }
+
+    private static LongSummaryStatistics copies(long value, long count) {
+        LongSummaryStatistics result = new LongSummaryStatistics();
+        LongSummaryStatistics power = new LongSummaryStatistics();
+        power.accept(value);
+        for (long n = count ; n > 0 ; n >>= 1) {
+            if (( n & 1 ) != 0)
+                result.combine(power);
+            power.combine(power);
+        }
+        return result;
+    }
+
+    /**
+     * Set the result of a capacity search
+     *
+     * @param capacity knee and the curve of the steps
+     */
+    public void setCapacity(Map<String, Object> capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Set how the reading of the recording kept up
+     *
+     * @param readAhead stalls and starvations of the read-ahead
+     */
+    public void setReadAhead(Map<String, Object> readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Set how a live replay kept up with the recording
+     *
+     * @param live delay and the lines that arrived after their time
+     */
+    public void setLive(Map<String, Object> live) {
+        this.live = live;
+    }
+
+    /**
+     * Set the statistics of the warm-up calls, that are not part of the
+     * other statistics
+     *
+     * @param warmup requests, time and call time statistics of the warm-up
+     */
+    public void setWarmup(Map<String, Object> warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Set the cost of warming up the client before the replay
+     *
+     * @param preStart calls to the local sink, connections and time
+     */
+    public void setPreStart(Map<String, Object> preStart) {
+        this.preStart = preStart;
+    }
+
+    /**
+     * Add a line to the time series in the output
+     *
+     * @param interval statistics for an interval
+     */
+    public void addInterval(Map<String, Object> interval) {
+        ResultWriter w = writer;
+        if (w != null)
+            w.writeInterval(interval);
     }
 
     /**
@@ -113,7 +574,7 @@ public class LogCollector {
     }
 
     /**
-     * Dump the log (as json) to the give OutputStream
+     * Dump the summary of the log (as json) to the give OutputStream
      *
      * @param os Stream to output to
      * @throws IOException if anything goes wrong during writing
@@ -121,29 +582,70 @@ public class LogCollector {
     public void dump(OutputStream os) throws IOException {
         if (os == null)
             return;
-        ObjectMapper mapper = new ObjectMapper();
-        SimpleModule module = new SimpleModule();
-        module.addSerializer(Percentile.class, new PercentileSerializer(Percentile.class));
-        mapper.registerModule(module);
+        BufferedWriter w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        mapper.writeValue(w, summary());
+    }
 
-        Map status = new HashMap();
+    private Map<String, Object> summary() {
+        Map<String, Object> status = new LinkedHashMap<>();
         status.put("code", this.statusCode);
         status.put("message", this.statusMessage);
-        LongSummaryStatistics stat = calculateStats();
-        Percentile percentiles = calculatePercentiles();
+        if (!breaches.isEmpty())
+            status.put("breaches", new ArrayList<>(breaches));
 
-        BufferedWriter w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-        Map output = new HashMap();
-        output.put("configuration", conf);
-        output.put("loglines", log);
+        Map<String, Object> output = new LinkedHashMap<>();
+        if (preStart != null)
+            output.put("preStart", preStart);
+        if (warmup != null)
+            output.put("warmup", warmup);
+        output.put("callStat", calculateStats());
+        if (!fullThrottle) {
+            output.put("percentiles", calculatePercentiles());
+            output.put("histogram", getCallTimeHistogram());
+        }
+        if (!levels.isEmpty())
+            output.put("levels", new ArrayList<>(levels));
+        if (capacity != null)
+            output.put("capacity", capacity);
+        if (!sources.isEmpty())
+            output.put("sources", calculateSourceStats());
+        if (copyTimes.getCount() > 0)
+            output.put("amplification", calculateAmplificationStats());
+        if (!targets.isEmpty())
+            output.put("comparison", calculateComparisonStats());
+        if (!classes.isEmpty())
+            output.put("classes", calculateClassStats());
+        Map<String, Object> slow = calculateSlowCalls();
+        if (!slow.isEmpty())
+            output.put("slowCalls", slow);
+        if (readAhead != null)
+            output.put("readAhead", readAhead);
+        if (live != null)
+            output.put("live", live);
+        output.put("transfer", calculateTransferStats());
         output.put("counter", counterMap);
-        output.put("callStat", stat);
-        if (!fullThrottle)
-            output.put("percentiles", percentiles);
-
         output.put("status", status);
+        return output;
+    }
 
-        mapper.writeValue(w, output);
+    /**
+     * Number of calls, that failed or had a http status of 400 or above
+     *
+     * @return count
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * Current counts of the httpResponse codes
+     *
+     * @return a copy of the counters
+     */
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        counterMap.forEach((status, count) -> counts.put(status, count.get()));
+        return counts;
     }
 
     public static LogEntry newEntry() {
@@ -151,28 +653,323 @@ public class LogCollector {
     }
 
     public LongSummaryStatistics calculateStats() {
-        LongSummaryStatistics stat = log
-                .stream()
-                .filter(le -> !le.getQuery().isEmpty())
-                .mapToLong(le -> le.getCallDuration())
-                .summaryStatistics();
+        return merged().callStat;
+    }
+
+    /**
+     * Call time percentiles (50 to 99.99 and max) in ms
+     *
+     * @return map of percentile name to value (empty if there are no calls)
+     */
+    public Map<String, Double> calculatePercentiles() {
+        return percentiles(callTimes.copy(), 1000.0);
+    }
+
+    /**
+     * The call times in microseconds
+     *
+     * @return a copy of the histogram
+     */
+    public LogLinearHistogram getCallTimeHistogram() {
+        return callTimes.copy();
+    }
+
+    private static Map<String, Double> percentiles(LogLinearHistogram histogram, double divisor) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        if (histogram.getCount() == 0)
+            return percentiles;
+        for (double percentile : PERCENTILES) {
+            String name = percentile == Math.rint(percentile) ?
+                          String.valueOf((long) percentile) :
+                          String.valueOf(percentile);
+            percentiles.put("percentile " + name, histogram.getValueAtPercentile(percentile) / divisor);
+        }
+        percentiles.put("max", histogram.getMax() / divisor);
+        return percentiles;
+    }
+
+    /**
+     * Summarize the response bodies of the calls
+     * <p>
+     * Size statistics and percentiles, download time statistics, bytes per
+     * second of call time, and the (pearson) correlation between response
+     * size and call duration
+     *
+     * @return map of transfer statistics
+     */
+    public Map<String, Object> calculateTransferStats() {
+        Recorder stats = merged();
+        long n = stats.callStat.getCount();
+        double sumDuration = stats.callStat.getSum();
+        double sumSize = stats.sizeStat.getSum();
+        double covariance = n * stats.sumProduct - sumSize * sumDuration;
+        double variance = ( n * stats.sumSizeSq - sumSize * sumSize ) *
+                          ( n * stats.sumDurationSq - sumDuration * sumDuration );
+
+        LongSummaryStatistics size = stats.sizeStat;
+        LongSummaryStatistics download = stats.downloadStat;
+
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("bytes", size.getSum());
+        transfer.put("bytesPerSecond", sumDuration > 0 ? (long) ( sumSize * 1000.0 / sumDuration ) : 0L);
+        transfer.put("size", size);
+        if (!fullThrottle)
+            transfer.put("sizePercentiles", percentiles(sizes.copy(), 1.0));
+        transfer.put("downloadTime", download);
+        if (variance > 0)
+            transfer.put("durationSizeCorrelation", covariance / Math.sqrt(variance));
+        return transfer;
+    }
+
+    /**
+     * Statistics for each recording of a mix
+     * <p>
+     * Count, errors, bytes, mean and percentiles of the call times (ms) and
+     * the http returncodes
+     *
+     * @return map of tag to statistics (empty for an untagged replay)
+     */
+    public Map<String, Map<String, Object>> calculateSourceStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        sources.forEach((tag, source) -> stats.put(tag, source.statistics()));
+        return stats;
+    }
+
+    /**
+     * Statistics for each class of queries
+     * <p>
+     * As for a recording of a mix
+     *
+     * @return map of class to statistics (empty without class rules)
+     */
+    public Map<String, Map<String, Object>> calculateClassStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        classes.forEach((name, stat) -> stats.put(name, stat.statistics()));
+        return stats;
+    }
+
+    /**
+     * The slowest calls, and the sample of the calls above the threshold
+     * <p>
+     * With the query, status, size and times of each, so the tail can be
+     * looked into without going through the loglines
+     *
+     * @return map with slowest and tailSample (empty if neither is kept)
+     */
+    public Map<String, Object> calculateSlowCalls() {
+        Map<String, Object> slow = new LinkedHashMap<>();
+        List<Map<String, Object>> slowest = slowCalls.getSlowest();
+        if (!slowest.isEmpty())
+            slow.put("slowest", slowest);
+        Map<String, Object> tail = slowCalls.getTailSample();
+        if (tail != null)
+            slow.put("tailSample", tail);
+        return slow;
+    }
+
+    /**
+     * Statistics of an A/B comparison
+     * <p>
+     * The statistics of each service (as for a recording of a mix), and the
+     * distribution of the paired differences of the call times (ms, the
+     * second service minus the first) of the requests, where both calls
+     * succeeded with the same status
+     *
+     * @return statistics
+     */
+    public Map<String, Object> calculateComparisonStats() {
+        DifferenceHistogram histogram = differences.copy();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        new TreeMap<>(targets).forEach((target, stat) -> stats.put(target, stat.statistics()));
+        stats.put("pairs", pairs.sum());
+        stats.put("statusMismatches", statusMismatches.sum());
+        Map<String, Object> difference = new LinkedHashMap<>();
+        difference.put("count", histogram.getCount());
+        difference.put("mean", histogram.getMean() / 1000.0);
+        difference.put("min", histogram.getMin() / 1000.0);
+        for (double percentile : new double[] {1, 5, 10, 25, 50, 75, 90, 95, 99}) {
+            difference.put("p" + (long) percentile, histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        difference.put("max", histogram.getMax() / 1000.0);
+        difference.put("aFaster", histogram.getPositiveCount());
+        difference.put("bFaster", histogram.getNegativeCount());
+        stats.put("difference", difference);
+        return stats;
+    }
+
+    /**
+     * Statistics of the originals and the copies, when the recording is
+     * amplified
+     * <p>
+     * The number of recorded lines and requests sent, and the count, mean and
+     * percentiles of the call times (ms) of the originals and the copies, so
+     * it can be seen if the copies are answered differently (ie. by a cache)
+     *
+     * @return statistics
+     */
+    public Map<String, Object> calculateAmplificationStats() {
+        LogLinearHistogram copies = copyTimes.copy(); // First, so all includes them
+        LogLinearHistogram all = getCallTimeHistogram();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lines", all.getCount() - copies.getCount());
+        stats.put("requests", all.getCount());
+        stats.put("originals", callTimeStatsOf(all.since(copies)));
+        stats.put("copies", callTimeStatsOf(copies));
+        return stats;
+    }
+
+    private static Map<String, Object> callTimeStatsOf(LogLinearHistogram histogram) {
+        Map<String, Object> stat = new LinkedHashMap<>();
+        stat.put("count", histogram.getCount());
+        stat.put("mean", histogram.getMean() / 1000.0);
+        for (double percentile : new double[] {50, 90, 95, 99}) {
+            stat.put("p" + (long) percentile, histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        stat.put("max", histogram.getMax() / 1000.0);
         return stat;
     }
 
-    public Percentile calculatePercentiles() {
-        Percentile p = new Percentile();
-        double[] data = log.stream().filter(le -> !le.getQuery().isEmpty()).mapToDouble(le -> (double) le.getCallDuration()).toArray();
-        p.setData(data);
-        return p;
+    /**
+     * Statistics of all threads
+     *
+     * @return a new recorder, that is not registered
+     */
+    private Recorder merged() {
+        Recorder total = new Recorder(null);
+        synchronized (recorders) {
+            total.combine(retired);
+            recorders.forEach(total::combine);
+        }
+        return total;
+    }
+
+    /**
+     * Statistics and pending output of one thread
+     * <p>
+     * Synchronized as the statistics are read, and the chunk is flushed
+     * from other threads, but the lock is only contended then
+     */
+    private class Recorder {
+
+        private final Thread owner;
+        private final LongSummaryStatistics callStat = new LongSummaryStatistics();
+        private final LongSummaryStatistics sizeStat = new LongSummaryStatistics();
+        private final LongSummaryStatistics downloadStat = new LongSummaryStatistics();
+        private double sumDurationSq;
+        private double sumSizeSq;
+        private double sumProduct;
+        private ResultColumns columns;
+
+        /**
+         * @param owner the thread adding the entries (null for the totals)
+         */
+        private Recorder(Thread owner) {
+            this.owner = owner;
+        }
+
+        private synchronized void add(LogEntry entry) {
+            long duration = entry.getCallDuration();
+            long size = entry.getResponseSize();
+            callStat.accept(duration);
+            sizeStat.accept(size);
+            downloadStat.accept(entry.getDownloadTime());
+            sumDurationSq += (double) duration * duration;
+            sumSizeSq += (double) size * size;
+            sumProduct += (double) duration * size;
+            if (writer != null) {
+                if (columns == null)
+                    columns = new ResultColumns(CHUNK_SIZE);
+                columns.add(entry);
+                if (columns.isFull() || System.currentTimeMillis() - columns.getCreated() >= CHUNK_MAX_AGE)
+                    flush();
+            }
+        }
+
+        private synchronized void flush() {
+            ResultWriter w = writer;
+            if (w != null && columns != null && !columns.isEmpty())
+                w.write(columns);
+            columns = null;
+        }
+
+        private synchronized void flushIfOlder(long created) {
+            if (columns != null && columns.getCreated() <= created)
+                flush();
+        }
+
+        private synchronized void combine(Recorder other) {
+            synchronized (other) {
+                callStat.combine(other.callStat);
+                sizeStat.combine(other.sizeStat);
+                downloadStat.combine(other.downloadStat);
+                sumDurationSq += other.sumDurationSq;
+                sumSizeSq += other.sumSizeSq;
+                sumProduct += other.sumProduct;
+            }
+        }
+    }
+
+    /**
+     * Statistics of one recording of a mix, one service of a comparison, or
+     * one class of queries
+     */
+    private class SourceStats {
+
+        private final LogLinearHistogram callTimes = new LogLinearHistogram(breakdown);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> counter = new ConcurrentHashMap<>();
+
+        private void add(LogEntry entry) {
+            callTimes.recordValue(entry.getCallDurationMicros());
+            if (entry.isError())
+                errors.increment();
+            bytes.add(entry.getResponseSize());
+            if (entry.getStatusCode() > 0)
+                counter.computeIfAbsent(Integer.toString(entry.getStatusCode()), s -> new LongAdder()).increment();
+        }
+
+        /**
+         * Count, errors, bytes, mean and percentiles of the call times (ms)
+         * and the http returncodes
+         */
+        private Map<String, Object> statistics() {
+            LogLinearHistogram histogram = callTimes.copy();
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("count", histogram.getCount());
+            stat.put("errors", errors.sum());
+            stat.put("bytes", bytes.sum());
+            stat.put("mean", histogram.getMean() / 1000.0);
+            for (double percentile : new double[] {50, 90, 95, 99}) {
+                stat.put("p" + (long) percentile, histogram.getValueAtPercentile(percentile) / 1000.0);
+            }
+            stat.put("max", histogram.getMax() / 1000.0);
+            Map<String, Long> counter = new TreeMap<>();
+            this.counter.forEach((status, count) -> counter.put(status, count.sum()));
+            stat.put("counter", counter);
+            return stat;
+        }
     }
 
     public static class LogEntry {
 
+        static final short STATUS_NONE = 0;
+        static final short STATUS_FAILED = -1;
+
+
         private long originalTimeDelta;
         private long callDelay;
         private long callDuration;
+        private long callDurationMicros;
         private String query;
-        private String status;
+        private short statusCode;
+        private String message;
+        private long line;
+        private int copy;
+        private String source;
+        private String target;
+        private long responseSize;
+        private long downloadTime;
         private long timestamp;
 
         public LogEntry() {
@@ -181,7 +978,8 @@ public class LogCollector {
             this.callDelay = 0;
             this.callDuration = 0;
             this.query = "";
-            this.status = "";
+            this.statusCode = STATUS_NONE;
+            this.message = null;
         }
 
         public void setTimes(long originalDelay, long actualDelay) {
@@ -191,14 +989,88 @@ public class LogCollector {
 
         public void setCallDuration(long callDuration) {
             this.callDuration = callDuration;
+            this.callDurationMicros = callDuration * 1000;
+        }
+
+        public void setCallDurationMicros(long callDurationMicros) {
+            this.callDuration = callDurationMicros / 1000;
+            this.callDurationMicros = callDurationMicros;
         }
 
         public void setQuery(String query) {
             this.query = query;
         }
 
-        public void setStatus(String status) {
-            this.status = status;
+        /**
+         * Set the http status of the call
+         *
+         * @param httpStatus response code
+         */
+        public void setStatus(int httpStatus) {
+            this.statusCode = (short) httpStatus;
+            this.message = null;
+        }
+
+        /**
+         * Set the call as failed (without a http status)
+         *
+         * @param message description of the failure
+         */
+        public void setFailure(String message) {
+            this.statusCode = STATUS_FAILED;
+            this.message = message;
+        }
+
+        /**
+         * Make this a status note, not a call
+         *
+         * @param message the note
+         */
+        public void setMessage(String message) {
+            this.statusCode = STATUS_NONE;
+            this.message = message;
+        }
+
+        /**
+         * Set which line of the recording the call is from
+         *
+         * @param line line number
+         */
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        /**
+         * Set which copy of the line the call is, when the recording is
+         * amplified
+         *
+         * @param copy copy number (0 for the original)
+         */
+        public void setCopy(int copy) {
+            this.copy = copy;
+        }
+
+        /**
+         * Set which recording (of a mix) the call is from
+         *
+         * @param source tag of the recording (null for none)
+         */
+        public void setSource(String source) {
+            this.source = source;
+        }
+
+        /**
+         * Set which service (of an A/B comparison) the call is sent to
+         *
+         * @param target target name (null when not comparing)
+         */
+        public void setTarget(String target) {
+            this.target = target;
+        }
+
+        public void setResponse(long responseSize, long downloadTime) {
+            this.responseSize = responseSize;
+            this.downloadTime = downloadTime;
         }
 
         @Override
@@ -209,7 +1081,9 @@ public class LogCollector {
                    ", callDelay=" + callDelay +
                    ", callDuration=" + callDuration +
                    ", query='" + query + "'" +
-                   ", status='" + status + "'" +
+                   ", status='" + getStatus() + "'" +
+                   ", responseSize=" + responseSize +
+                   ", downloadTime=" + downloadTime +
                    '}';
         }
 
@@ -225,12 +1099,69 @@ public class LogCollector {
             return callDuration;
         }
 
+        public long getCallDurationMicros() {
+            return callDurationMicros;
+        }
+
         public String getQuery() {
             return query;
         }
 
+        /**
+         * The status as it is written in the output
+         *
+         * @return http status, failure message, status note or ""
+         */
         public String getStatus() {
-            return status;
+            return statusOf(statusCode, message);
+        }
+
+        static String statusOf(short statusCode, String message) {
+            if (statusCode > 0)
+                return Integer.toString(statusCode);
+            return message == null ? "" : message;
+        }
+
+        public short getStatusCode() {
+            return statusCode;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public int getCopy() {
+            return copy;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * If the call failed, by exception or with a http status of 400 or
+         * above
+         *
+         * @return if the status is an error
+         */
+        public boolean isError() {
+            return statusCode == STATUS_FAILED || statusCode >= 400;
+        }
+
+        public long getResponseSize() {
+            return responseSize;
+        }
+
+        public long getDownloadTime() {
+            return downloadTime;
         }
 
         public long getTimestamp() {
@@ -32,6 +32,9 @@ public final class LogLine {
     private final Long timeDelta;
     private final String query;
     private final boolean isvalid;
+    private final String source;
+    private final long line;
+    private final int copy;
 
     private static final Pattern COMMENT_PATTERN = Pattern.compile("#.*");
     private static final Pattern SPACE_PATTERN = Pattern.compile( "(\\d+)\\s+(.*)");
@@ -51,10 +54,55 @@ public final class LogLine {
         return  new LogLine(Long.parseLong(m.group(1)), m.group(2), true);
     }
 
+    /**
+     * A line of a replay plan
+     *
+     * @param timeDelta time relative to the start of the mix
+     * @param query     the query
+     * @param source    tag of the recording (null for none)
+     * @param line      line number in the recording
+     * @param copy      number of the copy (0 for the original)
+     * @return LogLine object
+     */
+    static LogLine planned(long timeDelta, String query, String source, long line, int copy) {
+        return new LogLine(timeDelta, query, true, source, line, copy);
+    }
+
     private LogLine(Long timeDelta, String query, boolean isvalid ) {
+        this(timeDelta, query, isvalid, null, 0, 0);
+    }
+
+    private LogLine(Long timeDelta, String query, boolean isvalid, String source, long line, int copy) {
         this.timeDelta = timeDelta;
         this.query = query;
         this.isvalid = isvalid;
+        this.source = source;
+        this.line = line;
+        this.copy = copy;
+    }
+
+    /**
+     * This line, as it is placed in a mix of recordings
+     *
+     * @param timeDelta time relative to the start of the mix
+     * @param source    tag of the recording (null for none)
+     * @param line      line number in the recording
+     * @return new LogLine object
+     */
+    public LogLine placed(long timeDelta, String source, long line) {
+        return new LogLine(timeDelta, query, isvalid, source, line, 0);
+    }
+
+    /**
+     * A copy of this line, when the recording is amplified
+     *
+     * @param timeDelta time of the copy
+     * @param query     query of the copy (ie. salted)
+     * @param copy      number of the copy (0 for the original)
+     * @return new LogLine object
+     */
+    public LogLine copied(long timeDelta, String query, int copy) {
+        return new LogLine(timeDelta, query, isvalid, source, line, copy);
     }
 
     /**
@@ -75,9 +123,36 @@ public final class LogLine {
         return query;
     }
 
+    /**
+     * Tag of the recording the line is from
+     *
+     * @return tag or null if untagged
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Line number in the recording
+     *
+     * @return line number (0 if unknown)
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Number of the copy, when the recording is amplified
+     *
+     * @return copy number (0 for the original)
+     */
+    public int getCopy() {
+        return copy;
+    }
+
     @Override
     public String toString() {
-        return "LogLine{" + "timeDelta=" + timeDelta + ", query=" + query + '}';
+        return "LogLine{" + "timeDelta=" + timeDelta + ", query=" + query + ( source == null ? "" : ", source=" + source ) + ( copy == 0 ? "" : ", copy=" + copy ) + '}';
     }
 
     public boolean isValid() {
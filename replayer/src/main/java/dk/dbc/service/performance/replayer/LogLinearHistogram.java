@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non negative values in log-linear buckets (as HdrHistogram)
+ * <p>
+ * Values below 2^bits are counted exactly, above that each power of two is
+ * split into 2^bits buckets, where bits is chosen from the number of
+ * significant digits, so a value is known within 10^-digits of itself.
+ * Memory is fixed by the highest trackable value; larger values are counted in
+ * the last bucket (the max is still exact).
+ * <p>
+ * Values can be recorded from any thread without locking. Histograms with the
+ * same layout can be added together, ie. from several threads, time slots or
+ * runs.
+ */
+public class LogLinearHistogram {
+
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final int subBucketBits;
+    private final int subBuckets;
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    /**
+     * @param highestTrackableValue values above this are counted as this
+     * @param significantDigits     precision 1-5
+     */
+    public LogLinearHistogram(long highestTrackableValue, int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 5)
+            throw new IllegalArgumentException("Significant digits should be 1-5");
+        if (highestTrackableValue < 1)
+            throw new IllegalArgumentException("Highest trackable value should be positive");
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+        this.subBucketBits = 64 - Long.numberOfLeadingZeros(pow10(significantDigits) - 1);
+        this.subBuckets = 1 << subBucketBits;
+        this.counts = new AtomicLongArray(bucketOf(highestTrackableValue) + 1);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * Make an empty histogram with the same layout
+     *
+     * @param layout histogram to copy the layout from
+     */
+    public LogLinearHistogram(LogLinearHistogram layout) {
+        this(layout.highestTrackableValue, layout.significantDigits);
+    }
+
+    /**
+     * Read a histogram, as written by {@link HistogramSerializer}
+     *
+     * @param node json representation
+     * @return histogram
+     * @throws IllegalArgumentException if the json is not a histogram
+     */
+    public static LogLinearHistogram of(JsonNode node) {
+        JsonNode buckets = node.path("buckets");
+        if (!node.path("highestTrackableValue").canConvertToLong() ||
+            !node.path("significantDigits").canConvertToInt() ||
+            !buckets.isArray())
+            throw new IllegalArgumentException("Not a histogram");
+        LogLinearHistogram histogram = new LogLinearHistogram(node.get("highestTrackableValue").asLong(),
+                                                              node.get("significantDigits").asInt());
+        for (JsonNode bucket : buckets) {
+            histogram.recordValue(bucket.path(0).asLong(), bucket.path(1).asLong());
+        }
+        if (histogram.getCount() > 0) {
+            histogram.min.set(node.path("min").asLong(histogram.getMin()));
+            histogram.max.set(node.path("max").asLong(histogram.getMax()));
+            histogram.sum.set(node.path("sum").asLong(histogram.getSum()));
+        }
+        return histogram;
+    }
+
+    /**
+     * Count a value
+     *
+     * @param value value to count (negative are counted as 0)
+     */
+    public void recordValue(long value) {
+        recordValue(value, 1);
+    }
+
+    /**
+     * Count a value a number of times
+     *
+     * @param value value to count (negative are counted as 0)
+     * @param times how many times
+     */
+    public void recordValue(long value, long times) {
+        if (times <= 0)
+            return;
+        long v = Math.max(0, value);
+        counts.addAndGet(bucketOf(v), times);
+        count.addAndGet(times);
+        sum.addAndGet(v * times);
+        min.accumulateAndGet(v, Math::min);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * Add the counts of another histogram to this
+     *
+     * @param other histogram with the same layout
+     * @throws IllegalArgumentException if the layouts differ
+     */
+    public void add(LogLinearHistogram other) {
+        if (other.highestTrackableValue != highestTrackableValue ||
+            other.significantDigits != significantDigits)
+            throw new IllegalArgumentException("Cannot add histograms of different layouts");
+        for (int i = 0 ; i < counts.length() ; i++) {
+            long c = other.counts.get(i);
+            if (c != 0)
+                counts.addAndGet(i, c);
+        }
+        long c = other.count.get();
+        if (c == 0)
+            return;
+        count.addAndGet(c);
+        sum.addAndGet(other.sum.get());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Make a copy, that is not affected by values recorded afterwards
+     *
+     * @return new histogram
+     */
+    public LogLinearHistogram copy() {
+        LogLinearHistogram copy = new LogLinearHistogram(this);
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * The values recorded since an earlier copy of this histogram
+     * <p>
+     * Min and max are those of the buckets (limited by the max of this)
+     *
+     * @param earlier a copy of this histogram
+     * @return new histogram
+     * @throws IllegalArgumentException if the layouts differ
+     */
+    public LogLinearHistogram since(LogLinearHistogram earlier) {
+        if (earlier.highestTrackableValue != highestTrackableValue ||
+            earlier.significantDigits != significantDigits)
+            throw new IllegalArgumentException("Cannot subtract histograms of different layouts");
+        LogLinearHistogram interval = new LogLinearHistogram(this);
+        long total = 0;
+        for (int i = 0 ; i < counts.length() ; i++) {
+            long c = counts.get(i) - earlier.counts.get(i);
+            if (c > 0) {
+                interval.counts.set(i, c);
+                if (total == 0)
+                    interval.min.set(Math.min(lowestValueOf(i), getMax()));
+                interval.max.set(Math.min(highestValueOf(i), getMax()));
+                total += c;
+            }
+        }
+        interval.count.set(total);
+        interval.sum.set(sum.get() - earlier.sum.get());
+        if (total == 0) {
+            interval.min.set(Long.MAX_VALUE);
+            interval.max.set(Long.MIN_VALUE);
+        }
+        return interval;
+    }
+
+    /**
+     * Forget all values
+     * <p>
+     * Not safe while values are being recorded
+     */
+    public void reset() {
+        for (int i = 0 ; i < counts.length() ; i++) {
+            counts.set(i, 0L);
+        }
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Value at a given percentile
+     * <p>
+     * For a stable result while values are being recorded, use a
+     * {@link #copy()}
+     *
+     * @param percentile 0-100
+     * @return the highest value (in the bucket) of the percentile, limited by
+     *         the max, or 0 if there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0 ; i < counts.length() ; i++) {
+            total += counts.get(i);
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0 ; i < counts.length() ; i++) {
+            seen += counts.get(i);
+            if (seen >= target && seen == total)
+                return getMax(); // Includes values above highest trackable
+            if (seen >= target)
+                return Math.min(highestValueOf(i), getMax());
+        }
+        return 0;
+    }
+
+    /**
+     * Number of values at or above a value
+     * <p>
+     * The bucket of the value counts as above, so values within the precision
+     * below it may be included
+     *
+     * @param value lowest value to count
+     * @return count
+     */
+    public long getCountAtOrAbove(long value) {
+        long total = 0;
+        for (int i = bucketOf(Math.max(0, value)) ; i < counts.length() ; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMin() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return count.get() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0.0 : (double) sum.get() / c;
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    int bucketCount() {
+        return counts.length();
+    }
+
+    long countAt(int bucket) {
+        return counts.get(bucket);
+    }
+
+    int bucketOf(long value) {
+        long v = Math.min(value, highestTrackableValue);
+        if (v < subBuckets)
+            return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - subBucketBits;
+        return shift * subBuckets + (int) ( v >>> shift );
+    }
+
+    long lowestValueOf(int bucket) {
+        if (bucket < subBuckets)
+            return bucket;
+        int shift = bucket / subBuckets - 1;
+        long sub = bucket % subBuckets;
+        return ( subBuckets + sub ) << shift;
+    }
+
+    long highestValueOf(int bucket) {
+        if (bucket < subBuckets)
+            return bucket;
+        int shift = bucket / subBuckets - 1;
+        long sub = bucket % subBuckets;
+        long next = ( subBuckets + sub + 1 ) << shift;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0 ; i < exponent ; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
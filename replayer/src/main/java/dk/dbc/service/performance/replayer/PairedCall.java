@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The two calls of a request in an A/B comparison
+ * <p>
+ * The calls complete on their own pools, in any order. The one completing last
+ * adds the pair to the collector.
+ */
+public class PairedCall {
+
+    static final String TARGET_A = "a";
+    static final String TARGET_B = "b";
+
+    private final LogCollector logCollector;
+    private final AtomicInteger pending;
+    private LogCollector.LogEntry a;
+    private LogCollector.LogEntry b;
+
+    /**
+     * @param logCollector where to add the pair
+     */
+    public PairedCall(LogCollector logCollector) {
+        this.logCollector = logCollector;
+        this.pending = new AtomicInteger(2);
+    }
+
+    /**
+     * A call of the pair has completed
+     * <p>
+     * The entries are published to the last caller by the counter
+     *
+     * @param entry the entry of the call (with its target)
+     */
+    public void completed(LogCollector.LogEntry entry) {
+        if (TARGET_B.equals(entry.getTarget()))
+            b = entry;
+        else
+            a = entry;
+        if (pending.decrementAndGet() == 0)
+            logCollector.addPair(a, b);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm up the client before the replay starts
+ * <p>
+ * The calls are first sent to a local sink, that answers at once, through the
+ * same tasks, sender and collector (writing to nowhere) as the replay, until
+ * the JIT compiler has settled, so the first calls of the replay do not pay
+ * for class loading and interpretation. Then a number of connections are
+ * opened to the service at once (a HEAD of the service url), so the first
+ * calls find them in the keep-alive cache of the http client.
+ */
+public class PreStart {
+
+    private static final Logger log = LoggerFactory.getLogger(PreStart.class);
+
+    private static final int ROUND = 500;
+    private static final int THREADS = 4;
+    private static final int MIN_ROUNDS = 4;
+    private static final int MAX_ROUNDS = 40;
+    private static final long MAX_WARMUP_TIME = 10_000L;
+    // The JIT compiler has settled, when it works less than 1/20 of a round
+    private static final long STEADY_COMPILATION_SHARE = 20L;
+    private static final byte[] SINK_RESPONSE = ( "HTTP/1.1 200 OK\r\n" +
+                                                  "Content-Type: application/json\r\n" +
+                                                  "Content-Length: 2\r\n" +
+                                                  "\r\n" +
+                                                  "{}" ).getBytes(StandardCharsets.US_ASCII);
+
+    private static final JobListener NO_LISTENER = new JobListener() {
+        @Override
+        public void callTimeExceeded() {
+        }
+
+        @Override
+        public void sloBreached(String message) {
+        }
+    };
+
+    private static final OutputStream NOWHERE = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Config config;
+
+    public PreStart(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Let the keep-alive cache of the http client hold the connections of
+     * the pre-start
+     * <p>
+     * This is a process-wide setting (the http.maxConnections system
+     * property, default 5 per destination), that the JDK reads once, when the
+     * cache is first used, so it cannot be scoped to the replay or restored.
+     * It is set once from Main, before any connection is made, and only if
+     * it is not given with -D. A worker gets its configuration later, so it
+     * needs -Dhttp.maxConnections for pre-starts of more than 5 connections.
+     *
+     * @param config the configuration of the run
+     */
+    public static void configureConnectionCache(Config config) {
+        if (config.getPrestart() > 0 && System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, config.getPrestart())));
+    }
+
+    /**
+     * Warm up the client, and open the connections to the service(s)
+     *
+     * @return the calls and compilation time of the warm-up, the connections
+     *         opened and the time it all took
+     * @throws IOException if no connection could be opened to a service
+     */
+    public Map<String, Object> run() throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jit", warmUpClient());
+        if (!config.isDryRun()) {
+            Map<String, Object> connections = new LinkedHashMap<>();
+            connections.put(config.getService(), openConnections(config.getService()));
+            if (config.isComparison())
+                connections.put(config.getCompareService(), openConnections(config.getCompareService()));
+            stats.put("connections", connections);
+        }
+        stats.put("time", System.currentTimeMillis() - start);
+        return stats;
+    }
+
+    /**
+     * Send calls to a local sink in rounds, until a round does not make the
+     * JIT compiler work (or the rounds or time run out)
+     *
+     * @return calls, rounds and ms of compilation
+     * @throws IOException if the sink cannot be started
+     */
+    private Map<String, Object> warmUpClient() throws IOException {
+        long start = System.currentTimeMillis();
+        ServerSocket sink = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        ExecutorService sinkExecutor = Executors.newCachedThreadPool();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        sinkExecutor.execute(() -> accept(sink, sinkExecutor));
+        try {
+            LogCollector collector = new LogCollector(config);
+            collector.addConfig(config.asMap());
+            collector.open(NOWHERE);
+            ServiceSender sender = new ServiceSender("http://" + sink.getInetAddress().getHostAddress() + ":" + sink.getLocalPort(), collector);
+            CallTimeWathcer watcher = new CallTimeWathcer(config.getCallBufferSize(), config.getMaxDelayedCalls(), Long.MAX_VALUE);
+            SloWatchdog watchdog = new SloWatchdog(Collections.emptyList(), collector, NO_LISTENER);
+            CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+            boolean monitored = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+            long compilationStart = monitored ? compiler.getTotalCompilationTime() : 0L;
+            long compiled = compilationStart;
+            long calls = 0;
+            int rounds = 0;
+            while (rounds < MAX_ROUNDS && System.currentTimeMillis() - start < MAX_WARMUP_TIME) {
+                long roundStart = System.currentTimeMillis();
+                CountDownLatch done = new CountDownLatch(ROUND);
+                for (int i = 0 ; i < ROUND ; i++) {
+                    calls++;
+                    LogLine logLine = LogLine.of(calls + " /prestart?call=" + calls);
+                    LogCollector.LogEntry logEntry = LogCollector.newEntry();
+                    logEntry.setTimes(logLine.getTimeDelta(), 0);
+                    logEntry.setLine(calls);
+                    ReplayerTask task = new ReplayerTask(config, sender, collector, watcher, watchdog, logLine, NO_LISTENER, logEntry, null);
+                    executorService.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                done.await();
+                rounds++;
+                if (rounds < MIN_ROUNDS)
+                    continue;
+                if (!monitored)
+                    break;
+                long now = compiler.getTotalCompilationTime();
+                if (( now - compiled ) * STEADY_COMPILATION_SHARE <= System.currentTimeMillis() - roundStart)
+                    break;
+                compiled = now;
+            }
+            collector.close();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("calls", calls);
+            stats.put("rounds", rounds);
+            if (monitored)
+                stats.put("compilationTime", compiler.getTotalCompilationTime() - compilationStart);
+            stats.put("time", System.currentTimeMillis() - start);
+            return stats;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted!!!");
+        } finally {
+            executorService.shutdownNow();
+            sink.close();
+            sinkExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Accept connections to the sink, until it is closed
+     *
+     * @param sink     server socket
+     * @param executor where the connections are served
+     */
+    private static void accept(ServerSocket sink, ExecutorService executor) {
+        try {
+            for (;;) {
+                Socket socket = sink.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            }
+        } catch (IOException ex) {
+            log.debug("Sink closed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Answer the GET requests of a (keep-alive) connection at once
+     * <p>
+     * The answer is written in one go, on a socket without delay, so the
+     * client does not wait for an acknowledgement of a partial answer.
+     *
+     * @param socket connection to the sink
+     */
+    private static void serve(Socket socket) {
+        try (Socket s = socket ;
+             InputStream is = new BufferedInputStream(s.getInputStream()) ;
+             OutputStream os = s.getOutputStream()) {
+            int c;
+            int newlines = 0;
+            while (( c = is.read() ) != -1) {
+                if (c == '\n') {
+                    if (++newlines == 2) {
+                        os.write(SINK_RESPONSE);
+                        os.flush();
+                        newlines = 0;
+                    }
+                } else if (c != '\r') {
+                    newlines = 0;
+                }
+            }
+        } catch (IOException ex) {
+            log.debug("Sink connection closed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Open connections to a service at the same time, so they are not reused
+     * by each other, and leave them in the keep-alive cache
+     *
+     * @param service service url
+     * @return number opened and failed, and the connect times (ms)
+     * @throws IOException if no connection could be opened
+     */
+    private Map<String, Object> openConnections(String service) throws IOException {
+        int count = config.getPrestart();
+        int timeout = (int) Math.min(Integer.MAX_VALUE, config.getCallTimeConstraint());
+        CountDownLatch responded = new CountDownLatch(count);
+        ExecutorService executorService = Executors.newFixedThreadPool(count);
+        List<Future<Long>> futures = new ArrayList<>();
+        try {
+            for (int i = 0 ; i < count ; i++) {
+                futures.add(executorService.submit(() -> {
+                    long start = System.nanoTime();
+                    HttpURLConnection client;
+                    int responseCode;
+                    try {
+                        client = (HttpURLConnection) new URL(service).openConnection();
+                        client.setRequestMethod("HEAD");
+                        client.setConnectTimeout(timeout);
+                        client.setReadTimeout(timeout);
+                        responseCode = client.getResponseCode();
+                    } finally {
+                        responded.countDown();
+                    }
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                    // Hold the connection until all have one, so none is reused
+                    responded.await(timeout, TimeUnit.MILLISECONDS);
+                    try (InputStream is = responseCode < 400 ? client.getInputStream() : client.getErrorStream()) {
+                        while (is != null && is.read() != -1) {
+                        }
+                    }
+                    return micros;
+                }));
+            }
+            LongSummaryStatistics connectTimes = new LongSummaryStatistics();
+            String error = null;
+            for (Future<Long> future : futures) {
+                try {
+                    connectTimes.accept(future.get());
+                } catch (ExecutionException ex) {
+                    error = ex.getCause().getMessage();
+                }
+            }
+            if (connectTimes.getCount() == 0)
+                throw new IOException("No connection could be opened to " + service + ": " + error);
+            if (error != null)
+                log.warn("{} of {} connections to {} failed: {}", count - connectTimes.getCount(), count, service, error);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("opened", connectTimes.getCount());
+            stats.put("failed", count - connectTimes.getCount());
+            stats.put("min", connectTimes.getMin() / 1000.0);
+            stats.put("mean", connectTimes.getAverage() / 1000.0);
+            stats.put("max", connectTimes.getMax() / 1000.0);
+            return stats;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted!!!");
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A rule that gives queries a class, so their call times are summarized
+ * apart from other queries
+ * <p>
+ * Format:
+ * <ul>
+ * <li>path[:DEPTH] - the path of the query (the first DEPTH segments), with
+ * numeric segments as {n} ie. /search
+ * <li>param:NAME[=VALUE] - NAME (or NAME=VALUE) if the query has the parameter
+ * (with the value) ie. param:facet=true
+ * <li>match:LABEL=REGEX - LABEL if the query matches the regular expression
+ * (found anywhere in it) ie. match:export=rows=\d{4,}
+ * </ul>
+ * The class of a query is the labels the rules give it, joined by a space in
+ * the order of the rules, except that only the first matching match: rule
+ * counts. A query no rule gives a label is of the class {@link #OTHER}.
+ */
+public final class QueryClass {
+
+    static final String OTHER = "other";
+
+    public enum Kind {
+        PATH, PARAM, MATCH
+    }
+
+    private final String text;
+    private final Kind kind;
+    private final int depth;
+    private final String name;
+    private final String value;
+    private final String label;
+    private final Pattern pattern;
+
+    /**
+     * Convert a rule text into an object
+     *
+     * @param text rule as given on the command line
+     * @return rule
+     * @throws IllegalArgumentException if the text is not a valid rule
+     */
+    public static QueryClass of(String text) {
+        String[] parts = text.trim().split(":", 2);
+        switch (parts[0]) {
+            case "path":
+                int depth = Integer.MAX_VALUE;
+                if (parts.length == 2) {
+                    try {
+                        depth = Integer.parseInt(parts[1]);
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Depth of path is not a number (" + text + ")");
+                    }
+                    if (depth < 1)
+                        throw new IllegalArgumentException("Depth of path needs to be at least 1 (" + text + ")");
+                }
+                return new QueryClass(text, Kind.PATH, depth, null, null, null, null);
+            case "param":
+                if (parts.length != 2 || parts[1].isEmpty() || parts[1].startsWith("="))
+                    throw new IllegalArgumentException("Parameter rule is not in valid format param:NAME[=VALUE] (" + text + ")");
+                String[] param = parts[1].split("=", 2);
+                return new QueryClass(text, Kind.PARAM, 0, param[0], param.length == 2 ? param[1] : null, parts[1], null);
+            case "match":
+                String[] match = parts.length == 2 ? parts[1].split("=", 2) : new String[0];
+                if (match.length != 2 || match[0].isEmpty() || match[1].isEmpty())
+                    throw new IllegalArgumentException("Match rule is not in valid format match:LABEL=REGEX (" + text + ")");
+                try {
+                    return new QueryClass(text, Kind.MATCH, 0, null, null, match[0], Pattern.compile(match[1]));
+                } catch (PatternSyntaxException ex) {
+                    throw new IllegalArgumentException("Invalid regular expression (" + text + "): " + ex.getDescription());
+                }
+            default:
+                throw new IllegalArgumentException("Class rule is not one of path[:DEPTH], param:NAME[=VALUE] or match:LABEL=REGEX (" + text + ")");
+        }
+    }
+
+    private QueryClass(String text, Kind kind, int depth, String name, String value, String label, Pattern pattern) {
+        this.text = text;
+        this.kind = kind;
+        this.depth = depth;
+        this.name = name;
+        this.value = value;
+        this.label = label;
+        this.pattern = pattern;
+    }
+
+    /**
+     * The class of a query
+     *
+     * @param rules rules to classify by
+     * @param query query as recorded (path and parameters)
+     * @return class, {@link #OTHER} if no rule gives a label
+     */
+    public static String classOf(List<QueryClass> rules, String query) {
+        StringBuilder sb = new StringBuilder();
+        boolean matched = false;
+        for (QueryClass rule : rules) {
+            if (rule.kind == Kind.MATCH && matched)
+                continue;
+            String l = rule.labelOf(query);
+            if (l == null)
+                continue;
+            matched |= rule.kind == Kind.MATCH;
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(l);
+        }
+        return sb.length() == 0 ? OTHER : sb.toString();
+    }
+
+    /**
+     * The label this rule gives a query
+     *
+     * @param query query as recorded
+     * @return label or null if the rule does not apply
+     */
+    String labelOf(String query) {
+        int q = query.indexOf('?');
+        if (q < 0 && !query.startsWith("/") && query.indexOf('=') >= 0)
+            q = -1; // Only parameters, the service url ends with the path and ?
+        else if (q < 0)
+            q = query.length();
+        switch (kind) {
+            case PATH:
+                return pathOf(query.substring(0, Math.max(q, 0)));
+            case PARAM:
+                if (q >= query.length())
+                    return null;
+                for (String parameter : query.substring(q + 1).split("&")) {
+                    int eq = parameter.indexOf('=');
+                    String n = eq < 0 ? parameter : parameter.substring(0, eq);
+                    if (n.equals(name) && ( value == null || eq >= 0 && parameter.substring(eq + 1).equals(value) ))
+                        return label;
+                }
+                return null;
+            case MATCH:
+                return pattern.matcher(query).find() ? label : null;
+            default:
+                throw new IllegalStateException("Unknown kind: " + kind);
+        }
+    }
+
+    private String pathOf(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty())
+                continue;
+            if (segments.size() == depth)
+                break;
+            segments.add(segment.matches("\\d+") ? "{n}" : segment);
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads and parses the requests on its own thread, ahead of the dispatcher
+ * <p>
+ * The parsed lines are handed over in a bounded ring with one producer (the
+ * reader thread) and one consumer at a time (the dispatcher, or the virtual
+ * users under their lock). The positions are published with ordered writes,
+ * and a side waits by parking briefly, so neither takes a lock.
+ * <p>
+ * The ring is filled before the replay starts. The times the reader waits for
+ * a full ring (stalls) and the dispatcher for an empty one (starvations) are
+ * counted; starvations mean that reading the recording is too slow for the
+ * replay speed.
+ */
+public class ReadAhead implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadAhead.class);
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    static final long MAX_FILL_WAIT = TimeUnit.SECONDS.toNanos(5);
+
+    private final Amplifier source;
+    private final LogLine[] ring;
+    private final int mask;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final AtomicLong stalls;
+    private final AtomicLong stallNanos;
+    private final AtomicLong starvations;
+    private final AtomicLong starvationNanos;
+    private final Thread thread;
+    private volatile boolean done;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Start reading, and wait (up to 5s) until the ring is full or all is
+     * read
+     *
+     * @param source requests to read
+     * @param size   number of lines to read ahead, 0 for reading on the
+     *               thread calling {@link #next()}
+     */
+    public ReadAhead(Amplifier source, int size) {
+        this(source, size, MAX_FILL_WAIT);
+    }
+
+    /**
+     * Start reading, and wait until the ring is full or all is read
+     *
+     * @param source   requests to read
+     * @param size     number of lines to read ahead, 0 for reading on the
+     *                 thread calling {@link #next()}
+     * @param fillWait max ns to wait, 0 for not waiting (a live recording
+     *                 does not fill the ring ahead of time)
+     */
+    public ReadAhead(Amplifier source, int size, long fillWait) {
+        this.source = source;
+        int capacity = size <= 0 ? 0 : Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.ring = new LogLine[capacity];
+        this.mask = capacity - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.stalls = new AtomicLong();
+        this.stallNanos = new AtomicLong();
+        this.starvations = new AtomicLong();
+        this.starvationNanos = new AtomicLong();
+        this.done = false;
+        this.closed = false;
+        this.failure = null;
+        if (capacity == 0) {
+            this.thread = null;
+        } else {
+            this.thread = new Thread(this::read, "read-ahead");
+            thread.setDaemon(true);
+            thread.start();
+            long deadline = System.nanoTime() + fillWait;
+            while (!done && tail.get() < capacity && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * The next request
+     *
+     * @return line, or null when all are read
+     * @throws IOException if a recording cannot be read
+     */
+    public LogLine next() throws IOException {
+        return next(() -> false);
+    }
+
+    /**
+     * The next request, unless the wait for it is given up
+     * <p>
+     * A live recording can be idle for a long time, so the replay needs to be
+     * able to end while it waits. Without a read-ahead the reading cannot be
+     * given up.
+     *
+     * @param giveUp checked while waiting for a line
+     * @return line, or null when all are read, or the wait is given up
+     * @throws IOException if a recording cannot be read
+     */
+    public LogLine next(BooleanSupplier giveUp) throws IOException {
+        if (thread == null)
+            return source.next();
+        long h = head.get();
+        if (h == tail.get() && !done) {
+            starvations.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                while (h == tail.get() && !done) {
+                    if (giveUp.getAsBoolean())
+                        return null;
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            } finally {
+                starvationNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        if (h == tail.get()) { // Done, check again as the last line is published before done
+            if (failure != null)
+                throw failure;
+            return null;
+        }
+        int slot = (int) h & mask;
+        LogLine line = ring[slot];
+        ring[slot] = null;
+        head.lazySet(h + 1);
+        return line;
+    }
+
+    private void read() {
+        try {
+            for (LogLine line = source.next() ; line != null && !closed ; line = source.next()) {
+                long t = tail.get();
+                if (t - head.get() == ring.length) {
+                    stalls.incrementAndGet();
+                    long start = System.nanoTime();
+                    while (t - head.get() == ring.length && !closed) {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                    stallNanos.addAndGet(System.nanoTime() - start);
+                }
+                ring[(int) t & mask] = line;
+                tail.lazySet(t + 1);
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        } catch (RuntimeException ex) {
+            log.debug("Error reading ahead: ", ex);
+            failure = new IOException(ex.getMessage(), ex);
+        } finally {
+            done = true;
+        }
+    }
+
+    /**
+     * How the reading kept up
+     * <p>
+     * Ring size, number and total time (ms) of the stalls of the reader and
+     * of the starvations of the dispatcher
+     *
+     * @return statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", ring.length);
+        stats.put("stalls", stalls.get());
+        stats.put("stallTime", TimeUnit.NANOSECONDS.toMillis(stallNanos.get()));
+        stats.put("starvations", starvations.get());
+        stats.put("starvationTime", TimeUnit.NANOSECONDS.toMillis(starvationNanos.get()));
+        return stats;
+    }
+
+    /**
+     * Stop reading
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (thread == null)
+            return;
+        try {
+            thread.join(1000L);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
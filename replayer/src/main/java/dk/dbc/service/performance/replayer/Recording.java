@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A recording in a mix of recordings
+ * <p>
+ * Format: [TAG=]FILE[:SPEED[:WEIGHT]] where SPEED is in percent of the
+ * recorded speed (as -r) and WEIGHT is the percentage of the lines, that are
+ * replayed. ie. "search=search.data:200:50" replays every other line of
+ * search.data, at twice the speed. The tag defaults to the file name without
+ * extension.
+ * <p>
+ * The file "-" is standard input, ie. the output of the recorder piped into the
+ * replayer.
+ */
+public final class Recording {
+
+    static final String STDIN = "-";
+
+    private static final Pattern RECORDING_PATTERN = Pattern.compile("(?:(\\w[\\w.-]*)=)?(.+?)(?::(\\d+(?:\\.\\d+)?)%?(?::(\\d+(?:\\.\\d+)?)%?)?)?");
+
+    private final String text;
+    private final String tag;
+    private final String file;
+    private final double speed;
+    private final double weight;
+
+    /**
+     * Convert a recording text into an object
+     *
+     * @param text recording as given on the command line
+     * @return recording
+     * @throws IllegalArgumentException if the text is not a valid recording
+     */
+    public static Recording of(String text) {
+        Matcher m = RECORDING_PATTERN.matcher(text.trim());
+        if (!m.matches())
+            throw new IllegalArgumentException("Recording is not in valid format [TAG=]FILE[:SPEED[:WEIGHT]] (" + text + ")");
+        String file = m.group(2);
+        String tag = m.group(1);
+        double speed = m.group(3) == null ? 100.0 : Double.parseDouble(m.group(3));
+        double weight = m.group(4) == null ? 100.0 : Double.parseDouble(m.group(4));
+        if (speed <= 0)
+            throw new IllegalArgumentException("Speed of a recording needs to be above 0 (" + text + ")");
+        if (weight <= 0 || weight > 100)
+            throw new IllegalArgumentException("Weight of a recording needs to be above 0 and at most 100 (" + text + ")");
+        return new Recording(text.trim(), tag, file, speed, weight);
+    }
+
+    private Recording(String text, String tag, String file, double speed, double weight) {
+        this.text = text;
+        this.tag = tag;
+        this.file = file;
+        this.speed = speed;
+        this.weight = weight;
+    }
+
+    /**
+     * The tag, the calls of the recording are counted under
+     *
+     * @return the given tag or the file name without extension
+     */
+    public String getTag() {
+        if (tag != null)
+            return tag;
+        if (isStdin())
+            return "stdin";
+        return new File(file).getName().replaceFirst("\\.[^.]*$", "");
+    }
+
+    /**
+     * If a tag is given
+     *
+     * @return if the text has a tag
+     */
+    public boolean isTagged() {
+        return tag != null;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * If the recording is read from standard input
+     *
+     * @return if the file is "-"
+     */
+    public boolean isStdin() {
+        return STDIN.equals(file);
+    }
+
+    /**
+     * If the recording can be opened: standard input, or a file that is not a
+     * directory (a regular file or a pipe)
+     *
+     * @return if the recording exists
+     */
+    public boolean exists() {
+        if (isStdin())
+            return true;
+        File f = new File(file);
+        return f.exists() && !f.isDirectory();
+    }
+
+    /**
+     * @return percent of the recorded speed
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return percent of the lines to replay
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
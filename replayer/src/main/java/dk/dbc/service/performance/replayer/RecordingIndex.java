@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Sparse index of a recording: the byte position of the first line of each
+ * second of the recorded time
+ * <p>
+ * The index is made by scanning the bytes of the recording once (only the
+ * time in front of each line is parsed), and is cached next to the recording
+ * as FILE.idx, with the size and modification time of the recording, so it is
+ * made again if the recording changes. If the cache cannot be written, the
+ * index is only kept in memory.
+ * <p>
+ * Cache format: a header line, and a line of "time position lines" for each
+ * entry, where lines is the number of lines before the position.
+ */
+public final class RecordingIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordingIndex.class);
+
+    static final long STEP = 1000L;
+    private static final String HEADER = "#recording-index";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long[] times;
+    private final long[] positions;
+    private final long[] lines;
+
+    private RecordingIndex(long[] times, long[] positions, long[] lines) {
+        this.times = times;
+        this.positions = positions;
+        this.lines = lines;
+    }
+
+    /**
+     * The index of a recording, from the cache if it is up to date
+     *
+     * @param file recording
+     * @return index
+     * @throws IOException if the recording cannot be read
+     */
+    public static RecordingIndex of(String file) throws IOException {
+        File recording = new File(file);
+        File cache = new File(file + ".idx");
+        String header = HEADER + " length=" + recording.length() + " modified=" + recording.lastModified() + " step=" + STEP;
+        RecordingIndex index = load(cache, header);
+        if (index != null)
+            return index;
+        long start = System.currentTimeMillis();
+        index = build(recording);
+        log.info("Indexed {} ({} entries) in {}ms", file, index.size(), System.currentTimeMillis() - start);
+        try {
+            index.save(cache, header);
+        } catch (IOException ex) {
+            log.warn("Cannot cache index of {}: {}", file, ex.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Scan a recording
+     *
+     * @param recording file
+     * @return index
+     * @throws IOException if the recording cannot be read
+     */
+    static RecordingIndex build(File recording) throws IOException {
+        Builder builder = new Builder();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = new FileInputStream(recording)) {
+            long position = 0;
+            long lineStart = 0;
+            long lineNumber = 0;
+            long time = 0;
+            int digits = 0;
+            boolean inTime = true;
+            boolean valid = false;
+            for (int n = is.read(buffer) ; n != -1 ; n = is.read(buffer)) {
+                for (int i = 0 ; i < n ; i++) {
+                    byte b = buffer[i];
+                    position++;
+                    if (b == '\n') {
+                        if (valid)
+                            builder.add(time, lineStart, lineNumber);
+                        lineNumber++;
+                        lineStart = position;
+                        time = 0;
+                        digits = 0;
+                        inTime = true;
+                        valid = false;
+                    } else if (inTime) {
+                        if (b >= '0' && b <= '9' && digits < 18) {
+                            time = time * 10 + ( b - '0' );
+                            digits++;
+                        } else {
+                            inTime = false;
+                            valid = digits > 0 && Character.isWhitespace(b);
+                        }
+                    }
+                }
+            }
+            if (valid)
+                builder.add(time, lineStart, lineNumber);
+        }
+        return builder.build();
+    }
+
+    private static RecordingIndex load(File cache, String header) {
+        if (!cache.isFile())
+            return null;
+        try (BufferedReader reader = Files.newBufferedReader(cache.toPath(), StandardCharsets.UTF_8)) {
+            if (!header.equals(reader.readLine()))
+                return null;
+            Builder builder = new Builder();
+            for (String line = reader.readLine() ; line != null ; line = reader.readLine()) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3)
+                    return null;
+                builder.entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            }
+            return builder.build();
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Cannot read index {}: {}", cache, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void save(File cache, String header) throws IOException {
+        File tmp = new File(cache.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+            writer.write(header);
+            writer.newLine();
+            for (int i = 0 ; i < times.length ; i++) {
+                writer.write(times[i] + " " + positions[i] + " " + lines[i]);
+                writer.newLine();
+            }
+        }
+        if (!tmp.renameTo(cache)) {
+            Files.deleteIfExists(tmp.toPath());
+            throw new IOException("Cannot rename " + tmp);
+        }
+    }
+
+    /**
+     * Number of entries
+     *
+     * @return size
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * The last entry before a time, reading from its position finds all
+     * lines from the time
+     *
+     * @param time recorded time (ms)
+     * @return entry number, or -1 if the recording should be read from the
+     *         start
+     */
+    public int entryBefore(long time) {
+        int i = Arrays.binarySearch(times, time);
+        return ( i >= 0 ? i : -i - 1 ) - 1;
+    }
+
+    /**
+     * Byte position of an entry
+     *
+     * @param entry entry number
+     * @return position of the start of the line
+     */
+    public long getPosition(int entry) {
+        return positions[entry];
+    }
+
+    /**
+     * Number of lines before an entry
+     *
+     * @param entry entry number
+     * @return lines
+     */
+    public long getLines(int entry) {
+        return lines[entry];
+    }
+
+    /**
+     * Recorded time of an entry
+     *
+     * @param entry entry number
+     * @return ms
+     */
+    public long getTime(int entry) {
+        return times[entry];
+    }
+
+    /**
+     * Collects the entries, one for each step of the time
+     */
+    private static class Builder {
+
+        private long[] times = new long[64];
+        private long[] positions = new long[64];
+        private long[] lines = new long[64];
+        private int size = 0;
+        private long next = 0;
+
+        private void add(long time, long position, long lineNumber) {
+            if (time < next)
+                return;
+            next = ( time / STEP + 1 ) * STEP;
+            entry(time, position, lineNumber);
+        }
+
+        private void entry(long time, long position, long lineNumber) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            times[size] = time;
+            positions[size] = position;
+            lines[size] = lineNumber;
+            size++;
+        }
+
+        private RecordingIndex build() {
+            return new RecordingIndex(Arrays.copyOf(times, size), Arrays.copyOf(positions, size), Arrays.copyOf(lines, size));
+        }
+    }
+}
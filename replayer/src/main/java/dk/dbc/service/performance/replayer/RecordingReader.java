@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads a mix of recordings as one stream of lines in time order
+ * <p>
+ * Each recording is read line by line, and the next line of each is kept in a
+ * heap ordered by the time it has in the mix (the recorded time scaled by the
+ * speed of the recording), so only one line per recording is in memory. Lines
+ * are thinned out by the weight of their recording, spread evenly.
+ * <p>
+ * When there are several recordings, or a tag is given, the lines are tagged
+ * with the recording they are from.
+ * <p>
+ * Recordings can be looped: at the end a recording is read again from the
+ * start, continuing its time after the last line with the mean time between
+ * its lines, so the wrap-around does not cause a burst. Reading stops at a
+ * given time of the mix.
+ * <p>
+ * Recordings can be started at a recorded time: the reading starts at the
+ * position of that time in the (cached) {@link RecordingIndex} of the
+ * recording, and the times are rebased, so the first line is at 0.
+ * <p>
+ * Standard input is read as it arrives, the end of the stream is the end of
+ * the recording. A line is returned as soon as it is read, the recording is
+ * read on when the next line is asked for. It is not indexed, a start time skips the lines before it.
+ * <p>
+ * The start time of a recording is taken from the header the recorder writes
+ * as its first line, so a recording that is still being written can be
+ * replayed relative to the wall clock.
+ */
+public class RecordingReader implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordingReader.class);
+
+    private static final long SINGLE_LINE_GAP = 1000L;
+    private static final ObjectMapper O = new ObjectMapper();
+
+    private final List<Source> sources;
+    private final PriorityQueue<Source> heap;
+    private final long until;
+    private Source returned;
+
+    /**
+     * Open the recordings, and read the first line of each
+     *
+     * @param recordings recordings to mix
+     * @throws IOException if a recording cannot be read
+     */
+    public RecordingReader(List<Recording> recordings) throws IOException {
+        this(recordings, false, Long.MAX_VALUE, 0L);
+    }
+
+    /**
+     * Open the recordings of a configuration (-i, -R, -t and -a)
+     *
+     * @param config configuration
+     * @return reader
+     * @throws IOException if a recording cannot be read
+     */
+    public static RecordingReader of(Config config) throws IOException {
+        return new RecordingReader(config.getRecordings(), config.isLoop(), config.getReplayTime(), config.getStartAt());
+    }
+
+    /**
+     * Open the recordings, and read the first line of each
+     *
+     * @param recordings recordings to mix
+     * @param loop       if the recordings should be read again at the end
+     * @param until      time of the mix (ms) to stop at
+     * @param startAt    recorded time (ms) to start each recording at
+     * @throws IOException if a recording cannot be read
+     */
+    public RecordingReader(List<Recording> recordings, boolean loop, long until, long startAt) throws IOException {
+        this.until = until;
+        this.sources = new ArrayList<>();
+        this.heap = new PriorityQueue<>(Math.max(1, recordings.size()),
+                                        Comparator.comparingLong((Source s) -> s.current.getTimeDelta())
+                                                .thenComparingInt(s -> s.index));
+        boolean tagged = recordings.size() > 1 || recordings.stream().anyMatch(Recording::isTagged);
+        try {
+            for (Recording recording : recordings) {
+                Source source = new Source(sources.size(), recording, tagged ? recording.getTag() : null, loop, startAt);
+                sources.add(source);
+                if (source.advance())
+                    heap.add(source);
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The next line of the mix
+     *
+     * @return line, or null when all recordings are read, or the time to stop
+     *         at is reached
+     * @throws IOException if a recording cannot be read
+     */
+    public LogLine next() throws IOException {
+        // The recording of the previous line is read on, now that the next
+        // line is asked for, so a live line is not held back until the one
+        // after it is written
+        if (returned != null) {
+            Source previous = returned;
+            returned = null;
+            if (previous.advance())
+                heap.add(previous);
+        }
+        Source source = heap.poll();
+        if (source == null || source.current.getTimeDelta() > until)
+            return null;
+        returned = source;
+        return source.current;
+    }
+
+    /**
+     * When the first recording was started, by its header
+     *
+     * @return instant of the recorded time 0, or null if the recording has no
+     *         header (or is not read yet)
+     */
+    public Instant getStarted() {
+        return sources.isEmpty() ? null : sources.get(0).started;
+    }
+
+    /**
+     * The start time in the header of a recording
+     *
+     * @param text first line of the recording
+     * @return instant, or null if the line is not a header with a valid
+     *         start time
+     */
+    static Instant startedOf(String text) {
+        if (!text.startsWith("#{"))
+            return null;
+        try {
+            JsonNode started = O.readTree(text.substring(1)).get("started");
+            return started == null || !started.isTextual() ? null : Instant.parse(started.asText());
+        } catch (IOException | DateTimeParseException ex) {
+            log.debug("Not a valid header: {}: {}", text, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Close the recordings
+     * <p>
+     * The files are closed below their readers, as a reader can be held by a
+     * read-ahead thread, that is blocked reading a pipe, and closing the
+     * reader would wait for that read. Standard input is left open, the
+     * reading thread is a daemon.
+     */
+    @Override
+    public void close() {
+        for (Source source : sources) {
+            try {
+                if (source.stream != null)
+                    source.stream.close();
+            } catch (IOException ex) {
+                log.debug("Error closing {}: {}", source.recording, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One recording and its next line
+     */
+    private static class Source {
+
+        private final int index;
+        private final Recording recording;
+        private final String tag;
+        private final boolean loop;
+        private final long startAt;
+        private final RecordingIndex timeIndex;
+        private BufferedReader reader;
+        private FileInputStream stream;
+        private long lineNumber;
+        private double weight;
+        private LogLine current;
+        private long base;
+        private long first;
+        private long last;
+        private long lines;
+        private Instant started;
+
+        private Source(int index, Recording recording, String tag, boolean loop, long startAt) throws IOException {
+            this.index = index;
+            this.recording = recording;
+            this.tag = tag;
+            this.loop = loop;
+            this.startAt = startAt;
+            this.timeIndex = startAt > 0 && !recording.isStdin() ? RecordingIndex.of(recording.getFile()) : null;
+            this.reader = open();
+            this.weight = 0;
+            this.base = -1;
+            this.lines = 0;
+        }
+
+        /**
+         * Open the recording, at the start time if any
+         */
+        private BufferedReader open() throws IOException {
+            lineNumber = 0;
+            if (recording.isStdin())
+                return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            FileInputStream is = new FileInputStream(recording.getFile());
+            stream = is;
+            int entry = timeIndex == null ? -1 : timeIndex.entryBefore(startAt);
+            if (entry >= 0) {
+                try {
+                    is.getChannel().position(timeIndex.getPosition(entry));
+                } catch (IOException ex) {
+                    is.close();
+                    throw ex;
+                }
+                lineNumber = timeIndex.getLines(entry);
+            }
+            return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Start reading the recording again, after the last line
+         *
+         * @return false if the recording has no lines
+         */
+        private boolean rewind() throws IOException {
+            if (lines == 0)
+                return false;
+            long gap = last > first ? ( last - first ) / Math.max(1, lines - 1) : SINGLE_LINE_GAP;
+            base += last - first + gap;
+            lines = 0;
+            reader.close();
+            reader = open();
+            return true;
+        }
+
+        /**
+         * Read the next line to replay
+         *
+         * @return false at the end of the recording
+         */
+        private boolean advance() throws IOException {
+            for (String text = reader.readLine() ; text != null || loop && rewind() ; text = reader.readLine()) {
+                if (text == null)
+                    continue;
+                lineNumber++;
+                if (lineNumber == 1 && started == null)
+                    started = startedOf(text);
+                LogLine line;
+                try {
+                    line = LogLine.of(text);
+                } catch (RuntimeException ex) {
+                    log.error("Logline not valid logline=" + text);
+                    continue;
+                }
+                if (!line.isValid() || line.getTimeDelta() < startAt)
+                    continue;
+                if (lines++ == 0) {
+                    first = line.getTimeDelta();
+                    if (base < 0)
+                        base = first - startAt;
+                }
+                last = line.getTimeDelta();
+                weight += recording.getWeight();
+                if (weight < 100.0)
+                    continue;
+                weight -= 100.0;
+                long timeDelta = Math.round(( base + last - first ) * 100.0 / recording.getSpeed());
+                current = line.placed(timeDelta, tag, lineNumber);
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A limit on how much worse a result may be than the baseline
+ * <p>
+ * Format: METRIC&gt;THRESHOLD[:ci] where METRIC is
+ * <ul>
+ * <li>pNN or mean - call time, THRESHOLD is in percent of the baseline ie.
+ * p99&gt;10%, or a duration ie. p99&gt;20ms
+ * <li>errors - failed calls in percent of the calls, THRESHOLD is the
+ * increase in percentage points ie. errors&gt;0.5%
+ * </ul>
+ * With :ci the gate is judged by the low end of the confidence interval of
+ * the change, so it only fails when the regression is not noise.
+ */
+public final class RegressionGate {
+
+    private static final Pattern GATE_PATTERN = Pattern.compile("(p\\d+(?:\\.\\d+)?|mean|errors)>(\\d+(?:\\.\\d+)?)(ms|s|%)(:ci)?");
+
+    public enum Metric {
+        PERCENTILE, MEAN, ERRORS
+    }
+
+    private final String text;
+    private final Metric metric;
+    private final double percentile;
+    private final boolean relative;
+    private final double threshold;
+    private final boolean confident;
+
+    /**
+     * Convert a gate text into an object
+     *
+     * @param text gate as given on the command line
+     * @return gate
+     * @throws IllegalArgumentException if the text is not a valid gate
+     */
+    public static RegressionGate of(String text) {
+        Matcher m = GATE_PATTERN.matcher(text.trim().toLowerCase(Locale.ROOT));
+        if (!m.matches())
+            throw new IllegalArgumentException("Gate is not in valid format METRIC>THRESHOLD[:ci] (" + text + ")");
+        String name = m.group(1);
+        String unit = m.group(3);
+        double threshold = Double.parseDouble(m.group(2));
+        double percentile = 0;
+        Metric metric;
+        if (name.equals("errors")) {
+            metric = Metric.ERRORS;
+            if (!unit.equals("%"))
+                throw new IllegalArgumentException("Threshold of errors should be in percent (" + text + ")");
+        } else {
+            metric = name.equals("mean") ? Metric.MEAN : Metric.PERCENTILE;
+            if (metric == Metric.PERCENTILE) {
+                percentile = Double.parseDouble(name.substring(1));
+                if (percentile > 100)
+                    throw new IllegalArgumentException("Percentile cannot be above 100 (" + text + ")");
+            }
+            if (unit.equals("s"))
+                threshold *= 1000;
+        }
+        return new RegressionGate(text.trim(), metric, percentile, unit.equals("%") && metric != Metric.ERRORS, threshold, m.group(4) != null);
+    }
+
+    private RegressionGate(String text, Metric metric, double percentile, boolean relative, double threshold, boolean confident) {
+        this.text = text;
+        this.metric = metric;
+        this.percentile = percentile;
+        this.relative = relative;
+        this.threshold = threshold;
+        this.confident = confident;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * If the threshold is in percent of the baseline
+     *
+     * @return false if the threshold is in ms, or percentage points (errors)
+     */
+    public boolean isRelative() {
+        return relative;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * If the gate is judged by the confidence interval
+     *
+     * @return if :ci is given
+     */
+    public boolean isConfident() {
+        return confident;
+    }
+
+    /**
+     * Test a change against the threshold
+     *
+     * @param change increase in percent, ms or percentage points
+     * @return if the result is worse than allowed
+     */
+    public boolean isExceededBy(double change) {
+        return change > threshold;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The requests of a replay, read before the start
+ * <p>
+ * The requests (after mixing, looping and amplifying) are stored in primitive
+ * columns: the scheduled offsets, line and copy numbers, the recording tags
+ * as indexes, and the queries packed in one pool of utf-8 bytes. Dispatching
+ * from a plan only reads the offsets, the query and the log entry of a request
+ * are made by the task that sends it.
+ * <p>
+ * The dispatcher records the delay of each request it dispatches, and the
+ * tasks take the dispatched requests in order, so one task can be executed
+ * for all of them.
+ */
+public class ReplayPlan {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private final List<String> tags;
+    private final Map<String, Integer> tagIndex;
+    private long[] offsets;
+    private int[] lines;
+    private int[] copies;
+    private short[] sources;
+    private int[] ends;
+    private byte[] pool;
+    private int size;
+    private int poolSize;
+    private boolean truncated;
+    private int[] delays;
+    private final AtomicInteger taken;
+    private volatile int warmUp;
+
+    private ReplayPlan() {
+        this.tags = new ArrayList<>();
+        this.tagIndex = new HashMap<>();
+        this.offsets = new long[INITIAL_SIZE];
+        this.lines = new int[INITIAL_SIZE];
+        this.copies = null;
+        this.sources = null;
+        this.ends = new int[INITIAL_SIZE];
+        this.pool = new byte[INITIAL_SIZE * 64];
+        this.size = 0;
+        this.poolSize = 0;
+        this.truncated = false;
+        this.delays = null;
+        this.taken = new AtomicInteger();
+        this.warmUp = 0;
+    }
+
+    /**
+     * Read all requests into a plan
+     *
+     * @param requests    source of the requests
+     * @param maxLines    number of recorded lines to read (-l)
+     * @param maxRequests number of requests to read (-N)
+     * @return plan
+     * @throws IOException if a recording cannot be read, or the plan does
+     *                     not fit in memory
+     */
+    public static ReplayPlan of(Amplifier requests, long maxLines, long maxRequests) throws IOException {
+        ReplayPlan plan = new ReplayPlan();
+        long numLines = 0;
+        for (LogLine logLine = requests.next() ; logLine != null ; logLine = requests.next()) {
+            if (logLine.getCopy() == 0 && ++numLines > maxLines) {
+                plan.truncated = true;
+                break;
+            }
+            if (plan.size >= maxRequests)
+                break;
+            plan.add(logLine);
+        }
+        plan.trim();
+        return plan;
+    }
+
+    private void add(LogLine logLine) throws IOException {
+        if (size == offsets.length) {
+            if (size == Integer.MAX_VALUE - 8)
+                throw new IOException("Too many requests for a plan");
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, size * 2L);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            if (copies != null)
+                copies = Arrays.copyOf(copies, capacity);
+            if (sources != null)
+                sources = Arrays.copyOf(sources, capacity);
+        }
+        byte[] query = logLine.getQuery().getBytes(StandardCharsets.UTF_8);
+        if (poolSize + (long) query.length > Integer.MAX_VALUE - 8)
+            throw new IOException("Queries too large for a plan");
+        if (poolSize + query.length > pool.length)
+            pool = Arrays.copyOf(pool, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(poolSize + query.length, pool.length * 2L)));
+        System.arraycopy(query, 0, pool, poolSize, query.length);
+        poolSize += query.length;
+
+        offsets[size] = logLine.getTimeDelta();
+        lines[size] = (int) Math.min(logLine.getLine(), Integer.MAX_VALUE);
+        ends[size] = poolSize;
+        if (logLine.getCopy() != 0 && copies == null)
+            copies = new int[offsets.length];
+        if (copies != null)
+            copies[size] = logLine.getCopy();
+        if (logLine.getSource() != null && sources == null) {
+            sources = new short[offsets.length];
+            Arrays.fill(sources, (short) -1);
+        }
+        if (sources != null)
+            sources[size] = sourceIndex(logLine.getSource());
+        size++;
+    }
+
+    private short sourceIndex(String tag) throws IOException {
+        if (tag == null)
+            return -1;
+        Integer index = tagIndex.get(tag);
+        if (index == null) {
+            if (tags.size() == Short.MAX_VALUE)
+                throw new IOException("Too many recordings for a plan");
+            index = tags.size();
+            tags.add(tag);
+            tagIndex.put(tag, index);
+        }
+        return index.shortValue();
+    }
+
+    private void trim() {
+        offsets = Arrays.copyOf(offsets, size);
+        lines = Arrays.copyOf(lines, size);
+        ends = Arrays.copyOf(ends, size);
+        if (copies != null)
+            copies = Arrays.copyOf(copies, size);
+        if (sources != null)
+            sources = Arrays.copyOf(sources, size);
+        pool = Arrays.copyOf(pool, poolSize);
+        delays = new int[size];
+    }
+
+    /**
+     * Number of requests
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * If the plan was cut off by the line limit
+     *
+     * @return if more lines were left
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Size of the query pool
+     *
+     * @return bytes
+     */
+    public long getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Recorded time of a request
+     *
+     * @param index number of the request
+     * @return ms from the start of the (mixed) recording
+     */
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * The query of a request
+     *
+     * @param index number of the request
+     * @return query (decoded from the pool)
+     */
+    public String getQuery(int index) {
+        int start = index == 0 ? 0 : ends[index - 1];
+        return new String(pool, start, ends[index] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A request as a log line
+     *
+     * @param index number of the request
+     * @return new log line
+     */
+    public LogLine logLine(int index) {
+        return LogLine.planned(offsets[index], getQuery(index), sourceOf(index), lines[index], copyOf(index));
+    }
+
+    /**
+     * A log entry for a request
+     *
+     * @param index     number of the request
+     * @param callDelay ms the call was delayed by the dispatcher
+     * @return new log entry
+     */
+    public LogCollector.LogEntry logEntry(int index, long callDelay) {
+        LogCollector.LogEntry logEntry = LogCollector.newEntry();
+        logEntry.setTimes(offsets[index], callDelay);
+        logEntry.setLine(lines[index]);
+        logEntry.setCopy(copyOf(index));
+        logEntry.setSource(sourceOf(index));
+        return logEntry;
+    }
+
+    /**
+     * Record the dispatch of a request
+     * <p>
+     * A task takes the request, when it is executed after this
+     *
+     * @param index     number of the request
+     * @param callDelay ms the call was delayed by the dispatcher
+     * @param warmUp    if the call is part of the warm-up (the warm-up is
+     *                  the first requests)
+     */
+    public void dispatched(int index, long callDelay, boolean warmUp) {
+        delays[index] = (int) Math.min(callDelay, Integer.MAX_VALUE);
+        if (warmUp)
+            this.warmUp = index + 1;
+    }
+
+    /**
+     * Take the next dispatched request
+     * <p>
+     * Each execution of a task takes one request. A task can take a request
+     * dispatched before the one it was executed for, but never one that is
+     * not dispatched yet.
+     *
+     * @return number of the request
+     */
+    public int take() {
+        return taken.getAndIncrement();
+    }
+
+    /**
+     * The delay of a dispatched request
+     *
+     * @param index number of the request
+     * @return ms the call was delayed by the dispatcher
+     */
+    public long getCallDelay(int index) {
+        return delays[index];
+    }
+
+    /**
+     * If a dispatched request is part of the warm-up
+     *
+     * @param index number of the request
+     * @return if it was dispatched as warm-up
+     */
+    public boolean isWarmUp(int index) {
+        return index < warmUp;
+    }
+
+    private int copyOf(int index) {
+        return copies == null ? 0 : copies[index];
+    }
+
+    private String sourceOf(int index) {
+        if (sources == null || sources[index] < 0)
+            return null;
+        return tags.get(sources[index]);
+    }
+}
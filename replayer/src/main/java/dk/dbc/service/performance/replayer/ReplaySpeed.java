@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+/**
+ * Maps the recorded offsets onto the time of the replay
+ */
+public interface ReplaySpeed {
+
+    /**
+     * When a call should be sent
+     * <p>
+     * Called with increasing offsets
+     *
+     * @param recordingOffset ms since the start of the recording
+     * @return ms since the replay started, or Long.MAX_VALUE if the replay
+     *         never gets there
+     */
+    long wallTimeOf(long recordingOffset);
+
+    /**
+     * The speed at a time of the replay
+     *
+     * @param wallTime ms since the replay started
+     * @return percent of the original speed
+     */
+    double speedAt(long wallTime);
+}
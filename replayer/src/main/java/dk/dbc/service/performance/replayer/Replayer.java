@@ -22,12 +22,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /** Replay the recorded queries against a service instance
  * and record execution time and result.
@@ -38,6 +43,19 @@ import java.util.concurrent.TimeUnit;
  * - Limit the number of queries sendt
  * - Limit the total time during test
  * - Abort if a query takes longer than x milliseconds
+ * - Abort if a service level rule is broken
+ * <p>
+ * Calls are sent at the recorded times (open loop), or by a number of
+ * virtual users, each sending the next call when the previous has completed
+ * (closed loop). In a capacity search the replay speed is raised step by step
+ * until the service cannot keep up, and the watchers judge the steps instead
+ * of stopping the replay
+ * <p>
+ * A live replay reads a recording while the recorder writes it, and sends the
+ * calls a fixed delay after they were recorded
+ * <p>
+ * In an A/B comparison each call is sent to two services at the same time,
+ * and the call times are paired
  *
  * @author Mike Andersen (mran@dbc.dk)
  */
@@ -46,7 +64,14 @@ public class Replayer implements JobListener {
     private static final Logger log = LoggerFactory.getLogger(Replayer.class);
 
     private final Config config;
-    private boolean callTimeExceeded = false;
+    private final CountDownLatch aborted = new CountDownLatch(1);
+    private ReplaySpeed profile;
+    private ServiceSender[] senders;
+    private ExecutorService compareExecutorService;
+    private Warmup warmup;
+    private volatile boolean callTimeExceeded = false;
+    private volatile String sloBreach = null;
+    private volatile boolean capacityFound = false;
 
     public Replayer(Config config) {
         this.config = config;
@@ -58,65 +83,92 @@ public class Replayer implements JobListener {
      *         prematurely
      */
     public int run() {
-        LogCollector logCollector = new LogCollector(config);
+        return run(new LogCollector(config), null);
+    }
+
+    /** Run the test at a given instant, and record the result
+     *
+     * @param logCollector where to record the result
+     * @param startAt      when to start (null for now)
+     * @return 0 for complete run, greater than 0 if the test was stopped
+     *         prematurely
+     */
+    public int run(LogCollector logCollector, Instant startAt) {
         CallTimeWathcer wathcer = new CallTimeWathcer(config.getCallBufferSize(), config.getMaxDelayedCalls(), config.getCallTimeConstraint());
-        String input = config.getInput();
+        SloWatchdog watchdog = new SloWatchdog(config.getSloRules(), config.getCapacityWindow(), logCollector, this);
+        CapacitySearch search = config.isCapacitySearch() ? new CapacitySearch(config, logCollector, watchdog, this::capacityFound) : null;
+        profile = search != null ? search : config.getLoadProfile();
+        IntervalReporter reporter = new IntervalReporter(config.getReportInterval(), logCollector, config.isClosedLoop() ? null : profile);
+        String missing = missingRecording();
         ExecutorService executorService = Executors.newCachedThreadPool();
+        if (config.isComparison()) {
+            // Each service has its own pool, so a slow service does not hold back the calls to the other
+            senders = new ServiceSender[] {new ServiceSender(config.getService(), logCollector),
+                                           new ServiceSender(config.getCompareService(), logCollector)};
+            compareExecutorService = Executors.newCachedThreadPool();
+        }
 
         logCollector.addConfig(config.asMap());
         Status runStatus = new Status();
+        warmup = config.hasWarmup() ? new Warmup(config, this) : null;
 
-        if (!fileExistsAndNotDir(input)) {
-            runStatus.setStatus(Status.Code.IOERROR, "File " + input + " does not exist or is not a file");
-        } else {
-            Instant timeStarted = Instant.now();
-
-            try (BufferedReader br = getBufferedReader(input)) {
-                long numLines = 0;
-                while (br.ready()) {
-                    LogCollector.LogEntry logEntry = LogCollector.newEntry();
-
-                    if (callTimeExceeded) {
-                        runStatus.setStatus(Status.Code.CALLTIME_EXCEEDED, "CallTime exceeded (" + config.getCallTimeConstraint() + "ms)");
-                        break;
-                    }
-
-                    numLines++;
-                    if (numLines > config.getLimit()) {
-                        runStatus.setStatus(Status.Code.MAXLINES_EXCEEDED, "Max number of line constraint exceeded (" + config.getLimit() + " lines)");
-                        break;
-                    }
-
-                    LogLine logLine = LogLine.of(br.readLine());
-                    if (!logLine.isValid()) {
-                        log.error("Logline not valid logline=" + logLine);
-                        continue;
-                    }
-
-                    logCollector.addEntry(logEntry);
-                    ReplayerTask task = new ReplayerTask(config, logCollector, wathcer, logLine, this, logEntry);
-                    executorService.execute(task);
-
-                    long runtime = Duration.between(timeStarted, Instant.now()).toMillis();
-                    long originalTimeDelta = logLine.getTimeDelta();
-                    long callDelay = calculateDelay(runtime, originalTimeDelta);
-                    logEntry.setTimes(originalTimeDelta, callDelay);
+        try {
+            logCollector.open(getDestination(config.getOutput()));
+        } catch (IOException ex) {
+            log.error("Cannot write to output: {}", ex.getMessage());
+            executorService.shutdownNow();
+            if (compareExecutorService != null)
+                compareExecutorService.shutdownNow();
+            return Status.Code.IOERROR.getValue();
+        }
 
-                    log.info("Sleeping for {}ms", callDelay);
+        if (missing != null) {
+            runStatus.setStatus(Status.Code.IOERROR, "File " + missing + " does not exist or is not a file");
+        } else {
+            ReplayPlan plan = null;
+            if (config.isPlanned()) {
+                try {
+                    plan = plan();
+                } catch (IOException ex) {
+                    runStatus.setStatus(Status.Code.IOERROR, "Error processing input: " + ex.getMessage());
+                }
+            }
+            if (config.getPrestart() > 0 && runStatus.statusOK()) {
+                try {
+                    Map<String, Object> preStart = new PreStart(config).run();
+                    logCollector.setPreStart(preStart);
+                    log.info("Pre-start: {}", preStart);
+                } catch (IOException ex) {
+                    runStatus.setStatus(Status.Code.IOERROR, "Pre-start failed: " + ex.getMessage());
+                }
+            }
+            if (config.getWarmupRecording() != null && runStatus.statusOK()) {
+                try {
+                    warmUp();
+                } catch (IOException ex) {
+                    runStatus.setStatus(Status.Code.IOERROR, "Error processing warm-up: " + ex.getMessage());
+                }
+            }
+            if (plan != null && runStatus.statusOK()) {
+                Instant timeStarted = start(startAt, watchdog, reporter, search);
+                replay(plan, timeStarted, runStatus, logCollector, wathcer, watchdog, reporter, executorService);
+            } else if (runStatus.statusOK()) {
+                try (RecordingReader recordings = RecordingReader.of(config);
+                     ReadAhead lines = new ReadAhead(new Amplifier(recordings, config.getAmplification(), config.getAmplifyWindow(), config.getAmplifySeed(), config.getSalt()),
+                                                     config.getReadAhead(), config.isLive() ? 0L : ReadAhead.MAX_FILL_WAIT)) {
+                    Instant timeStarted = start(config.isLive() ? liveStart(recordings) : startAt, watchdog, reporter, search);
                     try {
-                        Thread.sleep(callDelay);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException("Interrupted!!!");
-                    }
-
-                    if (hasExceededDuration(timeStarted)) {
-                        log.info("Runtime exceeded - Aborting!");
-                        runStatus.setStatus(Status.Code.RUNTIME_EXCEEDED, "Runtime exceeded (" + config.getDurationConstraint() + "ms)");
-                        break;
+                        replay(lines, timeStarted, runStatus, logCollector, wathcer, watchdog, reporter, executorService);
+                    } finally {
+                        if (config.getReadAhead() > 0) {
+                            Map<String, Object> readAhead = lines.getStatistics();
+                            logCollector.setReadAhead(readAhead);
+                            log.info("Read-ahead: {}", readAhead);
+                        }
                     }
+                } catch (IOException ex) {
+                    runStatus.setStatus(Status.Code.IOERROR, "Error processing input: " + ex.getMessage());
                 }
-            } catch (IOException ex) {
-                runStatus.setStatus(Status.Code.IOERROR, "Error processing input: " + ex.getMessage());
             }
         }
 
@@ -127,44 +179,381 @@ public class Replayer implements JobListener {
 
         try {
             executorService.shutdown();
+            if (compareExecutorService != null)
+                compareExecutorService.shutdown();
             executorService.awaitTermination(5L, TimeUnit.SECONDS);
-            logCollector.addRunStatus(runStatus.getCode(), runStatus.getMessage());
-            logCollector.dump(getDestination(config.getOutput()));
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (compareExecutorService != null)
+                compareExecutorService.awaitTermination(5L, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (warmup != null) {
+            warmup.end(System.currentTimeMillis());
+            Map<String, Object> warm = warmup.statistics();
+            logCollector.setWarmup(warm);
+            log.info("Warm-up: {}", warm);
+        }
+        if (search != null)
+            search.close();
+        watchdog.close();
+        reporter.close();
+        logCollector.addRunStatus(runStatus.getCode(), runStatus.getMessage());
+        logCollector.close();
 
         return runStatus.getCode();
     }
 
+    /**
+     * Wait for the start instant, and start the watchers
+     *
+     * @param startAt when to start (null for now)
+     * @return the start of the replay
+     */
+    private Instant start(Instant startAt, SloWatchdog watchdog, IntervalReporter reporter, CapacitySearch search) {
+        if (startAt != null) {
+            try {
+                Thread.sleep(Math.max(0, Duration.between(Instant.now(), startAt).toMillis()));
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted!!!");
+            }
+        }
+        Instant timeStarted = startAt != null ? startAt : Instant.now();
+        if (warmup != null && config.getWarmupRecording() == null)
+            warmup.start(timeStarted.toEpochMilli());
+        watchdog.start();
+        reporter.start();
+        if (search != null)
+            search.start(timeStarted.toEpochMilli());
+        return timeStarted;
+    }
+
+    /**
+     * When a live replay starts: the delay after the recording was started
+     *
+     * @param recordings the live recording (with the first line read)
+     * @return start of the replay
+     */
+    private Instant liveStart(RecordingReader recordings) {
+        Instant started = recordings.getStarted();
+        if (started == null) {
+            log.warn("The recording has no header, the first line is taken as recorded now");
+            started = Instant.now();
+        }
+        log.info("Live replay of the traffic recorded from {}, {}ms behind", started, config.getLiveDelay());
+        return started.plusMillis(config.getLiveDelay());
+    }
+
+    /**
+     * Replay the requests as they are read, by the virtual users (closed
+     * loop), or at their scheduled times
+     */
+    private void replay(ReadAhead lines, Instant timeStarted, Status runStatus, LogCollector logCollector, CallTimeWathcer wathcer, SloWatchdog watchdog, IntervalReporter reporter, ExecutorService executorService) throws IOException {
+        if (config.isClosedLoop()) {
+
+            ClosedLoopSource tasks = new ClosedLoopSource(lines, timeStarted, runStatus, logCollector, wathcer, watchdog, reporter);
+            try {
+                new VirtualUsers(config, logCollector).run(tasks, aborted);
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted!!!");
+            }
+            synchronized (runStatus) {
+                if (runStatus.statusOK())
+                    isAborted(runStatus);
+            }
+        } else {
+            long numLines = 0;
+            long numRequests = 0;
+            long late = 0;
+            long maxLate = 0;
+            // A live recording can be idle, so the wait for its next line ends with the run
+            BooleanSupplier giveUp = config.isLive() ?
+                                     () -> aborted.getCount() == 0 || hasExceededDuration(timeStarted) :
+                                     () -> false;
+            ServiceSender[] warmSenders = warmup == null || senders == null ? null :
+                                          new ServiceSender[] {new ServiceSender(config.getService(), warmup.getLogCollector()),
+                                                               new ServiceSender(config.getCompareService(), warmup.getLogCollector())};
+            for (LogLine logLine = lines.next(giveUp) ; logLine != null ; logLine = lines.next(giveUp)) {
+                if (isAborted(runStatus))
+                    break;
+
+                if (logLine.getCopy() == 0)
+                    numLines++;
+                if (numLines > config.getLimit()) {
+                    runStatus.setStatus(Status.Code.MAXLINES_EXCEEDED, "Max number of line constraint exceeded (" + config.getLimit() + " lines)");
+                    break;
+                }
+                if (++numRequests > config.getRequests()) {
+                    log.info("Number of requests reached ({})", config.getRequests());
+                    break;
+                }
+
+                long runtime = Duration.between(timeStarted, Instant.now()).toMillis();
+                long originalTimeDelta = logLine.getTimeDelta();
+                long callDelay = calculateDelay(runtime, originalTimeDelta);
+                if (runtime > scheduledOffset(originalTimeDelta)) {
+                    late++;
+                    maxLate = Long.max(maxLate, runtime - scheduledOffset(originalTimeDelta));
+                }
+
+                log.debug("Sleeping for {}ms", callDelay);
+                try {
+                    if (aborted.await(callDelay, TimeUnit.MILLISECONDS) && isAborted(runStatus))
+                        break;
+                } catch (InterruptedException e) {
+                    throw new RuntimeException("Interrupted!!!");
+                }
+
+                if (hasExceededDuration(timeStarted)) {
+                    if (config.isLoop() || config.isLive()) {
+                        log.info("Duration reached ({}ms)", config.getDurationConstraint());
+                        break;
+                    }
+                    log.info("Runtime exceeded - Aborting!");
+                    runStatus.setStatus(Status.Code.RUNTIME_EXCEEDED, "Runtime exceeded (" + config.getDurationConstraint() + "ms)");
+                    break;
+                }
+
+                long lag = config.isFullThrottle() ? 0 :
+                           Long.max(0, timeOffsetMS(timeStarted, Instant.now()) - scheduledOffset(originalTimeDelta));
+                long intended = config.isFullThrottle() ?
+                                System.currentTimeMillis() :
+                                timeStarted.toEpochMilli() + scheduledOffset(originalTimeDelta);
+                boolean warming = isWarmup(numRequests, config.isFullThrottle() ? runtime : scheduledOffset(originalTimeDelta));
+                LogCollector collector = warming ? warmup.getLogCollector() : logCollector;
+                CallTimeWathcer callWatcher = warming ? warmup.getWatcher() : wathcer;
+                SloWatchdog callWatchdog = warming ? warmup.getWatchdog() : watchdog;
+                if (!warming)
+                    reporter.sent(lag);
+                LogCollector.LogEntry logEntry = newEntry(logLine, callDelay);
+                callWatchdog.intended(intended);
+                if (senders != null) {
+                    PairedCall pair = new PairedCall(collector);
+                    logEntry.setTarget(PairedCall.TARGET_A);
+                    LogCollector.LogEntry compareEntry = newEntry(logLine, callDelay);
+                    compareEntry.setTarget(PairedCall.TARGET_B);
+                    if (!warming)
+                        reporter.sent(lag);
+                    callWatchdog.intended(intended);
+                    ServiceSender a = warming ? warmSenders[0] : senders[0];
+                    ServiceSender b = warming ? warmSenders[1] : senders[1];
+                    executorService.execute(new ReplayerTask(config, a, collector, callWatcher, callWatchdog, logLine, this, logEntry, pair));
+                    compareExecutorService.execute(new ReplayerTask(config, b, collector, callWatcher, callWatchdog, logLine, this, compareEntry, pair));
+                } else {
+                    ReplayerTask task = new ReplayerTask(config, collector, callWatcher, callWatchdog, logLine, this, logEntry);
+                    executorService.execute(task);
+                }
+            }
+            if (config.isLive()) {
+                isAborted(runStatus);
+                Map<String, Object> live = new LinkedHashMap<>();
+                live.put("started", timeStarted.minusMillis(config.getLiveDelay()).toString());
+                live.put("delay", config.getLiveDelay());
+                live.put("requests", numRequests);
+                live.put("late", late);
+                live.put("maxLate", maxLate);
+                logCollector.setLive(live);
+                log.info("Live: {}", live);
+            }
+        }
+    }
+
+    /**
+     * If a call is part of the warm-up at the start of the replay
+     *
+     * @param request number of the request (from 1)
+     * @param offset  ms from the start the call is scheduled at
+     * @return if the call should be sent as a warm-up call
+     */
+    private boolean isWarmup(long request, long offset) {
+        return warmup != null && config.getWarmupRecording() == null && warmup.covers(request, offset);
+    }
+
+    /**
+     * Replay the warm-up recording (to the end, or -U) at the speed of the
+     * replay, and wait for the calls to complete
+     * <p>
+     * In a comparison, both services are warmed up
+     *
+     * @throws IOException if the recording cannot be read
+     */
+    private void warmUp() throws IOException {
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        long started = System.currentTimeMillis();
+        warmup.start(started);
+        log.info("Warm-up with {}", config.getWarmupRecording().getFile());
+        try (RecordingReader recording = new RecordingReader(Collections.singletonList(config.getWarmupRecording()))) {
+            long request = 0;
+            for (LogLine logLine = recording.next() ; logLine != null ; logLine = recording.next()) {
+                long scheduled = scheduledOffset(logLine.getTimeDelta());
+                long callDelay = Long.max(0, scheduled - ( System.currentTimeMillis() - started ));
+                if (!warmup.covers(++request, config.isFullThrottle() ? System.currentTimeMillis() - started : scheduled))
+                    break;
+                if (callDelay > 0)
+                    Thread.sleep(callDelay);
+                for (String service : config.isComparison() ?
+                                      new String[] {config.getService(), config.getCompareService()} :
+                                      new String[] {config.getService()}) {
+                    executorService.execute(new ReplayerTask(config, new ServiceSender(service, warmup.getLogCollector()), warmup.getLogCollector(),
+                                                             warmup.getWatcher(), warmup.getWatchdog(), logLine, this, newEntry(logLine, callDelay), null));
+                }
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(config.getCallTimeConstraint() + 5000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted!!!");
+        } finally {
+            executorService.shutdownNow();
+            warmup.end(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * A log entry for a call of a line
+     *
+     * @param logLine   the request
+     * @param callDelay ms the call was delayed by the dispatcher
+     * @return new entry
+     */
+    private static LogCollector.LogEntry newEntry(LogLine logLine, long callDelay) {
+        LogCollector.LogEntry logEntry = LogCollector.newEntry();
+        logEntry.setTimes(logLine.getTimeDelta(), callDelay);
+        logEntry.setLine(logLine.getLine());
+        logEntry.setCopy(logLine.getCopy());
+        logEntry.setSource(logLine.getSource());
+        return logEntry;
+    }
+
+    /**
+     * Read the requests into memory
+     *
+     * @return plan
+     * @throws IOException if a recording cannot be read
+     */
+    private ReplayPlan plan() throws IOException {
+        long start = System.currentTimeMillis();
+        try (RecordingReader recordings = RecordingReader.of(config)) {
+            Amplifier lines = new Amplifier(recordings, config.getAmplification(), config.getAmplifyWindow(), config.getAmplifySeed(), config.getSalt());
+            ReplayPlan plan = ReplayPlan.of(lines, config.getLimit(), config.getRequests());
+            log.info("Planned {} requests ({} bytes of queries) in {}ms", plan.size(), plan.getPoolSize(), System.currentTimeMillis() - start);
+            return plan;
+        }
+    }
+
+    /**
+     * Dispatch the requests of a plan at their scheduled times
+     * <p>
+     * Only the offsets are read here, the tasks make their own log line and
+     * entry. The same task is executed for every request, it takes the
+     * requests from the plan in the order they are dispatched
+     */
+    private void replay(ReplayPlan plan, Instant timeStarted, Status runStatus, LogCollector logCollector, CallTimeWathcer wathcer, SloWatchdog watchdog, IntervalReporter reporter, ExecutorService executorService) {
+        ReplayerTask warmTask = warmup == null ? null :
+                                new ReplayerTask(config, new ServiceSender(config.getService(), warmup.getLogCollector()), warmup.getLogCollector(), warmup.getWatcher(), warmup.getWatchdog(), plan, null, this);
+        ReplayerTask task = new ReplayerTask(config, new ServiceSender(config.getService(), logCollector), logCollector, wathcer, watchdog, plan, warmTask, this);
+        long started = timeStarted.toEpochMilli();
+        for (int i = 0 ; i < plan.size() ; i++) {
+            if (isAborted(runStatus))
+                return;
+
+            long scheduled = scheduledOffset(plan.getOffset(i));
+            long callDelay = Long.max(0, Long.min(scheduled, config.getDurationConstraint() + 1) - ( System.currentTimeMillis() - started ));
+            try {
+                if (callDelay > 0 && aborted.await(callDelay, TimeUnit.MILLISECONDS) && isAborted(runStatus))
+                    return;
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted!!!");
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - started > config.getDurationConstraint()) {
+                if (config.isLoop()) {
+                    log.info("Duration reached ({}ms)", config.getDurationConstraint());
+                    return;
+                }
+                log.info("Runtime exceeded - Aborting!");
+                runStatus.setStatus(Status.Code.RUNTIME_EXCEEDED, "Runtime exceeded (" + config.getDurationConstraint() + "ms)");
+                return;
+            }
+
+            boolean warming = isWarmup(i + 1, config.isFullThrottle() ? now - started : scheduled);
+            plan.dispatched(i, callDelay, warming);
+            if (!warming) {
+                reporter.sent(config.isFullThrottle() ? 0 : Long.max(0, now - started - scheduled));
+                watchdog.intended(config.isFullThrottle() ? now : started + scheduled);
+            }
+            executorService.execute(task);
+        }
+        if (plan.isTruncated())
+            runStatus.setStatus(Status.Code.MAXLINES_EXCEEDED, "Max number of line constraint exceeded (" + config.getLimit() + " lines)");
+    }
+
+    /**
+     * Check if a watcher has requested the replay to stop, and set the run
+     * status accordingly
+     *
+     * @param runStatus status to set
+     * @return if the replay should stop
+     */
+    private boolean isAborted(Status runStatus) {
+        if (capacityFound) {
+            log.info("Capacity search completed");
+            return true;
+        }
+        if (callTimeExceeded) {
+            runStatus.setStatus(Status.Code.CALLTIME_EXCEEDED, "CallTime exceeded (" + config.getCallTimeConstraint() + "ms)");
+            return true;
+        }
+        String breach = sloBreach;
+        if (breach != null) {
+            runStatus.setStatus(Status.Code.SLO_EXCEEDED, breach);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Calculate the actual delay between calls
      *
      * @param runtime           The current accumulated runtime
      * @param originalTimeDelta The original time delta from the start
      * @return The calculated delay to wait, adjusted for the configured
-     *         replay speed
+     *         replay speed (no longer than until the runtime is exceeded)
      */
     private long calculateDelay(long runtime, long originalTimeDelta) {
 
-        long nextRequestRealTime = (long) ( (double) originalTimeDelta  * config.getTimeScale());
+        long nextRequestRealTime = scheduledOffset(originalTimeDelta);
         log.debug("replayTime: {}, realTime: {}", originalTimeDelta, nextRequestRealTime);
-        return Long.max(0, nextRequestRealTime - runtime);
+        return Long.max(0, Long.min(nextRequestRealTime, config.getDurationConstraint() + 1) - runtime);
     }
 
-    private BufferedReader getBufferedReader(String input) throws FileNotFoundException {
-        InputStream is = (InputStream) ( ( input != null ) ? new FileInputStream(input) : System.in );
-        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+    /**
+     * When a call should be sent, adjusted for the configured replay speed or
+     * load profile
+     *
+     * @param originalTimeDelta The original time delta from the start
+     * @return ms from the start of the replay
+     */
+    private long scheduledOffset(long originalTimeDelta) {
+        if (profile == null)
+            return 0L;
+        return profile.wallTimeOf(originalTimeDelta);
     }
 
-    private boolean fileExistsAndNotDir(String input) {
-        File f = new File(input);
-        if (f.exists() && !f.isDirectory())
-            return true;
-        else
-            return false;
+    /**
+     * Find a recording, that cannot be read
+     *
+     * @return the file of the first such recording, or null if all exist
+     */
+    private String missingRecording() {
+        if (config.getRecordings().isEmpty())
+            return String.valueOf(config.getInput());
+        for (Recording recording : config.getRecordings()) {
+            if (!recording.exists())
+                return recording.getFile();
+        }
+        if (config.getWarmupRecording() != null && !config.getWarmupRecording().exists())
+            return config.getWarmupRecording().getFile();
+        return null;
     }
 
     private OutputStream getDestination(String fileName) throws FileNotFoundException {
@@ -200,16 +589,114 @@ public class Replayer implements JobListener {
      */
     @Override
     public void callTimeExceeded() {
+        if (config.isCapacitySearch())
+            return; // The steps are judged by the search
         callTimeExceeded = true;
+        aborted.countDown();
+    }
+
+    /**
+     * Callback from SloWatchdog
+     */
+    @Override
+    public void sloBreached(String message) {
+        if (config.isCapacitySearch())
+            return; // The steps are judged by the search
+        sloBreach = message;
+        aborted.countDown();
+    }
+
+    /**
+     * Callback from CapacitySearch
+     */
+    private void capacityFound() {
+        capacityFound = true;
+        aborted.countDown();
+    }
+
+    /**
+     * Tasks for the virtual users, one for each valid line of the recording
+     * (and each copy of it, when amplified)
+     * <p>
+     * Lines are read (and the constraints checked) under the lock of the run
+     * status, as the users take lines concurrently
+     */
+    private class ClosedLoopSource implements Supplier<ReplayerTask> {
+
+        private final ReadAhead lines;
+        private final Instant timeStarted;
+        private final Status runStatus;
+        private final LogCollector logCollector;
+        private final CallTimeWathcer wathcer;
+        private final SloWatchdog watchdog;
+        private final IntervalReporter reporter;
+        private long numLines;
+        private long numRequests;
+
+        private ClosedLoopSource(ReadAhead lines, Instant timeStarted, Status runStatus, LogCollector logCollector, CallTimeWathcer wathcer, SloWatchdog watchdog, IntervalReporter reporter) {
+            this.lines = lines;
+            this.timeStarted = timeStarted;
+            this.runStatus = runStatus;
+            this.logCollector = logCollector;
+            this.wathcer = wathcer;
+            this.watchdog = watchdog;
+            this.reporter = reporter;
+            this.numLines = 0;
+            this.numRequests = 0;
+        }
+
+        @Override
+        public ReplayerTask get() {
+            synchronized (runStatus) {
+                if (!runStatus.statusOK())
+                    return null;
+                try {
+                    LogLine logLine = lines.next();
+                    if (logLine != null) {
+                        if (isAborted(runStatus))
+                            return null;
+
+                        if (logLine.getCopy() == 0)
+                            numLines++;
+                        if (numLines > config.getLimit()) {
+                            runStatus.setStatus(Status.Code.MAXLINES_EXCEEDED, "Max number of line constraint exceeded (" + config.getLimit() + " lines)");
+                            return null;
+                        }
+                        if (++numRequests > config.getRequests())
+                            return null;
+
+                        if (hasExceededDuration(timeStarted)) {
+                            if (config.isLoop())
+                                return null;
+                            log.info("Runtime exceeded - Aborting!");
+                            runStatus.setStatus(Status.Code.RUNTIME_EXCEEDED, "Runtime exceeded (" + config.getDurationConstraint() + "ms)");
+                            return null;
+                        }
+
+                        LogCollector.LogEntry logEntry = newEntry(logLine, 0);
+                        if (isWarmup(numRequests, timeOffsetMS(timeStarted, Instant.now())))
+                            return new ReplayerTask(config, warmup.getLogCollector(), warmup.getWatcher(), warmup.getWatchdog(), logLine, Replayer.this, logEntry);
+                        reporter.sent(0);
+                        watchdog.intended(System.currentTimeMillis());
+                        return new ReplayerTask(config, logCollector, wathcer, watchdog, logLine, Replayer.this, logEntry);
+                    }
+                } catch (IOException ex) {
+                    runStatus.setStatus(Status.Code.IOERROR, "Error processing input: " + ex.getMessage());
+                }
+                return null;
+            }
+        }
     }
 
-    private static class Status {
+    static class Status {
 
         public enum Code {
             OK(0),
             RUNTIME_EXCEEDED(50),
             CALLTIME_EXCEEDED(51),
             MAXLINES_EXCEEDED(52),
+            SLO_EXCEEDED(53),
+            REGRESSION(54),
             IOERROR(1);
             private final int value;
 
@@ -33,28 +33,103 @@ public class ReplayerTask implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(ReplayerTask.class);
 
     private final ServiceSender sender;
+    private final LogCollector logCollector;
     private final LogLine logLine;
+    private final ReplayPlan plan;
+    private final ReplayerTask warmUp;
     private final CallTimeWathcer watcher;
+    private final SloWatchdog watchdog;
     private final JobListener jobListener;
     private final LogCollector.LogEntry logEntry;
     private final boolean dryRun;
+    private final PairedCall pair;
 
-    public ReplayerTask(Config config, LogCollector logCollector, CallTimeWathcer watcher, LogLine logLine, JobListener jobListener, LogCollector.LogEntry logEntry) {
+    public ReplayerTask(Config config, LogCollector logCollector, CallTimeWathcer watcher, SloWatchdog watchdog, LogLine logLine, JobListener jobListener, LogCollector.LogEntry logEntry) {
+        this(config, new ServiceSender(config.getService(), logCollector), logCollector, watcher, watchdog, logLine, jobListener, logEntry, null);
+    }
+
+    /**
+     * A task for one of the calls of an A/B comparison
+     *
+     * @param config       dry run
+     * @param sender       sender of the service
+     * @param logCollector where to add the entry
+     * @param watcher      call time watcher
+     * @param watchdog     service level watchdog
+     * @param logLine      the request
+     * @param jobListener  to notify if the call time is exceeded
+     * @param logEntry     entry of the call (with its target)
+     * @param pair         where the call is paired with the other, null for
+     *                     none
+     */
+    public ReplayerTask(Config config, ServiceSender sender, LogCollector logCollector, CallTimeWathcer watcher, SloWatchdog watchdog, LogLine logLine, JobListener jobListener, LogCollector.LogEntry logEntry, PairedCall pair) {
         this.watcher = watcher;
+        this.watchdog = watchdog;
 
-        this.sender = new ServiceSender(config.getService(), logCollector);
+        this.sender = sender;
+        this.logCollector = logCollector;
         this.logLine = logLine;
         this.jobListener = jobListener;
         this.logEntry = logEntry;
         this.dryRun = config.isDryRun();
+        this.plan = null;
+        this.warmUp = null;
+        this.pair = pair;
+    }
+
+    /**
+     * The task for the requests of a replay plan
+     * <p>
+     * The task is executed once for each dispatched request, and sends the
+     * next request taken from the plan. The log line and entry are made when
+     * the task runs, not when it is dispatched
+     *
+     * @param config       dry run
+     * @param sender       sender of the service
+     * @param logCollector where to add the entry
+     * @param watcher      call time watcher
+     * @param watchdog     service level watchdog
+     * @param plan         the plan
+     * @param warmUp       task for the requests of the warm-up, null for none
+     * @param jobListener  to notify if the call time is exceeded
+     */
+    public ReplayerTask(Config config, ServiceSender sender, LogCollector logCollector, CallTimeWathcer watcher, SloWatchdog watchdog, ReplayPlan plan, ReplayerTask warmUp, JobListener jobListener) {
+        this.watcher = watcher;
+        this.watchdog = watchdog;
+
+        this.sender = sender;
+        this.logCollector = logCollector;
+        this.logLine = null;
+        this.jobListener = jobListener;
+        this.logEntry = null;
+        this.dryRun = config.isDryRun();
+        this.plan = plan;
+        this.warmUp = warmUp;
+        this.pair = null;
     }
 
     @Override
     public void run() {
+        if (plan == null) {
+            call(logLine, logEntry);
+            return;
+        }
+        int index = plan.take();
+        ReplayerTask task = warmUp != null && plan.isWarmUp(index) ? warmUp : this;
+        task.call(plan.logLine(index), plan.logEntry(index, plan.getCallDelay(index)));
+    }
+
+    private void call(LogLine logLine, LogCollector.LogEntry logEntry) {
         log.debug("Running: logLine={}{}", logLine, dryRun ? " (dry-run)" : "");
         long duration = 0;
-        if (!dryRun)
+        if (dryRun)
+            logEntry.setQuery(logLine.getQuery());
+        else
             duration = sender.send(logLine, logEntry);
+        watchdog.completed(duration, logEntry.isError());
+        logCollector.addEntry(logEntry);
+        if (pair != null)
+            pair.completed(logEntry);
         try {
             watcher.addCallTime(duration); // Can throw CallTimeExceededException
         } catch (CallTimeExceededException ex) {
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+/**
+ * A chunk of completed calls, stored as primitive columns
+ * <p>
+ * Each worker thread fills its own chunk, and hands it to the
+ * {@link ResultWriter} when it is full. The query strings are only referenced
+ * (not copied) until the chunk is written. Messages (exceptions and status
+ * notes) are only set for the rows that have one.
+ * <p>
+ * Not thread safe, the owner of a chunk has to synchronize on it, if it is
+ * shared.
+ */
+public class ResultColumns {
+
+    private final long created;
+    private final long[] timestamp;
+    private final long[] originalTimeDelta;
+    private final long[] callDelay;
+    private final long[] callDurationMicros;
+    private final long[] responseSize;
+    private final long[] downloadTime;
+    private final short[] status;
+    private final int[] line;
+    private final int[] copy;
+    private final String[] query;
+    private final String[] source;
+    private final String[] target;
+    private final String[] message;
+    private int size;
+
+    /**
+     * @param capacity number of rows
+     */
+    public ResultColumns(int capacity) {
+        this.created = System.currentTimeMillis();
+        this.timestamp = new long[capacity];
+        this.originalTimeDelta = new long[capacity];
+        this.callDelay = new long[capacity];
+        this.callDurationMicros = new long[capacity];
+        this.responseSize = new long[capacity];
+        this.downloadTime = new long[capacity];
+        this.status = new short[capacity];
+        this.line = new int[capacity];
+        this.copy = new int[capacity];
+        this.query = new String[capacity];
+        this.source = new String[capacity];
+        this.target = new String[capacity];
+        this.message = new String[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Add a row
+     *
+     * @param entry the completed entry
+     * @throws IllegalStateException if the chunk is full
+     */
+    public void add(LogCollector.LogEntry entry) {
+        if (isFull())
+            throw new IllegalStateException("Chunk is full");
+        timestamp[size] = entry.getTimestamp();
+        originalTimeDelta[size] = entry.getOriginalTimeDelta();
+        callDelay[size] = entry.getCallDelay();
+        callDurationMicros[size] = entry.getCallDurationMicros();
+        responseSize[size] = entry.getResponseSize();
+        downloadTime[size] = entry.getDownloadTime();
+        status[size] = entry.getStatusCode();
+        line[size] = (int) Math.min(entry.getLine(), Integer.MAX_VALUE);
+        copy[size] = entry.getCopy();
+        query[size] = entry.getQuery();
+        source[size] = entry.getSource();
+        target[size] = entry.getTarget();
+        message[size] = entry.getMessage();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == timestamp.length;
+    }
+
+    /**
+     * When the chunk was created
+     *
+     * @return epoch milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    public long getTimestamp(int row) {
+        return timestamp[row];
+    }
+
+    public long getOriginalTimeDelta(int row) {
+        return originalTimeDelta[row];
+    }
+
+    public long getCallDelay(int row) {
+        return callDelay[row];
+    }
+
+    public long getCallDuration(int row) {
+        return callDurationMicros[row] / 1000;
+    }
+
+    public long getCallDurationMicros(int row) {
+        return callDurationMicros[row];
+    }
+
+    public long getResponseSize(int row) {
+        return responseSize[row];
+    }
+
+    public long getDownloadTime(int row) {
+        return downloadTime[row];
+    }
+
+    public short getStatusCode(int row) {
+        return status[row];
+    }
+
+    /**
+     * The status as in {@link LogCollector.LogEntry#getStatus()}
+     *
+     * @param row row number
+     * @return http status or message
+     */
+    public String getStatus(int row) {
+        return LogCollector.LogEntry.statusOf(status[row], message[row]);
+    }
+
+    public int getLine(int row) {
+        return line[row];
+    }
+
+    /**
+     * Number of the copy of the line, when the recording is amplified
+     *
+     * @param row row number
+     * @return copy number (0 for the original)
+     */
+    public int getCopy(int row) {
+        return copy[row];
+    }
+
+    public String getQuery(int row) {
+        return query[row];
+    }
+
+    /**
+     * The tag of the recording the call is from
+     *
+     * @param row row number
+     * @return tag or null if untagged
+     */
+    public String getSource(int row) {
+        return source[row];
+    }
+
+    /**
+     * The service (of an A/B comparison) the call is sent to
+     *
+     * @param row row number
+     * @return target or null when not comparing
+     */
+    public String getTarget(int row) {
+        return target[row];
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares replayer results with a baseline, and gates on regressions
+ * <p>
+ * Each result is compared with the first (the baseline) by
+ * <ul>
+ * <li>the change of the call time percentiles, the mean and the error rate,
+ * with confidence intervals by a bootstrap
+ * <li>a Mann-Whitney U test (if the call times of one tend to be larger) and a
+ * Kolmogorov-Smirnov test (if the distributions differ at all)
+ * <li>the count of each http status
+ * </ul>
+ * The tests and the bootstrap work on the buckets of the call time histograms,
+ * so the cost does not depend on the number of calls. The bootstrap is a
+ * poisson bootstrap (each bucket count is drawn from a poisson distribution),
+ * with a fixed seed, so a comparison gives the same result every time.
+ */
+public class ResultComparison {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultComparison.class);
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+    private static final long SEED = 1L;
+
+    private final CompareConfig config;
+
+    public ResultComparison(CompareConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Read the results, write the comparison and judge the gates
+     *
+     * @return 0 if no gate is exceeded, {@link Replayer.Status.Code#REGRESSION}
+     *         if any is, or {@link Replayer.Status.Code#IOERROR} if a result
+     *         cannot be read
+     */
+    public int run() {
+        List<ResultFile> results = new ArrayList<>();
+        LogLinearHistogram layout = new LogLinearHistogram(LogCollector.HIGHEST_CALL_TIME, Config.DEFAULT_PRECISION);
+        try {
+            for (String file : config.getFiles()) {
+                results.add(ResultFile.of(file, layout));
+            }
+        } catch (IOException ex) {
+            log.error("Cannot read result: {}", ex.getMessage());
+            return Replayer.Status.Code.IOERROR.getValue();
+        }
+        Map<String, Object> comparison = compare(results);
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        try {
+            if (config.getOutput() == null) {
+                System.out.println(mapper.writeValueAsString(comparison));
+            } else {
+                try (OutputStream os = new FileOutputStream(config.getOutput())) {
+                    mapper.writeValue(os, comparison);
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Cannot write comparison: {}", ex.getMessage());
+            return Replayer.Status.Code.IOERROR.getValue();
+        }
+        if (Boolean.TRUE.equals(comparison.get("passed")))
+            return Replayer.Status.Code.OK.getValue();
+        return Replayer.Status.Code.REGRESSION.getValue();
+    }
+
+    /**
+     * Compare the results with the first
+     *
+     * @param results the baseline and the results
+     * @return the comparison
+     */
+    Map<String, Object> compare(List<ResultFile> results) {
+        ResultFile baseline = results.get(0);
+        TreeSet<Double> percentiles = new TreeSet<>();
+        for (double percentile : PERCENTILES) {
+            percentiles.add(percentile);
+        }
+        for (RegressionGate gate : config.getGates()) {
+            if (gate.getMetric() == RegressionGate.Metric.PERCENTILE)
+                percentiles.add(gate.getPercentile());
+        }
+        double[] ps = percentiles.stream().mapToDouble(Double::doubleValue).toArray();
+
+        Map<String, Object> comparison = new LinkedHashMap<>();
+        comparison.put("baseline", describe(baseline, baseline.getCallTimes(), ps));
+        List<Map<String, Object>> compared = new ArrayList<>();
+        boolean passed = true;
+        for (ResultFile result : results.subList(1, results.size())) {
+            LogLinearHistogram callTimes = inLayoutOf(result.getCallTimes(), baseline.getCallTimes());
+            Map<String, Object> stats = describe(result, callTimes, ps);
+            Map<String, Change> changes = changes(baseline, result, callTimes, ps);
+            Map<String, Object> changeStats = new LinkedHashMap<>();
+            changes.forEach((name, change) -> changeStats.put(name, change.toMap()));
+            stats.put("changes", changeStats);
+            stats.put("counter", counters(baseline, result));
+            stats.put("mannWhitney", mannWhitney(baseline.getCallTimes(), callTimes));
+            stats.put("kolmogorovSmirnov", kolmogorovSmirnov(baseline.getCallTimes(), callTimes));
+            List<Map<String, Object>> gates = new ArrayList<>();
+            for (RegressionGate gate : config.getGates()) {
+                Double value = valueOf(gate, changes);
+                boolean exceeded = value != null && gate.isExceededBy(value);
+                Map<String, Object> judged = new LinkedHashMap<>();
+                judged.put("gate", gate.toString());
+                judged.put("value", value);
+                judged.put("exceeded", exceeded);
+                gates.add(judged);
+                if (exceeded)
+                    log.warn("{}: {} {} ({})", result.getFile(), gate, value, "exceeded");
+                else
+                    log.info("{}: {} {} ({})", result.getFile(), gate, value, "passed");
+                passed &= !exceeded;
+            }
+            if (!gates.isEmpty())
+                stats.put("gates", gates);
+            compared.add(stats);
+        }
+        comparison.put("results", compared);
+        comparison.put("passed", passed);
+        return comparison;
+    }
+
+    private static Map<String, Object> describe(ResultFile result, LogLinearHistogram callTimes, double[] ps) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("file", result.getFile());
+        stats.put("calls", result.getCalls());
+        stats.put("errors", result.getErrors());
+        stats.put("errorRate", result.getErrors() * 100.0 / result.getCalls());
+        stats.put("mean", callTimes.getMean() / 1000.0);
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (double p : ps) {
+            percentiles.put(nameOf(p), callTimes.getValueAtPercentile(p) / 1000.0);
+        }
+        stats.put("percentiles", percentiles);
+        return stats;
+    }
+
+    private static String nameOf(double percentile) {
+        return "p" + ( percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile) );
+    }
+
+    /**
+     * The value of a gate
+     *
+     * @return the change (or the low end of its interval), null if it cannot
+     *         be computed
+     */
+    private static Double valueOf(RegressionGate gate, Map<String, Change> changes) {
+        Change change;
+        switch (gate.getMetric()) {
+            case PERCENTILE:
+                change = changes.get(nameOf(gate.getPercentile()));
+                break;
+            case MEAN:
+                change = changes.get("mean");
+                break;
+            default:
+                change = changes.get("errors");
+                break;
+        }
+        if (gate.isRelative())
+            return gate.isConfident() ? change.lowRelative : change.relative;
+        return gate.isConfident() ? change.low : change.change;
+    }
+
+    /**
+     * The changes of the percentiles, the mean and the error rate, with
+     * intervals by a poisson bootstrap
+     */
+    private Map<String, Change> changes(ResultFile baseline, ResultFile result, LogLinearHistogram callTimes, double[] ps) {
+        int resamples = config.getBootstrap();
+        Buckets base = Buckets.of(baseline.getCallTimes());
+        Buckets other = Buckets.of(callTimes);
+        // [statistic][resample], the statistics are the percentiles, the mean and the error rate
+        double[][] baseSamples = new double[ps.length + 2][resamples];
+        double[][] otherSamples = new double[ps.length + 2][resamples];
+        Random random = new Random(SEED);
+        for (int i = 0 ; i < resamples ; i++) {
+            sample(base.resample(random), ps, baseline, random, baseSamples, i);
+            sample(other.resample(random), ps, result, random, otherSamples, i);
+        }
+        Map<String, Change> changes = new LinkedHashMap<>();
+        for (int s = 0 ; s < ps.length ; s++) {
+            changes.put(nameOf(ps[s]), new Change(baseline.getCallTimes().getValueAtPercentile(ps[s]) / 1000.0,
+                                                  callTimes.getValueAtPercentile(ps[s]) / 1000.0,
+                                                  baseSamples[s], otherSamples[s], true));
+        }
+        changes.put("mean", new Change(baseline.getCallTimes().getMean() / 1000.0, callTimes.getMean() / 1000.0,
+                                       baseSamples[ps.length], otherSamples[ps.length], true));
+        changes.put("errors", new Change(baseline.getErrors() * 100.0 / baseline.getCalls(), result.getErrors() * 100.0 / result.getCalls(),
+                                         baseSamples[ps.length + 1], otherSamples[ps.length + 1], false));
+        return changes;
+    }
+
+    private static void sample(Buckets buckets, double[] ps, ResultFile result, Random random, double[][] samples, int i) {
+        double[] values = buckets.statistics(ps);
+        for (int s = 0 ; s <= ps.length ; s++) {
+            samples[s][i] = values[s] / 1000.0;
+        }
+        long errors = poisson(result.getErrors(), random);
+        long ok = poisson(result.getCalls() - result.getErrors(), random);
+        samples[ps.length + 1][i] = errors + ok == 0 ? 0.0 : errors * 100.0 / ( errors + ok );
+    }
+
+    /**
+     * The counts of each http status in the baseline and the result
+     */
+    private static Map<String, Map<String, Long>> counters(ResultFile baseline, ResultFile result) {
+        Map<String, Map<String, Long>> counters = new TreeMap<>();
+        baseline.getCounter().forEach((status, count) -> counters.computeIfAbsent(status, s -> new LinkedHashMap<>()).put("baseline", count));
+        result.getCounter().forEach((status, count) -> counters.computeIfAbsent(status, s -> new LinkedHashMap<>()).put("result", count));
+        for (Map<String, Long> counter : counters.values()) {
+            counter.putIfAbsent("baseline", 0L);
+            counter.putIfAbsent("result", 0L);
+        }
+        return counters;
+    }
+
+    /**
+     * Mann-Whitney U test of two histograms of the same layout
+     * <p>
+     * Values in the same bucket are ties. The p-value is by the normal
+     * approximation (with the tie correction), two sided
+     *
+     * @param a baseline
+     * @param b result
+     * @return u (pairs where b is larger, ties count half), z, p and the
+     *         probability that a call of b is slower than one of a
+     */
+    static Map<String, Object> mannWhitney(LogLinearHistogram a, LogLinearHistogram b) {
+        double n1 = 0;
+        double n2 = 0;
+        double u = 0;
+        double ties = 0;
+        for (int i = 0 ; i < a.bucketCount() ; i++) {
+            double ca = a.countAt(i);
+            double cb = b.countAt(i);
+            u += cb * ( n1 + ca / 2.0 );
+            double t = ca + cb;
+            ties += t * t * t - t;
+            n1 += ca;
+            n2 += cb;
+        }
+        double n = n1 + n2;
+        double mean = n1 * n2 / 2.0;
+        double variance = n < 2 ? 0.0 : n1 * n2 / 12.0 * ( ( n + 1 ) - ties / ( n * ( n - 1 ) ) );
+        double z = variance > 0 ? ( u - mean ) / Math.sqrt(variance) : 0.0;
+        Map<String, Object> test = new LinkedHashMap<>();
+        test.put("u", u);
+        test.put("z", z);
+        test.put("p", erfc(Math.abs(z) / Math.sqrt(2.0)));
+        test.put("probabilitySlower", n1 * n2 > 0 ? u / ( n1 * n2 ) : 0.5);
+        return test;
+    }
+
+    /**
+     * Two sample Kolmogorov-Smirnov test of two histograms of the same layout
+     *
+     * @param a baseline
+     * @param b result
+     * @return d (the largest difference of the cumulative distributions) and
+     *         the asymptotic p-value
+     */
+    static Map<String, Object> kolmogorovSmirnov(LogLinearHistogram a, LogLinearHistogram b) {
+        double n1 = 0;
+        double n2 = 0;
+        for (int i = 0 ; i < a.bucketCount() ; i++) {
+            n1 += a.countAt(i);
+            n2 += b.countAt(i);
+        }
+        double d = 0;
+        double ca = 0;
+        double cb = 0;
+        for (int i = 0 ; i < a.bucketCount() && n1 > 0 && n2 > 0 ; i++) {
+            ca += a.countAt(i);
+            cb += b.countAt(i);
+            d = Math.max(d, Math.abs(ca / n1 - cb / n2));
+        }
+        double ne = n1 + n2 > 0 ? n1 * n2 / ( n1 + n2 ) : 0;
+        double lambda = ( Math.sqrt(ne) + 0.12 + 0.11 / Math.max(Math.sqrt(ne), 1e-9) ) * d;
+        Map<String, Object> test = new LinkedHashMap<>();
+        test.put("d", d);
+        test.put("p", ne > 0 ? kolmogorov(lambda) : 1.0);
+        return test;
+    }
+
+    /**
+     * The Kolmogorov distribution: probability of a larger statistic
+     */
+    private static double kolmogorov(double lambda) {
+        if (lambda < 0.2)
+            return 1.0;
+        double sum = 0;
+        double sign = 1;
+        for (int j = 1 ; j <= 100 ; j++) {
+            double term = sign * Math.exp(-2.0 * j * j * lambda * lambda);
+            sum += term;
+            if (Math.abs(term) < 1e-12)
+                break;
+            sign = -sign;
+        }
+        return Math.max(0.0, Math.min(1.0, 2.0 * sum));
+    }
+
+    /**
+     * Complementary error function (fractional error below 1.2e-7)
+     */
+    static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / ( 1.0 + 0.5 * z );
+        double r = t * Math.exp(-z * z - 1.26551223 + t * ( 1.00002368 + t * ( 0.37409196 + t * ( 0.09678418 +
+                   t * ( -0.18628806 + t * ( 0.27886807 + t * ( -1.13520398 + t * ( 1.48851587 +
+                   t * ( -0.82215223 + t * 0.17087277 ) ) ) ) ) ) ) ));
+        return x >= 0 ? r : 2.0 - r;
+    }
+
+    /**
+     * A number drawn from a poisson distribution, by multiplying uniform
+     * values when the mean is small, and the normal approximation when it is
+     * large
+     */
+    static long poisson(double mean, Random random) {
+        if (mean <= 0)
+            return 0;
+        if (mean > 30)
+            return Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        double limit = Math.exp(-mean);
+        long k = 0;
+        for (double p = random.nextDouble() ; p > limit ; p *= random.nextDouble()) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * A histogram in the layout of another
+     */
+    private static LogLinearHistogram inLayoutOf(LogLinearHistogram histogram, LogLinearHistogram layout) {
+        if (histogram.getHighestTrackableValue() == layout.getHighestTrackableValue() &&
+            histogram.getSignificantDigits() == layout.getSignificantDigits())
+            return histogram;
+        LogLinearHistogram copy = new LogLinearHistogram(layout);
+        for (int i = 0 ; i < histogram.bucketCount() ; i++) {
+            copy.recordValue(Math.min(histogram.highestValueOf(i), histogram.getMax()), histogram.countAt(i));
+        }
+        return copy;
+    }
+
+    /**
+     * The non empty buckets of a histogram
+     */
+    private static final class Buckets {
+
+        private final long[] values;
+        private final long[] counts;
+
+        private Buckets(long[] values, long[] counts) {
+            this.values = values;
+            this.counts = counts;
+        }
+
+        private static Buckets of(LogLinearHistogram histogram) {
+            int size = 0;
+            long[] values = new long[64];
+            long[] counts = new long[64];
+            for (int i = 0 ; i < histogram.bucketCount() ; i++) {
+                long count = histogram.countAt(i);
+                if (count == 0)
+                    continue;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                values[size] = Math.min(histogram.highestValueOf(i), histogram.getMax());
+                counts[size] = count;
+                size++;
+            }
+            return new Buckets(Arrays.copyOf(values, size), Arrays.copyOf(counts, size));
+        }
+
+        private Buckets resample(Random random) {
+            long[] resampled = new long[counts.length];
+            for (int i = 0 ; i < counts.length ; i++) {
+                resampled[i] = poisson(counts[i], random);
+            }
+            return new Buckets(values, resampled);
+        }
+
+        /**
+         * The percentiles (ascending) and the mean
+         */
+        private double[] statistics(double[] ps) {
+            long total = 0;
+            double sum = 0;
+            for (int i = 0 ; i < counts.length ; i++) {
+                total += counts[i];
+                sum += (double) values[i] * counts[i];
+            }
+            double[] statistics = new double[ps.length + 1];
+            int bucket = 0;
+            long seen = counts.length == 0 ? 0 : counts[0];
+            for (int p = 0 ; p < ps.length && total > 0 ; p++) {
+                long target = Math.max(1, (long) Math.ceil(total * ps[p] / 100.0));
+                while (seen < target && bucket < counts.length - 1) {
+                    seen += counts[++bucket];
+                }
+                statistics[p] = values[bucket];
+            }
+            statistics[ps.length] = total == 0 ? 0.0 : sum / total;
+            return statistics;
+        }
+    }
+
+    /**
+     * The change of a statistic from the baseline to a result
+     */
+    private final class Change {
+
+        private final double baseline;
+        private final double result;
+        private final double change;
+        private final Double relative;
+        private final Double low;
+        private final Double high;
+        private final Double lowRelative;
+        private final Double highRelative;
+
+        /**
+         * @param baseline        value of the baseline
+         * @param result          value of the result
+         * @param baseSamples     bootstrap values of the baseline
+         * @param resultSamples   bootstrap values of the result
+         * @param hasRelative     if the change in percent is meaningful
+         */
+        private Change(double baseline, double result, double[] baseSamples, double[] resultSamples, boolean hasRelative) {
+            this.baseline = baseline;
+            this.result = result;
+            this.change = result - baseline;
+            this.relative = hasRelative && baseline > 0 ? ( result / baseline - 1.0 ) * 100.0 : null;
+            int n = baseSamples.length;
+            double[] changes = new double[n];
+            double[] relatives = new double[n];
+            int relativeCount = 0;
+            for (int i = 0 ; i < n ; i++) {
+                changes[i] = resultSamples[i] - baseSamples[i];
+                if (baseSamples[i] > 0)
+                    relatives[relativeCount++] = ( resultSamples[i] / baseSamples[i] - 1.0 ) * 100.0;
+            }
+            double tail = ( 100.0 - config.getConfidence() ) / 200.0;
+            this.low = n == 0 ? null : quantile(changes, n, tail);
+            this.high = n == 0 ? null : quantile(changes, n, 1.0 - tail);
+            this.lowRelative = !hasRelative || relativeCount == 0 ? null : quantile(relatives, relativeCount, tail);
+            this.highRelative = !hasRelative || relativeCount == 0 ? null : quantile(relatives, relativeCount, 1.0 - tail);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("baseline", baseline);
+            map.put("result", result);
+            map.put("change", change);
+            if (low != null) {
+                map.put("low", low);
+                map.put("high", high);
+            }
+            if (relative != null)
+                map.put("relative", relative);
+            if (lowRelative != null) {
+                map.put("lowRelative", lowRelative);
+                map.put("highRelative", highRelative);
+            }
+            return map;
+        }
+    }
+
+    private static double quantile(double[] values, int size, double q) {
+        double[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(size - 1, Math.max(0, Math.round(q * ( size - 1 ))));
+        return sorted[index];
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The call times and status counts of a result (as written by the replayer)
+ * <p>
+ * The result is read a line at a time. The call time histogram (µs) and the
+ * counters are taken from the summary; if there is no summary (the replay was
+ * killed) or it has no histogram (-r 0), they are made from the loglines, at
+ * ms precision.
+ */
+public final class ResultFile {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultFile.class);
+
+    private static final ObjectMapper O = new ObjectMapper();
+
+    private final String file;
+    private final LogLinearHistogram callTimes;
+    private final Map<String, Long> counter;
+    private final long calls;
+    private final long errors;
+
+    private ResultFile(String file, LogLinearHistogram callTimes, Map<String, Long> counter, long calls, long errors) {
+        this.file = file;
+        this.callTimes = callTimes;
+        this.counter = counter;
+        this.calls = calls;
+        this.errors = errors;
+    }
+
+    /**
+     * Read a result
+     *
+     * @param file   result file
+     * @param layout layout of the histogram to make, if the result has none
+     * @return result
+     * @throws IOException if the file cannot be read, or has no calls
+     */
+    public static ResultFile of(String file, LogLinearHistogram layout) throws IOException {
+        LogLinearHistogram lines = new LogLinearHistogram(layout);
+        Map<String, Long> lineCounter = new TreeMap<>();
+        long lineErrors = 0;
+        JsonNode summary = null;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            long number = 0;
+            for (String text = reader.readLine() ; text != null ; text = reader.readLine()) {
+                number++;
+                if (text.isEmpty())
+                    continue;
+                JsonNode node;
+                try {
+                    node = O.readTree(text);
+                } catch (IOException ex) {
+                    throw new IOException("Not a result " + file + " line " + number + ": " + ex.getMessage(), ex);
+                }
+                JsonNode logline = node.get("logline");
+                if (logline != null) {
+                    String status = logline.path("status").asText();
+                    if (logline.path("line").asLong() == 0 && logline.path("query").asText().isEmpty() && !status.matches("\\d+"))
+                        continue; // A status note, not a call
+                    lines.recordValue(logline.path("callDuration").asLong() * 1000L);
+                    if (status.matches("\\d+"))
+                        lineCounter.merge(status, 1L, Long::sum);
+                    if (!status.matches("[1-3]\\d\\d"))
+                        lineErrors++;
+                } else if (node.has("callStat")) {
+                    summary = node;
+                }
+            }
+        }
+        if (summary == null || !summary.has("histogram")) {
+            log.debug("{} has no call time histogram, using the loglines", file);
+            if (lines.getCount() == 0)
+                throw new IOException("No calls in " + file);
+            return new ResultFile(file, lines, lineCounter, lines.getCount(), lineErrors);
+        }
+        LogLinearHistogram callTimes = LogLinearHistogram.of(summary.get("histogram"));
+        Map<String, Long> counter = new TreeMap<>();
+        long ok = 0;
+        for (Iterator<Map.Entry<String, JsonNode>> i = summary.path("counter").fields() ; i.hasNext() ;) {
+            Map.Entry<String, JsonNode> e = i.next();
+            counter.put(e.getKey(), e.getValue().asLong());
+            if (e.getKey().matches("[1-3]\\d\\d"))
+                ok += e.getValue().asLong();
+        }
+        long calls = callTimes.getCount();
+        if (calls == 0)
+            throw new IOException("No calls in " + file);
+        return new ResultFile(file, callTimes, counter, calls, Math.max(0, calls - ok));
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * The call times
+     *
+     * @return histogram of µs
+     */
+    public LogLinearHistogram getCallTimes() {
+        return callTimes;
+    }
+
+    /**
+     * Number of calls for each http status
+     *
+     * @return status to count
+     */
+    public Map<String, Long> getCounter() {
+        return counter;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Number of calls, that failed or had a status of 400 or above
+     *
+     * @return count
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
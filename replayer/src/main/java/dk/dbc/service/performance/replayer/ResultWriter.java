@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the result as newline delimited json, while the replay runs
+ * <p>
+ * Chunks of log entries are put on a bounded queue, and written by a
+ * background thread, so nothing but the queue is kept in memory. The lines
+ * are:
+ * <ul>
+ * <li>{"configuration": {...}}
+ * <li>{"logline": {...}} - one for each call
+ * <li>{"interval": {...}} - throughput and call times of a reporting interval
+ * <li>{"callStat": {...}, "counter": {...}, ... "status": {...}} - summary
+ * </ul>
+ */
+public class ResultWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultWriter.class);
+
+    private static final int QUEUE_SIZE = 64;
+    private static final Object END = new Object();
+
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean closed;
+    private boolean failed;
+
+    /**
+     * Start writing
+     *
+     * @param os            where to write the result
+     * @param mapper        mapper for the configuration and summary
+     * @param configuration the configuration line content
+     * @throws IOException if the configuration line cannot be written
+     */
+    public ResultWriter(OutputStream os, ObjectMapper mapper, Map<String, String> configuration) throws IOException {
+        this.mapper = mapper;
+        this.generator = mapper.getFactory().createGenerator(new BufferedOutputStream(os, 65536), JsonEncoding.UTF8);
+        this.generator.setRootValueSeparator(null);
+        this.queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        this.closed = false;
+        this.failed = false;
+
+        generator.writeStartObject();
+        generator.writeFieldName("configuration");
+        mapper.writeValue(generator, configuration);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+
+        this.thread = new Thread(this::run, "result-writer");
+        this.thread.start();
+    }
+
+    /**
+     * Queue a chunk of log entries for output
+     * <p>
+     * Blocks if the writer is behind. The chunk should not be modified
+     * afterwards
+     *
+     * @param columns the completed entries
+     */
+    public void write(ResultColumns columns) {
+        if (closed)
+            return;
+        try {
+            queue.put(columns);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a time series line for output
+     *
+     * @param interval statistics for the interval
+     */
+    public void writeInterval(Map<String, Object> interval) {
+        if (closed)
+            return;
+        try {
+            queue.put(new Interval(interval));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the remaining entries followed by the summary and close the
+     * output
+     *
+     * @param summary summary line content (null for no summary)
+     */
+    public void finish(Map<String, Object> summary) {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            queue.put(END);
+            thread.join();
+            if (!failed && summary != null) {
+                mapper.writeValue(generator, summary);
+                generator.writeRaw('\n');
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            log.error("Error writing result: {}", ex.getMessage());
+            log.debug("Error writing result: ", ex);
+        } finally {
+            try {
+                generator.close();
+            } catch (IOException ex) {
+                log.error("Error closing result: {}", ex.getMessage());
+                log.debug("Error closing result: ", ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        finish(null);
+    }
+
+    private void run() {
+        try {
+            for (Object item = queue.take() ; item != END ; item = queue.take()) {
+                if (failed)
+                    continue;
+                try {
+                    if (item instanceof Interval) {
+                        writeInterval((Interval) item);
+                    } else {
+                        ResultColumns columns = (ResultColumns) item;
+                        for (int row = 0 ; row < columns.size() ; row++) {
+                            writeEntry(columns, row);
+                        }
+                    }
+                    if (queue.isEmpty())
+                        generator.flush();
+                } catch (IOException ex) {
+                    failed = true;
+                    log.error("Error writing result: {}", ex.getMessage());
+                    log.debug("Error writing result: ", ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.error("Result writer interrupted");
+        }
+    }
+
+    private void writeEntry(ResultColumns columns, int row) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("logline");
+        generator.writeNumberField("line", columns.getLine(row));
+        if (columns.getSource(row) != null)
+            generator.writeStringField("source", columns.getSource(row));
+        if (columns.getCopy(row) != 0)
+            generator.writeNumberField("copy", columns.getCopy(row));
+        if (columns.getTarget(row) != null)
+            generator.writeStringField("target", columns.getTarget(row));
+        generator.writeNumberField("originalTimeDelta", columns.getOriginalTimeDelta(row));
+        generator.writeNumberField("callDelay", columns.getCallDelay(row));
+        generator.writeNumberField("callDuration", columns.getCallDuration(row));
+        generator.writeStringField("query", columns.getQuery(row));
+        generator.writeStringField("status", columns.getStatus(row));
+        generator.writeNumberField("responseSize", columns.getResponseSize(row));
+        generator.writeNumberField("downloadTime", columns.getDownloadTime(row));
+        generator.writeNumberField("timestamp", columns.getTimestamp(row));
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeInterval(Interval interval) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("interval");
+        mapper.writeValue(generator, interval.content);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static class Interval {
+
+        private final Map<String, Object> content;
+
+        private Interval(Map<String, Object> content) {
+            this.content = content;
+        }
+    }
+}
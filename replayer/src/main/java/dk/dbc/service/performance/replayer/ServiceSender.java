@@ -24,18 +24,29 @@ package dk.dbc.service.performance.replayer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Accept log-lines and send the contained query to a service instance.
  * Record the execution time, and record the result
+ * <p>
+ * The response body is read to the end (and discarded), so the call duration
+ * includes the transfer of the response, and the connection can be reused
  */
 public class ServiceSender {
     private static final Logger log = LoggerFactory.getLogger(ServiceSender.class);
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
     private String baseUrl;
+    private URL base;
     private LogCollector logCollector;
 
 
@@ -45,9 +56,45 @@ public class ServiceSender {
      */
     public ServiceSender(String baseUrl, LogCollector collector) {
         this.baseUrl = baseUrl;
+        this.base = parse(baseUrl);
         this.logCollector = collector;
     }
 
+    /**
+     * The base url, parsed once for all the calls
+     *
+     * @param baseUrl Base service url
+     * @return url, or null if the queries cannot be resolved against it
+     */
+    private static URL parse(String baseUrl) {
+        try {
+            URL url = new URL(baseUrl);
+            return url.getRef() == null ? url : null;
+        } catch (MalformedURLException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The url of a query
+     * <p>
+     * A path is resolved against the parsed base url, which gives the same
+     * url as parsing the base url and the query as one string, but only the
+     * path is parsed
+     *
+     * @param q query from the recorded log
+     * @return url
+     * @throws MalformedURLException if the url is invalid
+     */
+    private URL url(String q) throws MalformedURLException {
+        if (base != null) {
+            String file = base.getFile() + q;
+            if (file.startsWith("/") && !file.startsWith("//"))
+                return new URL(base, file);
+        }
+        return new URL(baseUrl + q);
+    }
+
     /**
      * Send a query to the service and capture information about the request
      * @param logLine a Line from the recorded log
@@ -58,48 +105,66 @@ public class ServiceSender {
         log.trace( "LogLine = " + logLine);
 
         long callDuration = 0;
+        long responseSize = 0;
+        long downloadTime = 0;
         final String q = logLine.getQuery();
         logEntry.setQuery(q);
 
+        long start = System.nanoTime();
         try {
-            URL url = new URL(baseUrl + q);
+            URL url = url(q);
             HttpURLConnection client = (HttpURLConnection) url.openConnection();
             client.setRequestMethod("GET");
 
-            Timer.start();
+            start = System.nanoTime();
             client.connect();
             int responseCode = client.getResponseCode();
 
+            long downloadStart = System.nanoTime();
+            responseSize = drain(responseCode < 400 ? client.getInputStream() : client.getErrorStream());
+            downloadTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - downloadStart);
+
             logCollector.incrementFor(Integer.toString(responseCode));
 
             if (responseCode != 200) {
                 log.error( "Got non-200 status({}) from service on query: {}", responseCode, q);
             }
 
-            logEntry.setStatus(Integer.toString(responseCode));
+            logEntry.setStatus(responseCode);
         } catch (Exception e) {
             log.error("Exception from client caught ({}) on query: {}", e.getMessage() , q);
-            logEntry.setStatus("Exception from http-client (" + e.getMessage() + ")");
+            logEntry.setFailure("Exception from http-client (" + e.getMessage() + ")");
         }
 
         finally {
-            callDuration = Timer.end();
-            logEntry.setCallDuration(callDuration);
+            long callDurationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            callDuration = callDurationMicros / 1000;
+            logEntry.setCallDurationMicros(callDurationMicros);
+            logEntry.setResponse(responseSize, downloadTime);
 
-            log.info( "Call duration = {}ms", callDuration);
+            log.debug( "Call duration = {}ms ({} bytes)", callDuration, responseSize);
         }
 
         return callDuration;
     }
-    private static class Timer {
-        private static long startTS;
 
-        public static void start() {
-            startTS = System.currentTimeMillis();
-        }
-
-        public static long end() {
-            return System.currentTimeMillis() - startTS;
+    /**
+     * Read a response body to the end, through a per thread buffer
+     *
+     * @param is response body (null if there is none)
+     * @return number of bytes read
+     * @throws IOException if the body could not be read
+     */
+    private static long drain(InputStream is) throws IOException {
+        if (is == null)
+            return 0;
+        byte[] buffer = BUFFER.get();
+        long size = 0;
+        try (InputStream in = is) {
+            for (int n = in.read(buffer) ; n != -1 ; n = in.read(buffer)) {
+                size += n;
+            }
         }
+        return size;
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A service level rule evaluated over a sliding time window
+ * <p>
+ * Format: METRIC(&lt;|&gt;)THRESHOLD/WINDOW[:abort|:warn] where METRIC is
+ * <ul>
+ * <li>pNN - call time percentile, THRESHOLD is a duration ie. p99&gt;800ms/30s
+ * <li>errors - failed calls in percent of completed calls ie.
+ * errors&gt;2%/10s
+ * <li>rate - completed calls in percent of scheduled calls ie.
+ * rate&lt;90%/30s
+ * </ul>
+ */
+public final class SloRule {
+
+    private static final Pattern RULE_PATTERN = Pattern.compile("(p\\d+(?:\\.\\d+)?|errors|rate)([<>])(\\d+(?:\\.\\d+)?)(ms|s|m|%)/(\\d+[a-z]+)(?::(abort|warn))?");
+
+    public enum Metric {
+        PERCENTILE, ERRORS, RATE
+    }
+
+    public enum Action {
+        ABORT, WARN
+    }
+
+    private final String text;
+    private final Metric metric;
+    private final double percentile;
+    private final boolean above;
+    private final double threshold;
+    private final long window;
+    private final Action action;
+
+    /**
+     * Convert a rule text into an object
+     *
+     * @param text rule as given on the command line
+     * @return rule
+     * @throws IllegalArgumentException if the text is not a valid rule
+     */
+    public static SloRule of(String text) {
+        Matcher m = RULE_PATTERN.matcher(text.trim().toLowerCase(Locale.ROOT));
+        if (!m.matches())
+            throw new IllegalArgumentException("Rule is not in valid format METRIC(<|>)THRESHOLD/WINDOW[:abort|:warn] (" + text + ")");
+        String name = m.group(1);
+        String unit = m.group(4);
+        Metric metric;
+        double percentile = 0;
+        double threshold = Double.parseDouble(m.group(3));
+        if (name.startsWith("p")) {
+            metric = Metric.PERCENTILE;
+            percentile = Double.parseDouble(name.substring(1));
+            if (percentile > 100)
+                throw new IllegalArgumentException("Percentile cannot be above 100 (" + text + ")");
+            switch (unit) {
+                case "%":
+                    throw new IllegalArgumentException("Percentile threshold should be a duration (" + text + ")");
+                case "s":
+                    threshold *= 1000;
+                    break;
+                case "m":
+                    threshold *= 60_000;
+                    break;
+                default:
+                    break;
+            }
+        } else {
+            metric = name.equals("errors") ? Metric.ERRORS : Metric.RATE;
+            if (!unit.equals("%"))
+                throw new IllegalArgumentException("Threshold of " + name + " should be in percent (" + text + ")");
+        }
+        long window = Config.parseTimeSpec(m.group(5));
+        if (window < 1000)
+            throw new IllegalArgumentException("Window should be at least 1s (" + text + ")");
+        Action action = "warn".equals(m.group(6)) ? Action.WARN : Action.ABORT;
+        return new SloRule(text, metric, percentile, m.group(2).equals(">"), threshold, window, action);
+    }
+
+    private SloRule(String text, Metric metric, double percentile, boolean above, double threshold, long window, Action action) {
+        this.text = text;
+        this.metric = metric;
+        this.percentile = percentile;
+        this.above = above;
+        this.threshold = threshold;
+        this.window = window;
+        this.action = action;
+    }
+
+    /**
+     * Compute the value this rule watches
+     *
+     * @param snapshot statistics for the window of the rule
+     * @return value or null if there's no data to compute it from
+     */
+    public Double valueOf(TimeWindow.Snapshot snapshot) {
+        switch (metric) {
+            case PERCENTILE:
+                return snapshot.getCompleted() == 0 ? null : (double) snapshot.percentile(percentile);
+            case ERRORS:
+                return snapshot.getCompleted() == 0 ? null : snapshot.getErrors() * 100.0 / snapshot.getCompleted();
+            case RATE:
+                return snapshot.getIntended() == 0 ? null : snapshot.getCompleted() * 100.0 / snapshot.getIntended();
+            default:
+                throw new IllegalStateException("Unknown metric: " + metric);
+        }
+    }
+
+    /**
+     * Test a value against the threshold
+     *
+     * @param value as computed by {@link #valueOf(TimeWindow.Snapshot)}
+     * @return if the rule is broken
+     */
+    public boolean isBreachedBy(double value) {
+        return above ? value > threshold : value < threshold;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
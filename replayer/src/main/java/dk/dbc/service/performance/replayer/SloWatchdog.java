@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates {@link SloRule}s every second on its own thread
+ * <p>
+ * When a rule goes from being kept to being broken, the breach is added to
+ * the log collector, and for abort rules the job listener is notified.
+ */
+public class SloWatchdog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SloWatchdog.class);
+
+    private final List<SloRule> rules;
+    private final LogCollector logCollector;
+    private final JobListener jobListener;
+    private final TimeWindow window;
+    private final boolean[] breached;
+    private ScheduledExecutorService scheduler;
+    private long started;
+
+    /**
+     * @param rules        rules to evaluate (if empty nothing is recorded)
+     * @param logCollector where to register breaches
+     * @param jobListener  who to notify if an abort rule is broken
+     */
+    public SloWatchdog(List<SloRule> rules, LogCollector logCollector, JobListener jobListener) {
+        this(rules, 0L, logCollector, jobListener);
+    }
+
+    /**
+     * @param rules        rules to evaluate
+     * @param window       ms of statistics to keep, beside the windows of the
+     *                     rules (for {@link #over(long)})
+     * @param logCollector where to register breaches
+     * @param jobListener  who to notify if an abort rule is broken
+     */
+    public SloWatchdog(List<SloRule> rules, long window, LogCollector logCollector, JobListener jobListener) {
+        this.rules = rules;
+        this.logCollector = logCollector;
+        this.jobListener = jobListener;
+        this.breached = new boolean[rules.size()];
+        long windowSeconds = rules.stream()
+                .mapToLong(r -> r.getWindow() / 1000)
+                .max().orElse(1);
+        windowSeconds = Math.max(windowSeconds, ( window + 999 ) / 1000);
+        this.window = rules.isEmpty() && window <= 0 ? null : new TimeWindow(windowSeconds, System.currentTimeMillis());
+    }
+
+    /**
+     * Start evaluating rules
+     */
+    public void start() {
+        if (window == null)
+            return;
+        started = System.currentTimeMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "slo-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::check, 1000 - started % 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register that a call was scheduled to be sent
+     *
+     * @param scheduled when the call should have been sent in epoch
+     *                  milliseconds
+     */
+    public void intended(long scheduled) {
+        if (window != null)
+            window.intended(scheduled, System.currentTimeMillis());
+    }
+
+    /**
+     * Register a completed call
+     *
+     * @param duration call time in ms
+     * @param error    if the call failed
+     */
+    public void completed(long duration, boolean error) {
+        if (window != null)
+            window.completed(System.currentTimeMillis(), duration, error);
+    }
+
+    /**
+     * Statistics of the latest complete seconds
+     *
+     * @param period ms to sum up (limited by the kept window)
+     * @return statistics, or null if nothing is kept
+     */
+    public TimeWindow.Snapshot over(long period) {
+        if (window == null)
+            return null;
+        return window.over(System.currentTimeMillis(), period);
+    }
+
+    void check() {
+        try {
+            long now = System.currentTimeMillis();
+            window.advance(now);
+            for (int i = 0 ; i < rules.size() ; i++) {
+                SloRule rule = rules.get(i);
+                if (now - started < rule.getWindow())
+                    continue;
+                Double value = rule.valueOf(window.over(now, rule.getWindow()));
+                boolean isBreached = value != null && rule.isBreachedBy(value);
+                if (isBreached && !breached[i])
+                    breach(rule, value, now);
+                breached[i] = isBreached;
+            }
+        } catch (RuntimeException ex) {
+            log.error("Error evaluating rules: {}", ex.getMessage());
+            log.debug("Error evaluating rules: ", ex);
+        }
+    }
+
+    private void breach(SloRule rule, double value, long now) {
+        String message = "Rule " + rule + " broken (" + String.format(Locale.ROOT, "%.2f", value) + ")";
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("rule", rule.toString());
+        entry.put("action", rule.getAction().name().toLowerCase(Locale.ROOT));
+        entry.put("value", value);
+        entry.put("timestamp", now);
+        logCollector.addBreach(entry);
+        if (rule.getAction() == SloRule.Action.ABORT) {
+            log.error(message);
+            jobListener.sloBreached(message);
+        } else {
+            log.warn(message);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The slowest calls, and a sample of the calls slower than a threshold
+ * <p>
+ * The slowest are kept in a heap with the fastest of them on top, so a call
+ * is only compared with that. The sample is a reservoir sample: each of the
+ * calls above the threshold has the same chance of being in it, regardless of
+ * how many there are.
+ * <p>
+ * Calls are added from the threads completing them. A call that is neither
+ * slower than the fastest of the slowest, nor above the threshold, is turned
+ * away without locking, so the lock is only taken for the (rare) slow calls.
+ */
+public class SlowCalls {
+
+    private static final Comparator<Call> BY_DURATION = Comparator.comparingLong(c -> c.callDurationMicros);
+
+    private final int size;
+    private final long threshold;
+    private final Call[] sample;
+    private final PriorityQueue<Call> slowest;
+    private volatile long floor;
+    private long seen;
+
+    /**
+     * @param size       number of slowest calls to keep (0 for none)
+     * @param threshold  call time (ms) a call needs to exceed to be sampled,
+     *                   negative for no sample
+     * @param sampleSize number of calls in the sample
+     */
+    public SlowCalls(int size, long threshold, int sampleSize) {
+        this.size = size;
+        this.threshold = threshold < 0 ? Long.MAX_VALUE : threshold * 1000L;
+        this.sample = new Call[threshold < 0 ? 0 : sampleSize];
+        this.slowest = new PriorityQueue<>(Math.max(1, size), BY_DURATION);
+        this.floor = size > 0 ? -1L : Long.MAX_VALUE;
+        this.seen = 0;
+    }
+
+    /**
+     * Consider a completed call
+     * <p>
+     * The values of the entry are copied if it is kept
+     *
+     * @param entry the call
+     */
+    public void add(LogCollector.LogEntry entry) {
+        long duration = entry.getCallDurationMicros();
+        if (duration <= floor && duration <= threshold)
+            return;
+        Call call = new Call(entry);
+        synchronized (this) {
+            if (duration > floor) {
+                slowest.add(call);
+                if (slowest.size() > size)
+                    slowest.poll();
+                if (slowest.size() == size)
+                    floor = slowest.peek().callDurationMicros;
+            }
+            if (duration > threshold && sample.length > 0) {
+                long index = seen++;
+                if (index < sample.length)
+                    sample[(int) index] = call;
+                else {
+                    long slot = ThreadLocalRandom.current().nextLong(index + 1);
+                    if (slot < sample.length)
+                        sample[(int) slot] = call;
+                }
+            }
+        }
+    }
+
+    /**
+     * The slowest calls
+     *
+     * @return the calls, slowest first
+     */
+    public synchronized List<Map<String, Object>> getSlowest() {
+        List<Call> calls = new ArrayList<>(slowest);
+        calls.sort(BY_DURATION.reversed());
+        List<Map<String, Object>> list = new ArrayList<>();
+        calls.forEach(call -> list.add(call.toMap()));
+        return list;
+    }
+
+    /**
+     * The sample of the calls above the threshold
+     *
+     * @return the threshold (ms), the number of calls above it, and the
+     *         sampled calls, slowest first (null if there is no sample)
+     */
+    public synchronized Map<String, Object> getTailSample() {
+        if (sample.length == 0)
+            return null;
+        List<Call> calls = new ArrayList<>();
+        for (int i = 0 ; i < sample.length && i < seen ; i++) {
+            calls.add(sample[i]);
+        }
+        calls.sort(BY_DURATION.reversed());
+        List<Map<String, Object>> list = new ArrayList<>();
+        calls.forEach(call -> list.add(call.toMap()));
+        Map<String, Object> tail = new LinkedHashMap<>();
+        tail.put("threshold", threshold / 1000L);
+        tail.put("calls", seen);
+        tail.put("sample", list);
+        return tail;
+    }
+
+    /**
+     * The values of a call, that are needed to investigate it
+     */
+    private static final class Call {
+
+        private final long line;
+        private final int copy;
+        private final String source;
+        private final String target;
+        private final String query;
+        private final String status;
+        private final long callDelay;
+        private final long callDurationMicros;
+        private final long downloadTime;
+        private final long responseSize;
+        private final long timestamp;
+
+        private Call(LogCollector.LogEntry entry) {
+            this.line = entry.getLine();
+            this.copy = entry.getCopy();
+            this.source = entry.getSource();
+            this.target = entry.getTarget();
+            this.query = entry.getQuery();
+            this.status = entry.getStatus();
+            this.callDelay = entry.getCallDelay();
+            this.callDurationMicros = entry.getCallDurationMicros();
+            this.downloadTime = entry.getDownloadTime();
+            this.responseSize = entry.getResponseSize();
+            this.timestamp = entry.getTimestamp();
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("line", line);
+            if (source != null)
+                map.put("source", source);
+            if (copy != 0)
+                map.put("copy", copy);
+            if (target != null)
+                map.put("target", target);
+            map.put("callDelay", callDelay);
+            map.put("callDuration", callDurationMicros / 1000.0);
+            map.put("downloadTime", downloadTime);
+            map.put("query", query);
+            map.put("status", status);
+            map.put("responseSize", responseSize);
+            map.put("timestamp", timestamp);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding window of call statistics in one second slots
+ * <p>
+ * Calls are recorded without locking from any thread. Slots are cleared a
+ * few seconds ahead of time by {@link #advance(long)}, which is expected to
+ * be called (about) every second from a single thread. A slot remembers which
+ * second it was cleared for, and is ignored when summing up other seconds.
+ * <p>
+ * Call times are counted in a {@link LogLinearHistogram} per slot, with 2
+ * significant digits
+ */
+public class TimeWindow {
+
+    private static final int AHEAD = 5;
+
+    private static final long HIGHEST_CALL_TIME = 3_600_000L;
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final int INTENDED = 0;
+    private static final int COMPLETED = 1;
+    private static final int ERRORS = 2;
+    private static final int SECOND = 3;
+    private static final int COUNTERS = 4;
+
+    private final AtomicLongArray[] slots;
+    private final LogLinearHistogram[] callTimes;
+    private long cleared;
+
+    /**
+     * @param windowSeconds the largest window that will be requested in
+     *                      {@link #over(long, long)}
+     * @param now           current time in epoch milliseconds
+     */
+    public TimeWindow(long windowSeconds, long now) {
+        this.slots = new AtomicLongArray[(int) windowSeconds + 1 + AHEAD];
+        this.callTimes = new LogLinearHistogram[slots.length];
+        for (int i = 0 ; i < slots.length ; i++) {
+            slots[i] = new AtomicLongArray(COUNTERS);
+            slots[i].set(SECOND, -1L);
+            callTimes[i] = new LogLinearHistogram(HIGHEST_CALL_TIME, SIGNIFICANT_DIGITS);
+        }
+        this.cleared = now / 1000 - 1;
+        advance(now);
+    }
+
+    /**
+     * Register that a call was scheduled to be sent
+     *
+     * @param scheduled when the call should have been sent in epoch
+     *                  milliseconds
+     * @param now       current time in epoch milliseconds
+     */
+    public void intended(long scheduled, long now) {
+        long second = scheduled / 1000;
+        if (second > now / 1000 - ( slots.length - AHEAD )) // Too old - slot might have been reused
+            slots[index(second)].incrementAndGet(INTENDED);
+    }
+
+    /**
+     * Register a completed call
+     *
+     * @param now      current time in epoch milliseconds
+     * @param duration call time in ms
+     * @param error    if the call failed
+     */
+    public void completed(long now, long duration, boolean error) {
+        int index = index(now / 1000);
+        AtomicLongArray slot = slots[index];
+        slot.incrementAndGet(COMPLETED);
+        if (error)
+            slot.incrementAndGet(ERRORS);
+        callTimes[index].recordValue(duration);
+    }
+
+    /**
+     * Clear the slots of the next few seconds
+     *
+     * @param now current time in epoch milliseconds
+     */
+    public void advance(long now) {
+        long second = now / 1000;
+        for (long s = Math.max(cleared + 1, second + AHEAD - slots.length + 1) ; s <= second + AHEAD ; s++) {
+            int index = index(s);
+            AtomicLongArray slot = slots[index];
+            for (int i = 0 ; i < COUNTERS ; i++) {
+                slot.set(i, 0L);
+            }
+            callTimes[index].reset();
+            slot.set(SECOND, s);
+        }
+        cleared = Math.max(cleared, second + AHEAD);
+    }
+
+    /**
+     * Sum up the complete seconds of a window
+     *
+     * @param now    current time in epoch milliseconds
+     * @param window size of window in milliseconds
+     * @return statistics for the window
+     */
+    public Snapshot over(long now, long window) {
+        long second = now / 1000;
+        long seconds = Math.min(Math.max(1, window / 1000), slots.length - 1 - AHEAD);
+        Snapshot snapshot = new Snapshot(new LogLinearHistogram(HIGHEST_CALL_TIME, SIGNIFICANT_DIGITS));
+        for (long s = second - seconds ; s < second ; s++) {
+            int index = index(s);
+            AtomicLongArray slot = slots[index];
+            if (slot.get(SECOND) != s)
+                continue;
+            snapshot.intended += slot.get(INTENDED);
+            snapshot.completed += slot.get(COMPLETED);
+            snapshot.errors += slot.get(ERRORS);
+            snapshot.callTimes.add(callTimes[index]);
+        }
+        return snapshot;
+    }
+
+    private int index(long second) {
+        return (int) ( second % slots.length );
+    }
+
+    /**
+     * Statistics for a window
+     */
+    public static class Snapshot {
+
+        private long intended;
+        private long completed;
+        private long errors;
+        private final LogLinearHistogram callTimes;
+
+        private Snapshot(LogLinearHistogram callTimes) {
+            this.callTimes = callTimes;
+        }
+
+        public long getIntended() {
+            return intended;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Call time at a given percentile
+         *
+         * @param percentile 0-100
+         * @return the highest call time (in the bucket) of the percentile
+         */
+        public long percentile(double percentile) {
+            return callTimes.getValueAtPercentile(percentile);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop replay with a fixed number of virtual users
+ * <p>
+ * Each user takes the next line of the recording as soon as its previous call
+ * has completed (and the think time has passed), regardless of the recorded
+ * timing. The concurrency levels are run one after the other, each for the
+ * level time, and the throughput and call times of each level are added to
+ * the log collector.
+ */
+public class VirtualUsers {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualUsers.class);
+
+    private final Config config;
+    private final LogCollector logCollector;
+    private final List<User> users;
+    private volatile boolean exhausted;
+
+    /**
+     * @param config       concurrency levels, level time and think time
+     * @param logCollector where to read call times from and add the level
+     *                     results to
+     */
+    public VirtualUsers(Config config, LogCollector logCollector) {
+        this.config = config;
+        this.logCollector = logCollector;
+        this.users = new ArrayList<>();
+        this.exhausted = false;
+    }
+
+    /**
+     * Run all concurrency levels
+     *
+     * @param tasks   source of calls, one for each line of the recording (null
+     *                when there are no more, or the replay should stop)
+     * @param stopped counted down when the replay should stop
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(Supplier<ReplayerTask> tasks, CountDownLatch stopped) throws InterruptedException {
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        CountDownLatch done = new CountDownLatch(1);
+        Supplier<ReplayerTask> source = () -> {
+            ReplayerTask task = tasks.get();
+            if (task == null) {
+                exhausted = true;
+                done.countDown();
+            }
+            return task;
+        };
+        try {
+            for (int level : config.getUsers()) {
+                if (exhausted || stopped.getCount() == 0)
+                    break;
+                runLevel(level, source, executorService, stopped, done);
+            }
+        } finally {
+            users.forEach(User::stop);
+            executorService.shutdown();
+            if (!executorService.awaitTermination(5L, TimeUnit.SECONDS))
+                log.warn("Not all virtual users completed their calls");
+        }
+    }
+
+    private void runLevel(int level, Supplier<ReplayerTask> source, ExecutorService executorService, CountDownLatch stopped, CountDownLatch done) throws InterruptedException {
+        log.info("Running with {} virtual users", level);
+        while (users.size() > level) {
+            users.remove(users.size() - 1).stop();
+        }
+        while (users.size() < level) {
+            User user = new User(source, stopped);
+            users.add(user);
+            executorService.execute(user);
+        }
+
+        long start = System.currentTimeMillis();
+        LogLinearHistogram before = logCollector.getCallTimeHistogram();
+        long errorsBefore = logCollector.getErrorCount();
+        long end = start + config.getLevelTime();
+        for (long now = start ; now < end && !exhausted && stopped.getCount() > 0 ; now = System.currentTimeMillis()) {
+            if (done.await(Math.min(end - now, 100L), TimeUnit.MILLISECONDS))
+                break;
+        }
+        if (exhausted || stopped.getCount() == 0) { // Include the calls in flight
+            for (User user : users) {
+                user.finished.await(5L, TimeUnit.SECONDS);
+            }
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        LogLinearHistogram callTimes = logCollector.getCallTimeHistogram().since(before);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", level);
+        result.put("duration", duration);
+        result.put("completed", callTimes.getCount());
+        result.put("throughput", callTimes.getCount() * 1000.0 / duration);
+        result.put("errors", logCollector.getErrorCount() - errorsBefore);
+        result.put("mean", callTimes.getMean() / 1000.0);
+        for (double percentile : new double[] {50, 90, 95, 99, 99.9}) {
+            String name = percentile == Math.rint(percentile) ?
+                          String.valueOf((long) percentile) :
+                          String.valueOf(percentile);
+            result.put("p" + name, callTimes.getValueAtPercentile(percentile) / 1000.0);
+        }
+        result.put("max", callTimes.getMax() / 1000.0);
+        logCollector.addLevel(result);
+        log.info("{} virtual users: {}", level, result);
+    }
+
+    /**
+     * One virtual user
+     */
+    private class User implements Runnable {
+
+        private final Supplier<ReplayerTask> source;
+        private final CountDownLatch stopped;
+        private final CountDownLatch finished;
+        private volatile boolean running;
+
+        private User(Supplier<ReplayerTask> source, CountDownLatch stopped) {
+            this.source = source;
+            this.stopped = stopped;
+            this.finished = new CountDownLatch(1);
+            this.running = true;
+        }
+
+        private void stop() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running && stopped.getCount() > 0) {
+                    ReplayerTask task = source.get();
+                    if (task == null)
+                        break;
+                    task.run();
+                    if (config.getThinkTime() > 0 && stopped.await(config.getThinkTime(), TimeUnit.MILLISECONDS))
+                        break;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                log.error("Virtual user failed: {}", ex.getMessage());
+                log.debug("Virtual user failed: ", ex);
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The calls of the warm-up, that are not part of the measured replay
+ * <p>
+ * The calls are sent as any other, but are collected by a collector of their
+ * own, that is not written to the output, and watched by a call time watcher
+ * and a service level watchdog without limits, so they are reported apart
+ * and never abort the replay.
+ */
+public class Warmup {
+
+    private final long requests;
+    private final long duration;
+    private final LogCollector logCollector;
+    private final CallTimeWathcer watcher;
+    private final SloWatchdog watchdog;
+    private volatile long started;
+    private volatile long ended;
+    private volatile long sent;
+
+    /**
+     * @param config      warm-up requests or duration, and the layout of the
+     *                    statistics
+     * @param jobListener listener of the watchdog (never notified)
+     */
+    public Warmup(Config config, JobListener jobListener) {
+        this.requests = config.getWarmupRequests();
+        this.duration = config.getWarmupTime();
+        this.logCollector = new LogCollector(config);
+        this.watcher = new CallTimeWathcer(config.getCallBufferSize(), config.getMaxDelayedCalls(), Long.MAX_VALUE);
+        this.watchdog = new SloWatchdog(Collections.emptyList(), logCollector, jobListener);
+        this.started = 0;
+        this.ended = 0;
+        this.sent = 0;
+    }
+
+    /**
+     * Start the warm-up
+     *
+     * @param now when the first call is dispatched
+     */
+    public void start(long now) {
+        started = now;
+    }
+
+    /**
+     * If a call is part of the warm-up
+     * <p>
+     * Without a number of requests or a duration, every call is (a warm-up
+     * recording, that is replayed to the end). The warm-up ends with the first
+     * call it does not cover.
+     *
+     * @param request number of the request (from 1)
+     * @param offset  ms from the start the call is scheduled at
+     * @return if the call is part of the warm-up
+     */
+    public boolean covers(long request, long offset) {
+        if (ended != 0)
+            return false;
+        if (requests == 0 && duration == 0 ||
+            requests > 0 && request <= requests ||
+            duration > 0 && offset < duration) {
+            sent++;
+            return true;
+        }
+        end(System.currentTimeMillis());
+        return false;
+    }
+
+    /**
+     * End the warm-up, if it has not ended already
+     *
+     * @param now when it ended
+     */
+    public void end(long now) {
+        if (ended == 0)
+            ended = now;
+    }
+
+    public LogCollector getLogCollector() {
+        return logCollector;
+    }
+
+    public CallTimeWathcer getWatcher() {
+        return watcher;
+    }
+
+    public SloWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * The statistics of the warm-up
+     * <p>
+     * Should be taken when the calls have completed
+     *
+     * @return the number of requests and ms of the warm-up, and the call time
+     *         statistics, percentiles and http status counts of the calls
+     */
+    public Map<String, Object> statistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", sent);
+        stats.put("time", Math.max(0, ( ended == 0 ? System.currentTimeMillis() : ended ) - started));
+        stats.put("callStat", logCollector.calculateStats());
+        stats.put("percentiles", logCollector.calculatePercentiles());
+        stats.put("errors", logCollector.getErrorCount());
+        stats.put("counter", logCollector.getStatusCounts());
+        return stats;
+    }
+}
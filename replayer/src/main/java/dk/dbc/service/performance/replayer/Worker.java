@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.dbc.ExitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Worker of a distributed replay
+ * <p>
+ * Waits for a coordinator (see {@link Coordinator} for the protocol), stores
+ * its part of the recording in a temporary file, and replays it from the
+ * start instant, with the command line of the coordinator. The loglines are
+ * written to the output of the worker (if any), and the statistics are sent
+ * back to the coordinator. Jobs are run one at a time, until the process is
+ * stopped.
+ */
+public class Worker {
+
+    private static final Logger log = LoggerFactory.getLogger(Worker.class);
+
+    private final Config config;
+    private final ObjectMapper mapper;
+
+    /**
+     * @param config port to listen on, and output for the loglines
+     */
+    public Worker(Config config) {
+        this.config = config;
+        this.mapper = new ObjectMapper();
+    }
+
+    /**
+     * Serve coordinators
+     *
+     * @return 1 if the port cannot be listened on (otherwise it does not
+     *         return)
+     */
+    public int run() {
+        try (ServerSocket server = new ServerSocket(config.getWorkerPort())) {
+            log.info("Waiting for a coordinator on port {}", server.getLocalPort());
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    serve(socket);
+                } catch (IOException | RuntimeException ex) {
+                    log.error("Error running job: {}", ex.getMessage());
+                    log.debug("Error running job: ", ex);
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Cannot listen on port {}: {}", config.getWorkerPort(), ex.getMessage());
+            return Replayer.Status.Code.IOERROR.getValue();
+        }
+    }
+
+    /**
+     * Run one job
+     *
+     * @param socket connection to the coordinator
+     * @throws IOException if the connection fails
+     */
+    void serve(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        JsonNode job = mapper.readTree(reader.readLine());
+        log.info("Got job part {} of {} from {}", job.path("part").asInt() + 1, job.path("parts").asInt(), socket.getRemoteSocketAddress());
+        Path recording = Files.createTempFile("replay-", ".data");
+        try {
+            long lines = 0;
+            try (BufferedWriter part = Files.newBufferedWriter(recording, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine() ; line != null && !line.isEmpty() ; line = reader.readLine()) {
+                    part.write(line);
+                    part.newLine();
+                    lines++;
+                }
+            }
+
+            List<String> arguments = new ArrayList<>();
+            job.path("arguments").forEach(argument -> arguments.add(argument.asText()));
+            arguments.add("-i");
+            arguments.add(recording.toString());
+            if (config.getOutput() != null) {
+                arguments.add("-o");
+                arguments.add(config.getOutput());
+            }
+            Config jobConfig;
+            try {
+                jobConfig = Config.of(arguments.toArray(new String[0]));
+            } catch (ExitException ex) {
+                send(writer, "error", "Invalid arguments: " + arguments);
+                return;
+            }
+            send(writer, "ready", lines);
+
+            JsonNode start = mapper.readTree(reader.readLine());
+            Instant startAt = Instant.ofEpochMilli(start.path("start").asLong());
+            log.info("Replaying {} lines at {}", lines, startAt);
+            LogCollector logCollector = new LogCollector(jobConfig);
+            int code = new Replayer(jobConfig).run(logCollector, startAt);
+            log.info("Job done (status {})", code);
+            writer.write(mapper.writeValueAsString(logCollector.export()));
+            writer.newLine();
+            writer.flush();
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+    }
+
+    private void send(BufferedWriter writer, String key, Object value) throws IOException {
+        writer.write(mapper.writeValueAsString(Collections.singletonMap(key, value)));
+        writer.newLine();
+        writer.flush();
+    }
+}
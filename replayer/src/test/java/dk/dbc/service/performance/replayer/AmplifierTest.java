@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class AmplifierTest {
+
+    private static List<LogLine> readAll(int factor, long window, Long seed, String salt, String... lines) throws Exception {
+        List<LogLine> result = new ArrayList<>();
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(TestFiles.recording(lines))))) {
+            Amplifier amplifier = new Amplifier(reader, factor, window, seed, salt);
+            for (LogLine line = amplifier.next() ; line != null ; line = amplifier.next()) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> format(List<LogLine> lines) {
+        List<String> result = new ArrayList<>();
+        for (LogLine line : lines) {
+            result.add(line.getTimeDelta() + " " + line.getQuery() + " " + line.getLine() + "/" + line.getCopy());
+        }
+        return result;
+    }
+
+    @Test(timeout = 2_000L)
+    public void testEvenSpread() throws Exception {
+        System.out.println("testEvenSpread");
+        assertThat(format(readAll(4, 40, null, null, "100 q=a", "120 q=b")),
+                   is(equalTo(Arrays.asList("85 q=a 1/0", "95 q=a 1/1", "105 q=a 1/2", "105 q=b 2/0",
+                                            "115 q=a 1/3", "115 q=b 2/1", "125 q=b 2/2", "135 q=b 2/3"))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSalt() throws Exception {
+        System.out.println("testSalt");
+        assertThat(format(readAll(3, 0, null, "salt", "0 q=a", "10 ")),
+                   is(equalTo(Arrays.asList("0 q=a 1/0", "0 q=a&salt=1 1/1", "0 q=a&salt=2 1/2",
+                                            "10  2/0", "10 salt=3 2/1", "10 salt=4 2/2"))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSeededJitter() throws Exception {
+        System.out.println("testSeededJitter");
+        String[] recording = new String[100];
+        for (int i = 0 ; i < recording.length ; i++) {
+            recording[i] = ( 1000 + i * 5 ) + " q=" + i;
+        }
+        List<LogLine> lines = readAll(10, 100, 42L, null, recording);
+        assertThat(lines.size(), is(1000));
+        long previous = 0;
+        int[] copies = new int[recording.length];
+        for (LogLine line : lines) {
+            assertThat(line.getTimeDelta(), greaterThanOrEqualTo(previous));
+            int i = (int) line.getLine() - 1;
+            long recorded = 1000 + i * 5;
+            assertThat(line.getTimeDelta(), greaterThanOrEqualTo(recorded - 50));
+            assertThat(line.getTimeDelta(), lessThanOrEqualTo(recorded + 50));
+            assertThat(line.getCopy(), is(copies[i]++));
+            previous = line.getTimeDelta();
+        }
+        assertThat(format(readAll(10, 100, 42L, null, recording)), is(equalTo(format(lines))));
+    }
+}
@@ -3,6 +3,9 @@ package dk.dbc.service.performance.replayer;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -108,4 +111,27 @@ public class CallTimeWathcerTest {
             assertEquals(maxCallsExceeded+1, watcher.numElementsAbove(cutOffLimit));
         }
     }
+
+    @Test(timeout = 10_000L)
+    public void testConcurrentPush() throws Exception {
+        int size = 1000;
+        long cutOffLimit = 50;
+        CallTimeWathcer.CallStack c = new CallTimeWathcer.CallStack(size, cutOffLimit);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            threads.add(new Thread(() -> {
+                for (int x = 0; x < 100_000; x++) {
+                    c.push(2 * ( ( x * 31 + seed ) % 50 ) + 1);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        // Only odd call times, so counting from 51 scans the buffer and has to agree with the maintained count
+        assertEquals(c.numElementsAbove(cutOffLimit + 1), c.numElementsAbove(cutOffLimit));
+    }
 }
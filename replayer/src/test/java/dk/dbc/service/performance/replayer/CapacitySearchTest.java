@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CapacitySearchTest {
+
+    private static CapacitySearch search(String... args) {
+        Config config = Config.of(args);
+        LogCollector logCollector = new LogCollector(config);
+        SloWatchdog watchdog = new SloWatchdog(Collections.emptyList(), config.getCapacityWindow(), logCollector, null);
+        return new CapacitySearch(config, logCollector, watchdog, () -> {
+                              });
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStepUpAndBisect() throws Exception {
+        System.out.println("testStepUpAndBisect");
+        CapacitySearch search = search("-s", "http://localhost", "-C", "10s/100/2");
+        assertThat(search.next(true), is(closeTo(200.0, 1e-9)));
+        search.setSpeed(200, 10_000);
+        assertThat(search.next(true), is(closeTo(400.0, 1e-9)));
+        search.setSpeed(400, 20_000);
+        assertThat(search.next(false), is(closeTo(300.0, 1e-9)));
+        search.setSpeed(300, 30_000);
+        assertThat(search.next(false), is(closeTo(250.0, 1e-9)));
+        search.setSpeed(250, 40_000);
+        assertThat(search.next(true), is(closeTo(0.0, 1e-9)));
+        assertThat(search.getKnee(), is(closeTo(250.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testFirstStepFails() throws Exception {
+        System.out.println("testFirstStepFails");
+        CapacitySearch search = search("-s", "http://localhost", "-C", "10s/50/1", "-r", "200");
+        assertThat(search.next(false), is(closeTo(100.0, 1e-9)));
+        search.setSpeed(100, 10_000);
+        assertThat(search.next(false), is(closeTo(0.0, 1e-9)));
+        assertThat(search.getKnee(), is(closeTo(0.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testCallTimeOfStep() throws Exception {
+        System.out.println("testCallTimeOfStep");
+        CapacitySearch search = search("-s", "http://localhost", "-C", "10s", "-c", "1s/2/100");
+        LogLinearHistogram callTimes = new LogLinearHistogram(LogCollector.HIGHEST_CALL_TIME, 3);
+        callTimes.recordValue(5_000_000L, 50); // A failing step
+        LogLinearHistogram before = callTimes.copy();
+        callTimes.recordValue(10_000L, 400);
+        callTimes.recordValue(2_000_000L, 8);
+        // 8 of 408 is within 2 of 100
+        assertThat(search.callTimeBroken(callTimes.since(before)), is(nullValue()));
+        callTimes.recordValue(2_000_000L, 1);
+        assertThat(search.callTimeBroken(callTimes.since(before)), is(equalTo("9 of the 409 calls took longer than 1000ms")));
+        assertThat(search.callTimeBroken(callTimes), is(equalTo("59 of the 459 calls took longer than 1000ms")));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSchedule() throws Exception {
+        System.out.println("testSchedule");
+        CapacitySearch search = search("-s", "http://localhost", "-C", "10s");
+        assertThat(search.wallTimeOf(5_000), is(equalTo(5_000L)));
+        search.setSpeed(200, 10_000); // recording at 10s
+        assertThat(search.wallTimeOf(9_000), is(equalTo(10_000L)));
+        assertThat(search.wallTimeOf(20_000), is(equalTo(15_000L)));
+        search.setSpeed(50, 20_000); // recording at 30s
+        assertThat(search.wallTimeOf(31_000), is(equalTo(22_000L)));
+        assertThat(search.speedAt(25_000), is(closeTo(50.0, 1e-9)));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class CoordinatorTest {
+
+    @Test(timeout = 2_000L)
+    public void testWorkerArguments() throws Exception {
+        System.out.println("testWorkerArguments");
+        Config config = Config.of("-s", "http://localhost", "-w", "a:1,b:2", "-ofile", "--input", "x.data",
+                                  "--split=hash", "-S", "p99>1s/10s", "-l", "10", "-n");
+        assertThat(config.getWorkerArguments(), is(equalTo(Arrays.asList("-s", "http://localhost", "-S", "p99>1s/10s", "-n"))));
+        assertThat(config.isHashSplit(), is(true));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testTimeSlices() throws Exception {
+        System.out.println("testTimeSlices");
+        Coordinator coordinator = new Coordinator(Config.of("-s", "http://localhost", "-w", "a:1,b:2,c:3", "-X", "time:2s"));
+        assertThat(coordinator.partOf(LogLine.of("0 q=a"), 3), is(equalTo(0)));
+        assertThat(coordinator.partOf(LogLine.of("1999 q=a"), 3), is(equalTo(0)));
+        assertThat(coordinator.partOf(LogLine.of("2000 q=a"), 3), is(equalTo(1)));
+        assertThat(coordinator.partOf(LogLine.of("6500 q=a"), 3), is(equalTo(0)));
+    }
+
+    @Test(timeout = 20_000L)
+    public void testDistributedDryRun() throws Exception {
+        System.out.println("testDistributedDryRun");
+        String recording = TestFiles.recording(200, i -> ( i * 5 ) + " q=" + i);
+        File output = TestFiles.output("result-", ".ndjson");
+
+        List<String> addresses = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0 ; i < 2 ; i++) {
+            ServerSocket server = new ServerSocket(0);
+            Worker worker = new Worker(Config.of("-W", String.valueOf(server.getLocalPort())));
+            addresses.add("127.0.0.1:" + server.getLocalPort());
+            Thread thread = new Thread(() -> {
+                try (ServerSocket s = server ;
+                     Socket socket = s.accept()) {
+                    worker.serve(socket);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        int code = new Coordinator(Config.of("-s", "http://localhost", "-n", "-I", "0", "-X", "hash",
+                                             "-w", String.join(",", addresses),
+                                             "-i", recording, "-o", output.getPath())).run();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(code, is(equalTo(0)));
+        List<String> result = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        JsonNode summary = new ObjectMapper().readTree(result.get(result.size() - 1));
+        assertThat(summary.path("callStat").path("count").asLong(), is(equalTo(200L)));
+        assertThat(LogLinearHistogram.of(summary.path("histogram")).getCount(), is(equalTo(200L)));
+        assertThat(summary.path("status").path("code").asInt(), is(equalTo(0)));
+    }
+}
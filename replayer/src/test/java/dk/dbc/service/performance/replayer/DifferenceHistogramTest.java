@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class DifferenceHistogramTest {
+
+    @Test(timeout = 2_000L)
+    public void testPercentiles() throws Exception {
+        System.out.println("testPercentiles");
+        DifferenceHistogram histogram = new DifferenceHistogram(new LogLinearHistogram(1_000_000L, 3));
+        for (long value = -50 ; value < 50 ; value++) {
+            histogram.recordValue(value);
+        }
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getNegativeCount(), is(50L));
+        assertThat(histogram.getPositiveCount(), is(49L));
+        assertThat(histogram.getMin(), is(-50L));
+        assertThat(histogram.getMax(), is(49L));
+        assertThat(histogram.getMean(), is(closeTo(-0.5, 1e-9)));
+        assertThat(histogram.getValueAtPercentile(0), is(-50L));
+        assertThat(histogram.getValueAtPercentile(1), is(-50L));
+        assertThat(histogram.getValueAtPercentile(10), is(-41L));
+        assertThat(histogram.getValueAtPercentile(50), is(-1L));
+        assertThat(histogram.getValueAtPercentile(51), is(0L));
+        assertThat(histogram.getValueAtPercentile(90), is(39L));
+        assertThat(histogram.getValueAtPercentile(100), is(49L));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testOneSided() throws Exception {
+        System.out.println("testOneSided");
+        DifferenceHistogram histogram = new DifferenceHistogram(new LogLinearHistogram(1_000_000L, 3));
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+        histogram.recordValue(-300);
+        histogram.recordValue(-100);
+        DifferenceHistogram copy = histogram.copy();
+        histogram.recordValue(1000);
+        assertThat(copy.getCount(), is(2L));
+        assertThat(copy.getMin(), is(-300L));
+        assertThat(copy.getMax(), is(-100L));
+        assertThat(copy.getValueAtPercentile(50), is(equalTo(-300L)));
+        assertThat(copy.getValueAtPercentile(100), is(equalTo(-100L)));
+    }
+}
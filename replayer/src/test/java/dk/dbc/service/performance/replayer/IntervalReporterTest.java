@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class IntervalReporterTest {
+
+    @Test(timeout = 5_000L)
+    public void testReport() throws Exception {
+        System.out.println("testReport");
+        LogCollector collector = new LogCollector();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        collector.open(os);
+        IntervalReporter reporter = new IntervalReporter(60_000L, collector, null);
+        reporter.start();
+
+        for (int i = 0 ; i < 5 ; i++) {
+            reporter.sent(i);
+            LogCollector.LogEntry entry = LogCollector.newEntry();
+            entry.setCallDuration(10 * ( i + 1 ));
+            entry.setStatus(i == 4 ? 500 : 200);
+            collector.incrementFor(i == 4 ? "500" : "200");
+            collector.addEntry(entry);
+        }
+        reporter.sent(7); // Still running
+        reporter.report();
+        reporter.close(); // Empty interval
+        collector.close();
+
+        ObjectMapper O = new ObjectMapper();
+        JsonNode first = null;
+        JsonNode last = null;
+        for (String line : os.toString("UTF-8").split("\n")) {
+            JsonNode interval = O.readTree(line).get("interval");
+            if (interval != null) {
+                if (first == null)
+                    first = interval;
+                last = interval;
+            }
+        }
+        assertThat(first.get("sent").asLong(), is(equalTo(6L)));
+        assertThat(first.get("completed").asLong(), is(equalTo(5L)));
+        assertThat(first.get("inFlight").asLong(), is(equalTo(1L)));
+        assertThat(first.get("maxLag").asLong(), is(equalTo(7L)));
+        assertThat(first.get("p50").asDouble(), is(closeTo(30.0, 30.0 * 0.001)));
+        assertThat(first.get("max").asDouble(), is(equalTo(50.0)));
+        assertThat(first.get("errors").asLong(), is(equalTo(1L)));
+        assertThat(first.get("counter").get("200").asLong(), is(equalTo(4L)));
+
+        assertThat(last.get("completed").asLong(), is(equalTo(0L)));
+        assertThat(last.get("inFlight").asLong(), is(equalTo(1L)));
+        assertThat(last.has("counter"), is(true));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class LoadProfileTest {
+
+    @Test(timeout = 2_000L)
+    public void testConstant() throws Exception {
+        System.out.println("testConstant");
+        LoadProfile profile = LoadProfile.constant(200);
+        assertThat(profile.wallTimeOf(0), is(equalTo(0L)));
+        assertThat(profile.wallTimeOf(1000), is(equalTo(500L)));
+        assertThat(profile.wallTimeOf(3_600_000), is(equalTo(1_800_000L)));
+        assertThat(profile.speedAt(1_000_000), is(closeTo(200.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testRamp() throws Exception {
+        System.out.println("testRamp");
+        LoadProfile profile = LoadProfile.of("100%-300%:10s");
+        // recording position = x + x^2 / 10000
+        assertThat(profile.wallTimeOf(7_500), is(equalTo(5_000L)));
+        assertThat(profile.wallTimeOf(20_000), is(equalTo(10_000L)));
+        assertThat(profile.speedAt(5_000), is(closeTo(200.0, 1e-9)));
+        // Holds 300% after the profile
+        assertThat(profile.wallTimeOf(23_000), is(equalTo(11_000L)));
+        assertThat(profile.speedAt(60_000), is(closeTo(300.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStepsAndPause() throws Exception {
+        System.out.println("testStepsAndPause");
+        LoadProfile profile = LoadProfile.of("100:1s\n# Pause\n0:1s\n400:1s");
+        assertThat(profile.toString(), is(equalTo("100:1s,0:1s,400:1s")));
+        assertThat(profile.wallTimeOf(1_000), is(equalTo(1_000L)));
+        assertThat(profile.wallTimeOf(1_400), is(equalTo(2_100L)));
+        assertThat(profile.wallTimeOf(5_000), is(equalTo(3_000L)));
+        assertThat(profile.wallTimeOf(5_400), is(equalTo(3_100L)));
+        assertThat(profile.speedAt(1_500), is(closeTo(0.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testMonotonic() throws Exception {
+        System.out.println("testMonotonic");
+        LoadProfile profile = LoadProfile.of("100:5m,100-400:10m,400:10m,400-50:5m");
+        long previous = 0;
+        for (long offset = 0 ; offset < 10_000_000 ; offset += 997) {
+            long wallTime = profile.wallTimeOf(offset);
+            assertThat(wallTime >= previous, is(true));
+            previous = wallTime;
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStoppedForever() throws Exception {
+        System.out.println("testStoppedForever");
+        LoadProfile profile = LoadProfile.of("100:1s,100-0:1s");
+        assertThat(profile.wallTimeOf(1_500), is(equalTo(2_000L)));
+        assertThat(profile.wallTimeOf(1_501), is(equalTo(Long.MAX_VALUE)));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testInvalid() throws Exception {
+        System.out.println("testInvalid");
+        LoadProfile.of("100%/5m");
+    }
+}
@@ -22,16 +22,21 @@ package dk.dbc.service.performance.replayer;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Set;
 
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
@@ -47,6 +52,7 @@ public class LogCollectorTest {
             LogCollector.LogEntry logEntry = LogCollector.newEntry();
             logEntry.setCallDuration(duration);
             logEntry.setQuery( "a-query: duration=" + duration);
+            logEntry.setResponse(duration * 100, duration / 10);
             collector.addEntry(logEntry);
         }
     }
@@ -65,11 +71,26 @@ public class LogCollectorTest {
     @Test(timeout = 2_000L)
     public void testCalculatePercentiles() throws Exception {
         System.out.println("testCalculatePercentiles");
-        Percentile pc = collector.calculatePercentiles();
+        Map<String, Double> pc = collector.calculatePercentiles();
 
-        assertThat(pc.getData().length, is(equalTo(3)));
-        assertThat(pc.evaluate(50), is(equalTo(20D)));
-        assertThat(pc.evaluate(100), is(equalTo(30D)));
+        assertThat(collector.getCallTimeHistogram().getCount(), is(equalTo(3L)));
+        assertThat(pc.get("percentile 50"), is(closeTo(20.0, 20.0 * 0.001)));
+        assertThat(pc.get("percentile 99.9"), is(equalTo(30.0)));
+        assertThat(pc.get("max"), is(equalTo(30.0)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testCalculateTransferStats() throws Exception {
+        System.out.println("testCalculateTransferStats");
+        Map transfer = collector.calculateTransferStats();
+
+        assertThat(transfer.get("bytes"), is(equalTo(6000L)));
+        assertThat(transfer.get("bytesPerSecond"), is(equalTo(100000L)));
+        LongSummaryStatistics size = (LongSummaryStatistics) transfer.get("size");
+        assertThat(size.getMax(), is(equalTo(3000L)));
+        LongSummaryStatistics download = (LongSummaryStatistics) transfer.get("downloadTime");
+        assertThat(download.getSum(), is(equalTo(6L)));
+        assertThat((Double) transfer.get("durationSizeCorrelation"), is(closeTo(1.0, 1e-9)));
     }
 
     @Test(timeout = 2_000L)
@@ -95,5 +116,264 @@ public class LogCollectorTest {
 
         Double avg = stats.get("average").asDouble();
         assertThat(avg, is(equalTo(20.0)));
+
+        JsonNode transfer = obj.get("transfer");
+        assertThat(transfer.get("bytes").asLong(), is(equalTo(6000L)));
+        assertThat(transfer.get("sizePercentiles").get("percentile 50").asDouble(), is(equalTo(2000.0)));
+
+        LogLinearHistogram histogram = LogLinearHistogram.of(obj.get("histogram"));
+        assertThat(histogram.getCount(), is(equalTo(3L)));
+        assertThat(histogram.getMax(), is(equalTo(30_000L)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testMerge() throws Exception {
+        System.out.println("testMerge");
+        LogCollector total = new LogCollector();
+        total.merge(collector.export());
+        total.merge(collector.export());
+
+        LongSummaryStatistics stat = total.calculateStats();
+        assertThat(stat.getCount(), is(equalTo(6L)));
+        assertThat(stat.getSum(), is(equalTo(120L)));
+        assertThat(stat.getMin(), is(equalTo(10L)));
+        assertThat(stat.getMax(), is(equalTo(30L)));
+        assertThat(total.getCallTimeHistogram().getCount(), is(equalTo(6L)));
+        assertThat(total.calculateTransferStats().get("bytes"), is(equalTo(12000L)));
+        assertThat((Double) total.calculateTransferStats().get("durationSizeCorrelation"), is(closeTo(1.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSummaryOf() throws Exception {
+        System.out.println("testSummaryOf");
+        LongSummaryStatistics stat = LogCollector.summaryOf(1_000_003L, 5_000_000_123L, 7L, 1_000_000L);
+        assertThat(stat.getCount(), is(equalTo(1_000_003L)));
+        assertThat(stat.getSum(), is(equalTo(5_000_000_123L)));
+        assertThat(stat.getMin(), is(equalTo(7L)));
+        assertThat(stat.getMax(), is(equalTo(1_000_000L)));
+        assertThat(LogCollector.summaryOf(1, 5, 5, 5).getSum(), is(equalTo(5L)));
+        assertThat(LogCollector.summaryOf(0, 0, 0, 0).getCount(), is(equalTo(0L)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSourceStats() throws Exception {
+        System.out.println("testSourceStats");
+        LogCollector mixed = new LogCollector();
+        for (String source : asList("search", "suggest", "suggest")) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setCallDuration(source.length());
+            logEntry.setSource(source);
+            logEntry.setStatus(source.equals("search") ? 500 : 200);
+            mixed.addEntry(logEntry);
+        }
+        Map<String, Map<String, Object>> sources = mixed.calculateSourceStats();
+        assertThat(sources.keySet(), is(equalTo(new HashSet<>(asList("search", "suggest")))));
+        assertThat(sources.get("suggest").get("count"), is(equalTo(2L)));
+        assertThat(sources.get("search").get("errors"), is(equalTo(1L)));
+        assertThat(sources.get("search").get("max"), is(equalTo(6.0)));
+        assertThat(collector.calculateSourceStats().isEmpty(), is(true));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testAmplificationStats() throws Exception {
+        System.out.println("testAmplificationStats");
+        LogCollector amplified = new LogCollector();
+        for (int copy : new int[] {0, 1, 2, 0, 1, 2}) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setCallDuration(copy == 0 ? 100 : 2);
+            logEntry.setCopy(copy);
+            amplified.addEntry(logEntry);
+        }
+        Map<String, Object> stats = amplified.calculateAmplificationStats();
+        assertThat(stats.get("lines"), is(equalTo(2L)));
+        assertThat(stats.get("requests"), is(equalTo(6L)));
+        assertThat(((Map) stats.get("originals")).get("max"), is(equalTo(100.0)));
+        assertThat(((Map) stats.get("copies")).get("count"), is(equalTo(4L)));
+        assertThat(((Map) stats.get("copies")).get("max"), is(equalTo(2.0)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testComparisonStats() throws Exception {
+        System.out.println("testComparisonStats");
+        LogCollector compared = new LogCollector();
+        long[][] calls = {{100, 150}, {200, 120}, {300, 400}};
+        for (long[] call : calls) {
+            PairedCall pair = new PairedCall(compared);
+            for (int i = 1 ; i >= 0 ; i--) {
+                LogCollector.LogEntry logEntry = LogCollector.newEntry();
+                logEntry.setCallDuration(call[i]);
+                logEntry.setStatus(200);
+                logEntry.setTarget(i == 0 ? PairedCall.TARGET_A : PairedCall.TARGET_B);
+                compared.addEntry(logEntry);
+                pair.completed(logEntry);
+            }
+        }
+        PairedCall failed = new PairedCall(compared);
+        for (String target : new String[] {PairedCall.TARGET_A, PairedCall.TARGET_B}) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setCallDuration(10);
+            logEntry.setStatus(target.equals(PairedCall.TARGET_A) ? 200 : 500);
+            logEntry.setTarget(target);
+            compared.addEntry(logEntry);
+            failed.completed(logEntry);
+        }
+        Map<String, Object> stats = compared.calculateComparisonStats();
+        assertThat(((Map) stats.get("a")).get("count"), is(equalTo(4L)));
+        assertThat(((Map) stats.get("b")).get("errors"), is(equalTo(1L)));
+        assertThat(stats.get("pairs"), is(equalTo(4L)));
+        assertThat(stats.get("statusMismatches"), is(equalTo(1L)));
+        Map difference = (Map) stats.get("difference");
+        assertThat(difference.get("count"), is(equalTo(3L)));
+        assertThat(difference.get("min"), is(equalTo(-80.0)));
+        // The breakdowns have 2 significant digits
+        assertThat((Double) difference.get("p50"), is(closeTo(50.0, 0.5)));
+        assertThat(difference.get("max"), is(equalTo(100.0)));
+        assertThat(difference.get("bFaster"), is(equalTo(1L)));
+        assertThat(difference.get("aFaster"), is(equalTo(2L)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testClassStats() throws Exception {
+        System.out.println("testClassStats");
+        LogCollector classified = new LogCollector(asList(QueryClass.of("path"), QueryClass.of("param:facet=true")));
+        String[] queries = {"/search?q=a&facet=true", "/search?q=b", "/suggest?q=c", "/suggest?q=d&facet=false", "/"};
+        for (int i = 0 ; i < queries.length ; i++) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setQuery(queries[i]);
+            logEntry.setCallDuration(10 * ( i + 1 ));
+            logEntry.setStatus(i == 2 ? 500 : 200);
+            classified.addEntry(logEntry);
+        }
+        Map<String, Map<String, Object>> stats = classified.calculateClassStats();
+        assertThat(stats.keySet(), is(equalTo(new HashSet<>(asList("/", "/search", "/search facet=true", "/suggest")))));
+        assertThat(stats.get("/search facet=true").get("count"), is(equalTo(1L)));
+        assertThat(stats.get("/search facet=true").get("max"), is(equalTo(10.0)));
+        assertThat(stats.get("/suggest").get("count"), is(equalTo(2L)));
+        assertThat(stats.get("/suggest").get("errors"), is(equalTo(1L)));
+        assertThat(((Map) stats.get("/suggest").get("counter")).get("500"), is(equalTo(1L)));
+        assertThat(collector.calculateClassStats().isEmpty(), is(true));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testClassLimit() throws Exception {
+        System.out.println("testClassLimit");
+        LogCollector classified = new LogCollector(Collections.singletonList(QueryClass.of("path")));
+        for (int i = 0 ; i < 150 ; i++) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setCallDuration(10);
+            logEntry.setQuery("/p" + i + "?q=x");
+            classified.addEntry(logEntry);
+        }
+        Map<String, Map<String, Object>> stats = classified.calculateClassStats();
+        assertThat(stats.size(), is(equalTo(LogCollector.MAX_CLASSES + 1)));
+        assertThat(stats.get(QueryClass.OTHER).get("count"), is(equalTo(50L)));
+        long memory = LogCollector.classMemory(new LogLinearHistogram(LogCollector.HIGHEST_CALL_TIME, LogCollector.BREAKDOWN_PRECISION));
+        assertThat(memory * stats.size() <= LogCollector.MAX_CLASS_MEMORY, is(true));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStream() throws Exception {
+        System.out.println( "testStream" );
+        LogCollector streaming = new LogCollector();
+        streaming.addConfig(Collections.singletonMap("input", "recording.data"));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        streaming.open(os);
+        for( long duration : callDurations) {
+            LogCollector.LogEntry logEntry = LogCollector.newEntry();
+            logEntry.setCallDuration(duration);
+            logEntry.setQuery( "a-query: duration=" + duration);
+            streaming.addEntry(logEntry);
+        }
+        streaming.addRunStatus(0, "");
+        streaming.close();
+
+        String[] lines = os.toString("UTF-8").split("\n");
+        assertThat(lines.length, is(equalTo(5)));
+
+        ObjectMapper O = new ObjectMapper();
+        assertThat(O.readTree(lines[0]).get("configuration").get("input").asText(), is(equalTo("recording.data")));
+        for (int i = 1; i <= 3; i++) {
+            JsonNode logline = O.readTree(lines[i]).get("logline");
+            assertThat(logline.get("callDuration").asLong(), is(equalTo(callDurations.get(i - 1))));
+        }
+        JsonNode summary = O.readTree(lines[4]);
+        assertThat(summary.get("callStat").get("count").asLong(), is(equalTo(3L)));
+        assertThat(summary.get("status").get("code").asInt(), is(equalTo(0)));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testIdleThreadFlushed() throws Exception {
+        System.out.println( "testIdleThreadFlushed" );
+        LogCollector streaming = new LogCollector();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        streaming.open(os);
+        Thread thread = new Thread(() -> {
+            for (int i = 1; i <= 10; i++) {
+                LogCollector.LogEntry logEntry = LogCollector.newEntry();
+                logEntry.setLine(i);
+                logEntry.setCallDuration(i);
+                streaming.addEntry(logEntry);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // The chunk of the ended thread is written, and its recorder retired, by the sweep
+        while (os.toString("UTF-8").split("\n").length < 11 || streaming.getRecorderCount() > 0) {
+            Thread.sleep(50);
+        }
+        assertThat(streaming.calculateStats().getCount(), is(equalTo(10L)));
+        assertThat(streaming.calculateStats().getSum(), is(equalTo(55L)));
+        streaming.close();
+        assertThat(os.toString("UTF-8").split("\n").length, is(equalTo(12)));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testConcurrentAdd() throws Exception {
+        System.out.println( "testConcurrentAdd" );
+        LogCollector streaming = new LogCollector();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        streaming.open(os);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= 2500; i++) {
+                    LogCollector.LogEntry logEntry = LogCollector.newEntry();
+                    logEntry.setLine(thread * 2500 + i);
+                    logEntry.setCallDuration(i % 100);
+                    logEntry.setStatus(i % 10 == 0 ? 500 : 200);
+                    streaming.addEntry(logEntry);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        streaming.addStatusEntry("Stopped");
+        streaming.close();
+
+        String[] lines = os.toString("UTF-8").split("\n");
+        assertThat(lines.length, is(equalTo(1 + 10_000 + 1 + 1)));
+
+        ObjectMapper O = new ObjectMapper();
+        Set<Long> seen = new HashSet<>();
+        int errors = 0;
+        int notes = 0;
+        for (int i = 1; i <= 10_001; i++) {
+            JsonNode logline = O.readTree(lines[i]).get("logline");
+            String status = logline.get("status").asText();
+            if (status.equals("Stopped"))
+                notes++;
+            else
+                seen.add(logline.get("line").asLong());
+            if (status.equals("500"))
+                errors++;
+        }
+        assertThat(seen.size(), is(equalTo(10_000)));
+        assertThat(errors, is(equalTo(1_000)));
+        assertThat(notes, is(equalTo(1)));
+        assertThat(O.readTree(lines[10_002]).get("callStat").get("count").asLong(), is(equalTo(10_000L)));
     }
 }
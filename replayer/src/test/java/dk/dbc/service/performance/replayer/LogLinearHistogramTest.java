@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class LogLinearHistogramTest {
+
+    @Test(timeout = 2_000L)
+    public void testBuckets() throws Exception {
+        System.out.println("testBuckets");
+        for (int digits = 1 ; digits <= 5 ; digits++) {
+            LogLinearHistogram histogram = new LogLinearHistogram(Long.MAX_VALUE, digits);
+            double precision = Math.pow(10, -digits);
+            for (long value = 0 ; value < Long.MAX_VALUE / 2 ; value = value + value / 2 + 1) {
+                int bucket = histogram.bucketOf(value);
+                long highest = histogram.highestValueOf(bucket);
+                assertThat(highest >= value, is(true));
+                assertThat(highest <= value + value * precision, is(true));
+                assertThat(histogram.bucketOf(highest), is(equalTo(bucket)));
+            }
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testPercentiles() throws Exception {
+        System.out.println("testPercentiles");
+        LogLinearHistogram histogram = new LogLinearHistogram(3_600_000_000L, 3);
+        for (long value = 1 ; value <= 100_000 ; value++) {
+            histogram.recordValue(value * 10);
+        }
+        assertThat(histogram.getCount(), is(equalTo(100_000L)));
+        assertThat(histogram.getMin(), is(equalTo(10L)));
+        assertThat(histogram.getMax(), is(equalTo(1_000_000L)));
+        assertThat(histogram.getMean(), is(equalTo(500_005.0)));
+        assertAround(histogram.getValueAtPercentile(50), 500_000L, 0.001);
+        assertAround(histogram.getValueAtPercentile(99.9), 999_000L, 0.001);
+        assertAround(histogram.getValueAtPercentile(99.99), 999_900L, 0.001);
+        assertThat(histogram.getValueAtPercentile(100), is(equalTo(1_000_000L)));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testAboveHighestTrackableValue() throws Exception {
+        System.out.println("testAboveHighestTrackableValue");
+        LogLinearHistogram histogram = new LogLinearHistogram(1000, 2);
+        histogram.recordValue(5);
+        histogram.recordValue(1_000_000);
+        assertThat(histogram.getMax(), is(equalTo(1_000_000L)));
+        assertThat(histogram.getValueAtPercentile(50), is(equalTo(5L)));
+        assertThat(histogram.getValueAtPercentile(100), is(equalTo(1_000_000L)));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testConcurrentRecordAndMerge() throws Exception {
+        System.out.println("testConcurrentRecordAndMerge");
+        LogLinearHistogram shared = new LogLinearHistogram(1_000_000, 3);
+        LogLinearHistogram merged = new LogLinearHistogram(shared);
+        List<Thread> threads = new ArrayList<>();
+        List<LogLinearHistogram> perThread = new ArrayList<>();
+        for (int t = 0 ; t < 4 ; t++) {
+            LogLinearHistogram own = new LogLinearHistogram(shared);
+            perThread.add(own);
+            threads.add(new Thread(() -> {
+                for (long value = 1 ; value <= 10_000 ; value++) {
+                    shared.recordValue(value);
+                    own.recordValue(value);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        perThread.forEach(merged::add);
+
+        assertThat(shared.getCount(), is(equalTo(40_000L)));
+        assertThat(merged.getCount(), is(equalTo(40_000L)));
+        assertThat(merged.getSum(), is(equalTo(shared.getSum())));
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            assertThat(merged.getValueAtPercentile(percentile), is(equalTo(shared.getValueAtPercentile(percentile))));
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testExportAndRead() throws Exception {
+        System.out.println("testExportAndRead");
+        LogLinearHistogram histogram = new LogLinearHistogram(3_600_000_000L, 3);
+        for (long value = 1 ; value <= 1000 ; value++) {
+            histogram.recordValue(value * value);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(LogLinearHistogram.class, new HistogramSerializer());
+        mapper.registerModule(module);
+
+        String json = mapper.writeValueAsString(histogram);
+        LogLinearHistogram read = LogLinearHistogram.of(mapper.readTree(json));
+        assertThat(read.getCount(), is(equalTo(histogram.getCount())));
+        assertThat(read.getSum(), is(equalTo(histogram.getSum())));
+        assertThat(read.getMin(), is(equalTo(1L)));
+        assertThat(read.getMax(), is(equalTo(1_000_000L)));
+        assertThat(read.getValueAtPercentile(99.9), is(equalTo(histogram.getValueAtPercentile(99.9))));
+
+        read.add(histogram); // Merge with another run
+        assertThat(read.getCount(), is(equalTo(2000L)));
+        assertThat(read.getValueAtPercentile(50), is(equalTo(histogram.getValueAtPercentile(50))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testSince() throws Exception {
+        System.out.println("testSince");
+        LogLinearHistogram histogram = new LogLinearHistogram(1_000_000, 3);
+        for (long value = 1 ; value <= 100 ; value++) {
+            histogram.recordValue(value);
+        }
+        LogLinearHistogram earlier = histogram.copy();
+        for (long value = 5000 ; value < 6000 ; value++) {
+            histogram.recordValue(value);
+        }
+        LogLinearHistogram interval = histogram.since(earlier);
+        assertThat(interval.getCount(), is(equalTo(1000L)));
+        assertThat(interval.getMin(), is(equalTo(5000L)));
+        assertThat(interval.getMax(), is(equalTo(5999L)));
+        assertAround(interval.getValueAtPercentile(50), 5500L, 0.001);
+        assertThat(histogram.since(histogram.copy()).getCount(), is(equalTo(0L)));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testAddDifferentLayout() throws Exception {
+        System.out.println("testAddDifferentLayout");
+        new LogLinearHistogram(1000, 2).add(new LogLinearHistogram(1000, 3));
+    }
+
+    private static void assertAround(long actual, long expected, double precision) {
+        assertThat(Math.abs(actual - expected) <= expected * precision, is(true));
+    }
+}
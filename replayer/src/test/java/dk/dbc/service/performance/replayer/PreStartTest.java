@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+public class PreStartTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private AtomicInteger heads;
+
+    @Before
+    public void setUp() throws Exception {
+        heads = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD"))
+                heads.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test(timeout = 20_000L)
+    @SuppressWarnings("unchecked")
+    public void testRun() throws Exception {
+        System.out.println("testRun");
+        Map<String, Object> stats = new PreStart(Config.of("-s", baseUrl, "-E", "3")).run();
+
+        Map<String, Object> jit = (Map<String, Object>) stats.get("jit");
+        assertThat((Long) jit.get("calls"), greaterThanOrEqualTo(2000L));
+        Map<String, Object> connections = (Map<String, Object>) ( (Map<String, Object>) stats.get("connections") ).get(baseUrl);
+        assertThat(connections.get("opened"), is(equalTo(3L)));
+        assertThat(connections.get("failed"), is(equalTo(0L)));
+        assertThat(heads.get(), is(equalTo(3)));
+    }
+
+    @Test(timeout = 20_000L, expected = IOException.class)
+    public void testUnreachable() throws Exception {
+        System.out.println("testUnreachable");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        new PreStart(Config.of("-s", "http://127.0.0.1:" + port + "/", "-E", "2")).run();
+    }
+}
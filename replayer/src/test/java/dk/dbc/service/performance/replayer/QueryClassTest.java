@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class QueryClassTest {
+
+    @Test(timeout = 2_000L)
+    public void testLabels() throws Exception {
+        System.out.println("testLabels");
+        assertThat(QueryClass.of("path").labelOf("/api/doc/12345?q=a"), is("/api/doc/{n}"));
+        assertThat(QueryClass.of("path:1").labelOf("/api/doc/12345?q=a"), is("/api"));
+        assertThat(QueryClass.of("path").labelOf("?q=a"), is("/"));
+        assertThat(QueryClass.of("path").labelOf("q=a&facet=true"), is("/"));
+        assertThat(QueryClass.of("param:facet").labelOf("q=a&facet=true"), is("facet"));
+        assertThat(QueryClass.of("param:facet").labelOf("/select?q=a&facet"), is("facet"));
+        assertThat(QueryClass.of("param:facet=true").labelOf("/select?q=a&facet=true"), is("facet=true"));
+        assertThat(QueryClass.of("param:facet=true").labelOf("/select?q=a&facet=false"), is(nullValue()));
+        assertThat(QueryClass.of("param:facet").labelOf("/select/facet"), is(nullValue()));
+        assertThat(QueryClass.of("match:export=rows=\\d{4,}").labelOf("/select?rows=99999"), is("export"));
+        assertThat(QueryClass.of("match:export=rows=\\d{4,}").labelOf("/select?rows=10"), is(nullValue()));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testClassOf() throws Exception {
+        System.out.println("testClassOf");
+        List<QueryClass> rules = Arrays.asList(QueryClass.of("path"),
+                                               QueryClass.of("match:export=rows=\\d{4,}"),
+                                               QueryClass.of("match:large=rows=\\d{3,}"),
+                                               QueryClass.of("param:facet=true"));
+        assertThat(QueryClass.classOf(rules, "/select?rows=99999&facet=true"), is(equalTo("/select export facet=true")));
+        assertThat(QueryClass.classOf(rules, "/select?rows=500"), is(equalTo("/select large")));
+        assertThat(QueryClass.classOf(Arrays.asList(QueryClass.of("param:facet")), "/select?rows=500"), is(equalTo(QueryClass.OTHER)));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testParseMatchWithoutLabel() throws Exception {
+        System.out.println("testParseMatchWithoutLabel");
+        QueryClass.of("match:export");
+    }
+}
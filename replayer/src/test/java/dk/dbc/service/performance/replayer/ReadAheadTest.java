@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReadAheadTest {
+
+    private static List<Recording> recording(int lines) throws Exception {
+        return Collections.singletonList(Recording.of(TestFiles.recording(lines, i -> i + " q=" + i)));
+    }
+
+    private static List<String> readAll(ReadAhead lines, long pauseEvery) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (LogLine line = lines.next() ; line != null ; line = lines.next()) {
+            result.add(line.getQuery());
+            if (pauseEvery > 0 && result.size() % pauseEvery == 0)
+                Thread.sleep(1);
+        }
+        assertThat(lines.next(), is(nullValue()));
+        return result;
+    }
+
+    private static List<String> expected(int lines) {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0 ; i < lines ; i++) {
+            expected.add("q=" + i);
+        }
+        return expected;
+    }
+
+    @Test(timeout = 5_000L)
+    public void testInOrder() throws Exception {
+        System.out.println("testInOrder");
+        try (RecordingReader reader = new RecordingReader(recording(20000)) ;
+             ReadAhead lines = new ReadAhead(new Amplifier(reader, 1, 0, null, null), 64)) {
+            assertThat(readAll(lines, 0), is(equalTo(expected(20000))));
+            assertThat(lines.getStatistics().get("size"), is(equalTo(64)));
+        }
+    }
+
+    @Test(timeout = 5_000L)
+    public void testStalls() throws Exception {
+        System.out.println("testStalls");
+        try (RecordingReader reader = new RecordingReader(recording(100)) ;
+             ReadAhead lines = new ReadAhead(new Amplifier(reader, 1, 0, null, null), 3)) {
+            assertThat(readAll(lines, 10), is(equalTo(expected(100))));
+            Map<String, Object> statistics = lines.getStatistics();
+            assertThat(statistics.get("size"), is(equalTo(4)));
+            assertThat((Long) statistics.get("stalls"), greaterThan(0L));
+        }
+    }
+
+    @Test(timeout = 5_000L)
+    public void testWithoutThread() throws Exception {
+        System.out.println("testWithoutThread");
+        try (RecordingReader reader = new RecordingReader(recording(10)) ;
+             ReadAhead lines = new ReadAhead(new Amplifier(reader, 1, 0, null, null), 0)) {
+            assertThat(readAll(lines, 0), is(equalTo(expected(10))));
+        }
+    }
+}
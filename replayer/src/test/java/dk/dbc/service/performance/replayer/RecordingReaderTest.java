@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RecordingReaderTest {
+
+    private static List<String> readAll(Recording... recordings) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (RecordingReader reader = new RecordingReader(Arrays.asList(recordings))) {
+            for (LogLine line = reader.next() ; line != null ; line = reader.next()) {
+                lines.add(line.getTimeDelta() + " " + line.getQuery() + " " + line.getSource() + ":" + line.getLine());
+            }
+        }
+        return lines;
+    }
+
+    @Test(timeout = 2_000L)
+    public void testParse() throws Exception {
+        System.out.println("testParse");
+        Recording recording = Recording.of("search=/tmp/search.data:200:50");
+        assertThat(recording.getTag(), is(equalTo("search")));
+        assertThat(recording.getFile(), is(equalTo("/tmp/search.data")));
+        assertThat(recording.getSpeed(), is(closeTo(200.0, 1e-9)));
+        assertThat(recording.getWeight(), is(closeTo(50.0, 1e-9)));
+
+        recording = Recording.of("/tmp/suggest.data");
+        assertThat(recording.getTag(), is(equalTo("suggest")));
+        assertThat(recording.isTagged(), is(false));
+        assertThat(recording.getSpeed(), is(closeTo(100.0, 1e-9)));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testInvalidWeight() throws Exception {
+        System.out.println("testInvalidWeight");
+        Recording.of("x.data:100:150");
+    }
+
+    @Test(timeout = 2_000L)
+    public void testMerge() throws Exception {
+        System.out.println("testMerge");
+        String a = TestFiles.recording("0 q=a0", "# comment", "100 q=a1", "300 q=a2");
+        String b = TestFiles.recording("50 q=b0", "100 q=b1", "400 q=b2");
+        assertThat(readAll(Recording.of("a=" + a), Recording.of("b=" + b + ":200")),
+                   is(equalTo(Arrays.asList("0 q=a0 a:1", "25 q=b0 b:1", "50 q=b1 b:2",
+                                            "100 q=a1 a:3", "200 q=b2 b:3", "300 q=a2 a:4"))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testWeight() throws Exception {
+        System.out.println("testWeight");
+        String a = TestFiles.recording("0 q=0", "10 q=1", "20 q=2", "30 q=3", "40 q=4", "50 q=5");
+        assertThat(readAll(Recording.of(a + ":100:50")),
+                   is(equalTo(Arrays.asList("10 q=1 null:2", "30 q=3 null:4", "50 q=5 null:6"))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testLoop() throws Exception {
+        System.out.println("testLoop");
+        String a = TestFiles.recording("1000 q=0", "1100 q=1", "1300 q=2");
+        List<String> lines = new ArrayList<>();
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(a)), true, 1700, 0L)) {
+            for (LogLine line = reader.next() ; line != null ; line = reader.next()) {
+                lines.add(line.getTimeDelta() + " " + line.getQuery() + " " + line.getLine());
+            }
+        }
+        assertThat(lines, is(equalTo(Arrays.asList("1000 q=0 1", "1100 q=1 2", "1300 q=2 3",
+                                                   "1450 q=0 1", "1550 q=1 2"))));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testLoopEmpty() throws Exception {
+        System.out.println("testLoopEmpty");
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(TestFiles.recording("# nothing"))), true, Long.MAX_VALUE, 0L)) {
+            assertThat(reader.next(), is(nullValue()));
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStartAt() throws Exception {
+        System.out.println("testStartAt");
+        List<String> text = new ArrayList<>();
+        text.add("#{\"started\":\"header\"}");
+        for (int i = 0 ; i < 60 ; i++) {
+            text.add(( i * 100 ) + " q=" + i);
+        }
+        String a = TestFiles.recording(text.toArray(new String[0]));
+        List<String> lines = new ArrayList<>();
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(a)), false, 250, 3050)) {
+            for (LogLine line = reader.next() ; line != null ; line = reader.next()) {
+                lines.add(line.getTimeDelta() + " " + line.getQuery() + " " + line.getLine());
+            }
+        }
+        assertThat(lines, is(equalTo(Arrays.asList("50 q=31 33", "150 q=32 34", "250 q=33 35"))));
+
+        File cache = new File(a + ".idx");
+        cache.deleteOnExit();
+        assertThat(cache.isFile(), is(true));
+        RecordingIndex index = RecordingIndex.of(a);
+        assertThat(index.size(), is(6));
+        int entry = index.entryBefore(3050);
+        assertThat(index.getTime(entry), is(3000L));
+        assertThat(index.getLines(entry), is(31L));
+        assertThat(index.entryBefore(0), is(-1));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testEmpty() throws Exception {
+        System.out.println("testEmpty");
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(TestFiles.recording())))) {
+            assertThat(reader.next(), is(nullValue()));
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStarted() throws Exception {
+        System.out.println("testStarted");
+        String a = TestFiles.recording("#{\"started\":\"2026-10-19T10:15:30.250Z\",\"from\":\"kafka:topic\"}", "0 q=a", "10 q=b");
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(a)))) {
+            assertThat(reader.getStarted(), is(Instant.parse("2026-10-19T10:15:30.250Z")));
+            assertThat(reader.next().getQuery(), is("q=a"));
+        }
+        String b = TestFiles.recording("0 q=a");
+        try (RecordingReader reader = new RecordingReader(Collections.singletonList(Recording.of(b)))) {
+            assertThat(reader.getStarted(), nullValue());
+        }
+        assertThat(RecordingReader.startedOf("#{\"started\":\"header\"}"), nullValue());
+        assertThat(RecordingReader.startedOf("# comment"), nullValue());
+    }
+
+    @Test(timeout = 2_000L)
+    public void testStdin() throws Exception {
+        System.out.println("testStdin");
+        InputStream stdin = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream("#{\"started\":\"2026-10-19T10:15:30Z\"}\n0 q=a\n10 q=b\n".getBytes(StandardCharsets.UTF_8)));
+            Recording recording = Recording.of("-");
+            assertThat(recording.isStdin(), is(true));
+            assertThat(recording.exists(), is(true));
+            assertThat(recording.getTag(), is("stdin"));
+            List<String> lines = new ArrayList<>();
+            try (RecordingReader reader = new RecordingReader(Collections.singletonList(recording), false, Long.MAX_VALUE, 5)) {
+                for (LogLine line = reader.next() ; line != null ; line = reader.next()) {
+                    lines.add(line.getTimeDelta() + " " + line.getQuery());
+                }
+                assertThat(reader.getStarted(), is(Instant.parse("2026-10-19T10:15:30Z")));
+            }
+            assertThat(lines, is(equalTo(Arrays.asList("5 q=b"))));
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+
+    @Test(timeout = 20_000L)
+    public void testLive() throws Exception {
+        System.out.println("testLive");
+        InputStream stdin = System.in;
+        PipedOutputStream recorder = new PipedOutputStream();
+        File output = TestFiles.output("result-", ".ndjson");
+        // Started 1s ago, replayed 2.5s behind: the replay starts in 1.5s
+        Instant started = Instant.now().minusMillis(1_000);
+        Thread writer = new Thread(() -> {
+            try (Writer w = new OutputStreamWriter(recorder, StandardCharsets.UTF_8)) {
+                w.write("#{\"started\":\"" + started + "\"}\n100 q=a\n150 q=b\n");
+                w.flush();
+                Thread.sleep(2_500);
+                w.write("300 q=c\n"); // Scheduled 1.8s in, written 2.5s in
+            } catch (IOException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        try {
+            System.setIn(new PipedInputStream(recorder));
+            writer.start();
+            int code = new Replayer(Config.of("-s", "http://localhost", "-n", "-I", "0", "-Y", "2500ms",
+                                              "-i", "-", "-o", output.getPath())).run();
+            writer.join();
+            assertThat(code, is(equalTo(0)));
+        } finally {
+            System.setIn(stdin);
+        }
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        JsonNode live = new ObjectMapper().readTree(lines.get(lines.size() - 1)).path("live");
+        assertThat(live.path("started").asText(), is(equalTo(started.toString())));
+        assertThat(live.path("delay").asLong(), is(equalTo(2_500L)));
+        assertThat(live.path("requests").asLong(), is(equalTo(3L)));
+        assertThat(live.path("late").asLong(), is(equalTo(1L)));
+        assertThat(live.path("maxLate").asLong(), is(greaterThanOrEqualTo(500L)));
+        assertThat(live.path("maxLate").asLong(), is(lessThan(10_000L)));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testLiveIdle() throws Exception {
+        System.out.println("testLiveIdle");
+        InputStream stdin = System.in;
+        PipedOutputStream recorder = new PipedOutputStream();
+        File output = TestFiles.output("result-", ".ndjson");
+        CountDownLatch replayed = new CountDownLatch(1);
+        Instant started = Instant.now().minusMillis(2_000);
+        // The recorder goes quiet without closing the pipe, until the replay has ended
+        Thread writer = new Thread(() -> {
+            try (Writer w = new OutputStreamWriter(recorder, StandardCharsets.UTF_8)) {
+                w.write("#{\"started\":\"" + started + "\"}\n0 q=a\n");
+                w.flush();
+                replayed.await();
+            } catch (IOException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        try {
+            System.setIn(new PipedInputStream(recorder));
+            writer.start();
+            int code = new Replayer(Config.of("-s", "http://localhost", "-n", "-I", "0", "-Y", "2500ms", "-d", "1s",
+                                              "-i", "-", "-o", output.getPath())).run();
+            assertThat(code, is(equalTo(0)));
+        } finally {
+            replayed.countDown();
+            writer.join();
+            System.setIn(stdin);
+        }
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        JsonNode live = new ObjectMapper().readTree(lines.get(lines.size() - 1)).path("live");
+        assertThat(live.path("requests").asLong(), is(equalTo(1L)));
+    }
+}
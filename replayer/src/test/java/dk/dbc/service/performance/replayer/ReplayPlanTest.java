@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReplayPlanTest {
+
+    private static ReplayPlan plan(List<Recording> recordings, int factor, long maxLines, long maxRequests) throws Exception {
+        try (RecordingReader reader = new RecordingReader(recordings)) {
+            return ReplayPlan.of(new Amplifier(reader, factor, 0, null, null), maxLines, maxRequests);
+        }
+    }
+
+    @Test(timeout = 2_000L)
+    public void testPlan() throws Exception {
+        System.out.println("testPlan");
+        String a = TestFiles.recording("0 q=æble", "# comment", "20 q=b");
+        String b = TestFiles.recording("10 q=c");
+        ReplayPlan plan = plan(Arrays.asList(Recording.of("a=" + a), Recording.of("b=" + b)), 1, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertThat(plan.size(), is(3));
+        assertThat(plan.isTruncated(), is(false));
+        assertThat(plan.getOffset(1), is(10L));
+        assertThat(plan.getQuery(0), is(equalTo("q=æble")));
+        assertThat(plan.getQuery(2), is(equalTo("q=b")));
+        LogLine line = plan.logLine(2);
+        assertThat(line.getSource(), is(equalTo("a")));
+        assertThat(line.getLine(), is(3L));
+        LogCollector.LogEntry entry = plan.logEntry(1, 7);
+        assertThat(entry.getSource(), is(equalTo("b")));
+        assertThat(entry.getOriginalTimeDelta(), is(10L));
+        assertThat(entry.getCallDelay(), is(7L));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testDispatch() throws Exception {
+        System.out.println("testDispatch");
+        ReplayPlan plan = plan(Arrays.asList(Recording.of(TestFiles.recording("0 q=a", "10 q=b", "20 q=c"))), 1, Long.MAX_VALUE, Long.MAX_VALUE);
+        plan.dispatched(0, 5, true);
+        plan.dispatched(1, 0, false);
+        plan.dispatched(2, 3, false);
+        assertThat(plan.take(), is(0));
+        assertThat(plan.take(), is(1));
+        assertThat(plan.take(), is(2));
+        assertThat(plan.isWarmUp(0), is(true));
+        assertThat(plan.isWarmUp(1), is(false));
+        assertThat(plan.getCallDelay(0), is(5L));
+        assertThat(plan.getCallDelay(2), is(3L));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testLimits() throws Exception {
+        System.out.println("testLimits");
+        String[] lines = new String[3000];
+        for (int i = 0 ; i < lines.length ; i++) {
+            lines[i] = i + " q=" + i;
+        }
+        List<Recording> recording = Arrays.asList(Recording.of(TestFiles.recording(lines)));
+
+        ReplayPlan plan = plan(recording, 2, 2000, Long.MAX_VALUE);
+        assertThat(plan.size(), is(4000));
+        assertThat(plan.isTruncated(), is(true));
+        assertThat(plan.logLine(3999).getCopy(), is(1));
+        assertThat(plan.getQuery(3999), is(equalTo("q=1999")));
+        assertThat(plan.logLine(0).getSource(), is(nullValue()));
+
+        plan = plan(recording, 1, Long.MAX_VALUE, 10);
+        assertThat(plan.size(), is(10));
+        assertThat(plan.isTruncated(), is(false));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ResultComparisonTest {
+
+    /**
+     * Write a result of loglines, call time (ms) 10-109, scaled by factor,
+     * with every errorEvery'th call failing
+     */
+    private static String result(double factor, int errorEvery) throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("{\"configuration\":{}}");
+        for (int i = 1 ; i <= 2000 ; i++) {
+            String status = i % errorEvery == 0 ? "500" : "200";
+            lines.add("{\"logline\":{\"line\":" + i + ",\"callDuration\":" + Math.round(( 10 + i % 100 ) * factor) +
+                      ",\"query\":\"q=" + i + "\",\"status\":\"" + status + "\"}}");
+        }
+        return TestFiles.file("result-", ".ndjson", lines).getPath();
+    }
+
+    private static int run(String... args) throws Exception {
+        File output = TestFiles.output("comparison-", ".json");
+        List<String> list = new ArrayList<>(Arrays.asList("-o", output.getPath()));
+        list.addAll(Arrays.asList(args));
+        return new ResultComparison(CompareConfig.of(list.toArray(new String[list.size()]))).run();
+    }
+
+    @Test(timeout = 2_000L)
+    public void testParseGate() throws Exception {
+        System.out.println("testParseGate");
+        RegressionGate gate = RegressionGate.of("p99.9>10%:ci");
+        assertThat(gate.getMetric(), is(RegressionGate.Metric.PERCENTILE));
+        assertThat(gate.getPercentile(), is(99.9));
+        assertThat(gate.isRelative(), is(true));
+        assertThat(gate.isConfident(), is(true));
+        assertThat(gate.isExceededBy(10.5), is(true));
+        assertThat(gate.isExceededBy(10.0), is(false));
+
+        gate = RegressionGate.of("mean>0.5s");
+        assertThat(gate.getMetric(), is(RegressionGate.Metric.MEAN));
+        assertThat(gate.isRelative(), is(false));
+        assertThat(gate.getThreshold(), is(500.0));
+
+        gate = RegressionGate.of("errors>1%");
+        assertThat(gate.getMetric(), is(RegressionGate.Metric.ERRORS));
+        assertThat(gate.isRelative(), is(false));
+        assertThat(gate.isConfident(), is(false));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testParseErrorsAsDuration() throws Exception {
+        System.out.println("testParseErrorsAsDuration");
+        RegressionGate.of("errors>2ms");
+    }
+
+    @Test(timeout = 2_000L)
+    public void testTests() throws Exception {
+        System.out.println("testTests");
+        LogLinearHistogram a = new LogLinearHistogram(1_000_000L, 3);
+        LogLinearHistogram b = new LogLinearHistogram(1_000_000L, 3);
+        for (int i = 0 ; i < 1000 ; i++) {
+            a.recordValue(1000 + i);
+            b.recordValue(1000 + i);
+        }
+        Map<String, Object> mannWhitney = ResultComparison.mannWhitney(a, b);
+        assertThat((Double) mannWhitney.get("probabilitySlower"), is(closeTo(0.5, 1e-9)));
+        assertThat((Double) mannWhitney.get("p"), is(closeTo(1.0, 1e-6)));
+        Map<String, Object> kolmogorovSmirnov = ResultComparison.kolmogorovSmirnov(a, b);
+        assertThat(kolmogorovSmirnov.get("d"), is(equalTo(0.0)));
+        assertThat(kolmogorovSmirnov.get("p"), is(equalTo(1.0)));
+
+        LogLinearHistogram c = new LogLinearHistogram(1_000_000L, 3);
+        for (int i = 0 ; i < 1000 ; i++) {
+            c.recordValue(1100 + i);
+        }
+        mannWhitney = ResultComparison.mannWhitney(a, c);
+        assertThat((Double) mannWhitney.get("probabilitySlower"), is(closeTo(0.595, 0.001)));
+        assertThat((Double) mannWhitney.get("p"), is(lessThan(1e-6)));
+        kolmogorovSmirnov = ResultComparison.kolmogorovSmirnov(a, c);
+        assertThat((Double) kolmogorovSmirnov.get("d"), is(closeTo(0.1, 0.001)));
+        assertThat((Double) kolmogorovSmirnov.get("p"), is(lessThan(1e-3)));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testGates() throws Exception {
+        System.out.println("testGates");
+        String baseline = result(1.0, 100);
+        String same = result(1.0, 100);
+        String slower = result(1.2, 100);
+        String failing = result(1.0, 20);
+
+        assertThat(run("-g", "p99>10%:ci", "-g", "errors>1%", baseline, same), is(Replayer.Status.Code.OK.getValue()));
+        assertThat(run("-g", "p99>10%:ci", baseline, slower), is(Replayer.Status.Code.REGRESSION.getValue()));
+        assertThat(run("-g", "p99>30ms", baseline, slower), is(Replayer.Status.Code.OK.getValue()));
+        assertThat(run("-g", "errors>1%", baseline, same, failing), is(Replayer.Status.Code.REGRESSION.getValue()));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testChanges() throws Exception {
+        System.out.println("testChanges");
+        List<ResultFile> results = new ArrayList<>();
+        LogLinearHistogram layout = new LogLinearHistogram(LogCollector.HIGHEST_CALL_TIME, Config.DEFAULT_PRECISION);
+        results.add(ResultFile.of(result(1.0, 100), layout));
+        results.add(ResultFile.of(result(1.2, 100), layout));
+        assertThat(results.get(0).getCalls(), is(2000L));
+        assertThat(results.get(0).getErrors(), is(20L));
+
+        Map<String, Object> comparison = new ResultComparison(CompareConfig.of("-g", "mean>5%", "a", "b")).compare(results);
+        assertThat(comparison.get("passed"), is(false));
+        Map<?, ?> result = (Map<?, ?>) ( (List<?>) comparison.get("results") ).get(0);
+        Map<?, ?> mean = (Map<?, ?>) ( (Map<?, ?>) result.get("changes") ).get("mean");
+        assertThat((Double) mean.get("baseline"), is(closeTo(59.5, 0.01)));
+        assertThat((Double) mean.get("relative"), is(closeTo(20.0, 0.5)));
+        assertThat((Double) mean.get("lowRelative"), is(greaterThan(15.0)));
+        assertThat((Double) mean.get("highRelative"), is(lessThan(25.0)));
+        Map<?, ?> errors = (Map<?, ?>) ( (Map<?, ?>) result.get("changes") ).get("errors");
+        assertThat((Double) errors.get("change"), is(closeTo(0.0, 1e-9)));
+    }
+}
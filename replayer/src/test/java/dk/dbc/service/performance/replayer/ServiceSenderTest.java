@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ServiceSenderTest {
+
+    private static final int BODY_SIZE = 300_000;
+
+    private HttpServer server;
+    private String baseUrl;
+    private volatile String requested;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requested = exchange.getRequestURI().toString();
+            int code = exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200;
+            exchange.sendResponseHeaders(code, BODY_SIZE);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(new byte[BODY_SIZE]);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test(timeout = 5_000L)
+    public void testSendDrainsBody() throws Exception {
+        System.out.println("testSendDrainsBody");
+        LogCollector collector = new LogCollector();
+        LogCollector.LogEntry entry = LogCollector.newEntry();
+
+        new ServiceSender(baseUrl, collector).send(LogLine.of("0 /select?q=x"), entry);
+
+        assertThat(entry.getStatus(), is(equalTo("200")));
+        assertThat(entry.getResponseSize(), is(equalTo((long) BODY_SIZE)));
+    }
+
+    @Test(timeout = 5_000L)
+    public void testSendDrainsErrorBody() throws Exception {
+        System.out.println("testSendDrainsErrorBody");
+        LogCollector collector = new LogCollector();
+        LogCollector.LogEntry entry = LogCollector.newEntry();
+
+        new ServiceSender(baseUrl, collector).send(LogLine.of("0 /missing"), entry);
+
+        assertThat(entry.getStatus(), is(equalTo("404")));
+        assertThat(entry.getResponseSize(), is(equalTo((long) BODY_SIZE)));
+    }
+
+    @Test(timeout = 5_000L)
+    public void testSendResolvesQuery() throws Exception {
+        System.out.println("testSendResolvesQuery");
+        LogCollector collector = new LogCollector();
+        ServiceSender sender = new ServiceSender(baseUrl + "/api", collector);
+
+        sender.send(LogLine.of("0 /select?q=a%20b&x=/./y"), LogCollector.newEntry());
+        assertThat(requested, is(equalTo("/api/select?q=a%20b&x=/./y")));
+
+        sender.send(LogLine.of("0 s?q=c"), LogCollector.newEntry());
+        assertThat(requested, is(equalTo("/apis?q=c")));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SloRuleTest {
+
+    private static final long NOW = 1_000_000_000_000L;
+
+    @Test(timeout = 2_000L)
+    public void testParse() throws Exception {
+        System.out.println("testParse");
+        SloRule rule = SloRule.of("p99>800ms/30s");
+        assertThat(rule.getMetric(), is(SloRule.Metric.PERCENTILE));
+        assertThat(rule.getWindow(), is(30_000L));
+        assertThat(rule.getAction(), is(SloRule.Action.ABORT));
+        assertThat(rule.isBreachedBy(801), is(true));
+        assertThat(rule.isBreachedBy(800), is(false));
+
+        rule = SloRule.of("errors>2%/10s:warn");
+        assertThat(rule.getMetric(), is(SloRule.Metric.ERRORS));
+        assertThat(rule.getAction(), is(SloRule.Action.WARN));
+
+        rule = SloRule.of("rate<90%/1m");
+        assertThat(rule.getMetric(), is(SloRule.Metric.RATE));
+        assertThat(rule.getWindow(), is(60_000L));
+        assertThat(rule.isBreachedBy(89.9), is(true));
+
+        rule = SloRule.of("p99.9>1s/30s");
+        assertThat(rule.isBreachedBy(1001), is(true));
+        assertThat(rule.isBreachedBy(999), is(false));
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testParsePercentileInPercent() throws Exception {
+        System.out.println("testParsePercentileInPercent");
+        SloRule.of("p99>80%/30s");
+    }
+
+    @Test(timeout = 2_000L, expected = IllegalArgumentException.class)
+    public void testParseErrorsAsDuration() throws Exception {
+        System.out.println("testParseErrorsAsDuration");
+        SloRule.of("errors>2s/30s");
+    }
+
+    @Test(timeout = 2_000L)
+    public void testEvaluate() throws Exception {
+        System.out.println("testEvaluate");
+        TimeWindow window = new TimeWindow(10, NOW);
+        for (int i = 0 ; i < 100 ; i++) {
+            window.intended(NOW + i * 10, NOW + i * 10);
+            window.completed(NOW + i * 10, i < 90 ? 10 : 1000, i >= 95);
+        }
+        window.intended(NOW + 2000, NOW + 2000); // Next second
+        window.advance(NOW + 1000);
+        TimeWindow.Snapshot snapshot = window.over(NOW + 1000, 10_000);
+
+        assertThat(SloRule.of("p50>100ms/10s").valueOf(snapshot), is(10.0));
+        assertThat(SloRule.of("p99>800ms/10s").valueOf(snapshot), is(closeTo(1000, 1000 * 0.04)));
+        assertThat(SloRule.of("errors>2%/10s").valueOf(snapshot), is(5.0));
+        assertThat(SloRule.of("rate<90%/10s").valueOf(snapshot), is(100.0));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testEvaluateWithoutData() throws Exception {
+        System.out.println("testEvaluateWithoutData");
+        TimeWindow window = new TimeWindow(10, NOW);
+        window.completed(NOW, 10, false);
+        window.advance(NOW + 20_000);
+        TimeWindow.Snapshot snapshot = window.over(NOW + 20_000, 10_000);
+
+        assertThat(snapshot.getCompleted(), is(equalTo(0L)));
+        assertThat(SloRule.of("p99>800ms/10s").valueOf(snapshot), is(nullValue()));
+        assertThat(SloRule.of("rate<90%/10s").valueOf(snapshot), is(nullValue()));
+    }
+}
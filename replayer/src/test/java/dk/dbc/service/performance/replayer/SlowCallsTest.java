@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SlowCallsTest {
+
+    private static LogCollector.LogEntry entry(long line, long duration) {
+        LogCollector.LogEntry entry = LogCollector.newEntry();
+        entry.setLine(line);
+        entry.setQuery("q=" + line);
+        entry.setCallDuration(duration);
+        entry.setStatus(200);
+        return entry;
+    }
+
+    @Test(timeout = 5_000L)
+    public void testSlowest() throws Exception {
+        System.out.println("testSlowest");
+        SlowCalls slowCalls = new SlowCalls(5, -1, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0 ; t < 4 ; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                for (long i = offset ; i < 10_000 ; i += 4) {
+                    slowCalls.add(entry(i, ( i * 7919 ) % 10_000));
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(4, TimeUnit.SECONDS);
+        List<Double> durations = new ArrayList<>();
+        for (Map<String, Object> call : slowCalls.getSlowest()) {
+            durations.add((Double) call.get("callDuration"));
+        }
+        assertThat(durations.toString(), is(equalTo("[9999.0, 9998.0, 9997.0, 9996.0, 9995.0]")));
+        assertThat(slowCalls.getSlowest().get(0).get("query"), is(equalTo("q=2321"))); // 2321 * 7919 = 18379999
+        assertThat(slowCalls.getTailSample(), is(nullValue()));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testTailSample() throws Exception {
+        System.out.println("testTailSample");
+        SlowCalls slowCalls = new SlowCalls(0, 900, 10);
+        for (int i = 0 ; i < 1000 ; i++) {
+            slowCalls.add(entry(i, i));
+        }
+        assertThat(slowCalls.getSlowest().isEmpty(), is(true));
+        Map<String, Object> tail = slowCalls.getTailSample();
+        assertThat(tail.get("threshold"), is(equalTo(900L)));
+        assertThat(tail.get("calls"), is(equalTo(99L)));
+        List<?> sample = (List<?>) tail.get("sample");
+        assertThat(sample.size(), is(10));
+        for (Object call : sample) {
+            assertThat((Double) ( (Map<?, ?>) call ).get("callDuration"), is(greaterThan(900.0)));
+        }
+
+        slowCalls = new SlowCalls(0, 500, 10);
+        slowCalls.add(entry(1, 600));
+        assertThat(((List<?>) slowCalls.getTailSample().get("sample")).size(), is(1));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Temporary files for the tests, that are deleted when the tests end
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    /**
+     * A recording of the given lines
+     *
+     * @param lines lines of the recording
+     * @return path
+     * @throws IOException if the file cannot be written
+     */
+    static String recording(String... lines) throws IOException {
+        return file("recording-", ".data", Arrays.asList(lines)).getPath();
+    }
+
+    /**
+     * A recording of generated lines
+     *
+     * @param count number of lines
+     * @param line  line of a number (from 0)
+     * @return path
+     * @throws IOException if the file cannot be written
+     */
+    static String recording(int count, IntFunction<String> line) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0 ; i < count ; i++) {
+            lines.add(line.apply(i));
+        }
+        return file("recording-", ".data", lines).getPath();
+    }
+
+    /**
+     * An empty file, ie. for a result
+     *
+     * @param prefix start of the name
+     * @param suffix end of the name
+     * @return file
+     * @throws IOException if the file cannot be made
+     */
+    static File output(String prefix, String suffix) throws IOException {
+        return file(prefix, suffix, Collections.emptyList());
+    }
+
+    /**
+     * A file with the given lines
+     *
+     * @param prefix start of the name
+     * @param suffix end of the name
+     * @param lines  content
+     * @return file
+     * @throws IOException if the file cannot be written
+     */
+    static File file(String prefix, String suffix, List<String> lines) throws IOException {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class VirtualUsersTest {
+
+    private static final JobListener NO_LISTENER = new JobListener() {
+        @Override
+        public void callTimeExceeded() {
+        }
+
+        @Override
+        public void sloBreached(String message) {
+        }
+    };
+
+    @Test(timeout = 10_000L)
+    public void testLevels() throws Exception {
+        System.out.println("testLevels");
+        Config config = Config.of("-s", "http://localhost", "-n", "-u", "1,3", "-L", "200ms", "-T", "1ms");
+        LogCollector collector = new LogCollector(config);
+        CallTimeWathcer watcher = new CallTimeWathcer(config.getCallBufferSize(), config.getMaxDelayedCalls(), config.getCallTimeConstraint());
+        SloWatchdog watchdog = new SloWatchdog(Collections.emptyList(), collector, NO_LISTENER);
+        AtomicInteger taken = new AtomicInteger();
+
+        new VirtualUsers(config, collector).run(() -> {
+            if (taken.incrementAndGet() > 100_000)
+                return null;
+            LogCollector.LogEntry entry = LogCollector.newEntry();
+            return new ReplayerTask(config, collector, watcher, watchdog, LogLine.of("0 /q"), NO_LISTENER, entry);
+        }, new CountDownLatch(1));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        collector.dump(os);
+        JsonNode levels = new ObjectMapper().readTree(os.toString("UTF-8")).get("levels");
+        assertThat(levels.size(), is(equalTo(2)));
+        assertThat(levels.get(0).get("users").asInt(), is(equalTo(1)));
+        assertThat(levels.get(1).get("users").asInt(), is(equalTo(3)));
+        long completed = levels.get(0).get("completed").asLong() + levels.get(1).get("completed").asLong();
+        assertThat(completed > 0, is(true));
+        assertThat(completed <= collector.calculateStats().getCount(), is(true));
+        assertThat(levels.get(1).get("completed").asLong() > levels.get(0).get("completed").asLong(), is(true));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testStopsWhenExhausted() throws Exception {
+        System.out.println("testStopsWhenExhausted");
+        Config config = Config.of("-s", "http://localhost", "-n", "-u", "4");
+        LogCollector collector = new LogCollector(config);
+        CallTimeWathcer watcher = new CallTimeWathcer(config.getCallBufferSize(), config.getMaxDelayedCalls(), config.getCallTimeConstraint());
+        SloWatchdog watchdog = new SloWatchdog(Collections.emptyList(), collector, NO_LISTENER);
+        AtomicInteger taken = new AtomicInteger();
+
+        new VirtualUsers(config, collector).run(() -> {
+            if (taken.incrementAndGet() > 1000)
+                return null;
+            LogCollector.LogEntry entry = LogCollector.newEntry();
+            return new ReplayerTask(config, collector, watcher, watchdog, LogLine.of("0 /q"), NO_LISTENER, entry);
+        }, new CountDownLatch(1));
+
+        assertThat(collector.calculateStats().getCount(), is(equalTo(1000L)));
+    }
+}
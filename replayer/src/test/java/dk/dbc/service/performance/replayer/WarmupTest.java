@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of performance-test
+ *
+ * performance-test is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * performance-test is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * File created: 19/10/2026
+ */
+package dk.dbc.service.performance.replayer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class WarmupTest {
+
+    private static final JobListener NO_LISTENER = new JobListener() {
+        @Override
+        public void callTimeExceeded() {
+        }
+
+        @Override
+        public void sloBreached(String message) {
+        }
+    };
+
+    private static String recording(int lines) throws Exception {
+        return TestFiles.recording(lines, i -> i + " /q?i=" + i);
+    }
+
+    private static JsonNode summary(String... args) throws Exception {
+        File output = TestFiles.output("result-", ".ndjson");
+        List<String> list = new ArrayList<>();
+        list.add("-o");
+        list.add(output.getPath());
+        for (String arg : args) {
+            list.add(arg);
+        }
+        int code = new Replayer(Config.of(list.toArray(new String[list.size()]))).run();
+        assertThat(code, is(equalTo(0)));
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        return new ObjectMapper().readTree(lines.get(lines.size() - 1));
+    }
+
+    @Test(timeout = 2_000L)
+    public void testCovers() throws Exception {
+        System.out.println("testCovers");
+        Warmup warmup = new Warmup(Config.of("-s", "http://localhost", "-n", "-U", "3"), NO_LISTENER);
+        warmup.start(System.currentTimeMillis());
+        assertThat(warmup.covers(1, 0), is(true));
+        assertThat(warmup.covers(3, 10_000), is(true));
+        assertThat(warmup.covers(4, 0), is(false));
+        assertThat(warmup.covers(2, 0), is(false)); // Ended
+        assertThat(warmup.statistics().get("requests"), is(equalTo(2L)));
+
+        warmup = new Warmup(Config.of("-s", "http://localhost", "-n", "-U", "2s"), NO_LISTENER);
+        assertThat(warmup.covers(1_000, 1_999), is(true));
+        assertThat(warmup.covers(1_001, 2_000), is(false));
+    }
+
+    @Test(timeout = 10_000L)
+    public void testReplay() throws Exception {
+        System.out.println("testReplay");
+        String recording = recording(20);
+        JsonNode summary = summary("-s", "http://localhost", "-n", "-r", "0", "-I", "0", "-i", recording, "-U", "5");
+        assertThat(summary.path("warmup").path("requests").asLong(), is(equalTo(5L)));
+        assertThat(summary.path("warmup").path("callStat").path("count").asLong(), is(equalTo(5L)));
+        assertThat(summary.path("callStat").path("count").asLong(), is(equalTo(15L)));
+
+        summary = summary("-s", "http://localhost", "-n", "-r", "0", "-I", "0", "-i", recording, "-J", recording(4));
+        assertThat(summary.path("warmup").path("requests").asLong(), is(equalTo(4L)));
+        assertThat(summary.path("callStat").path("count").asLong(), is(equalTo(20L)));
+    }
+}